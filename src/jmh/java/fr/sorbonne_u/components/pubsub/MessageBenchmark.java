@@ -0,0 +1,78 @@
+package fr.sorbonne_u.components.pubsub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building a {@link Message} on the publishing thread,
+ * and of reading its properties as filters do.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see MessageIdGenerator
+ * @see MessageProperties
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark {
+
+    private final Topic topic = Topic.of("sports/tennis/scores");
+
+    private final Message message = Message.newBuilder(topic)
+            .addProperty("player", "someone")
+            .addProperty("set", 3)
+            .addProperty("duration", 5400L)
+            .addProperty("speed", 201.5)
+            .addProperty("final", true)
+            .build();
+
+    @Benchmark
+    public Message build() {
+        return Message.newBuilder(topic).setContent("payload").build();
+    }
+
+    @Benchmark
+    public Message buildWithProperties() {
+        return Message.newBuilder(topic)
+                .addProperty("player", "someone")
+                .addProperty("set", 3)
+                .addProperty("duration", 5400L)
+                .addProperty("speed", 201.5)
+                .build();
+    }
+
+    @Benchmark
+    public int getInt() {
+        return message.getInt("set");
+    }
+
+    @Benchmark
+    public long getLong() {
+        return message.getLong("duration");
+    }
+
+    @Benchmark
+    public double getDouble() {
+        return message.getDouble("speed");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Message buildConcurrently() {
+        return Message.newBuilder(topic).setContent("payload").build();
+    }
+}
@@ -0,0 +1,127 @@
+package fr.sorbonne_u.components.pubsub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding and decoding time of messages with the {@link MessageCodec},
+ * alone and through Java serialization as done by the RMI connectors.
+ * <p>
+ * The encoded size of a message in each form is printed once per trial.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see MessageCodec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"0", "8"})
+    private int properties;
+
+    @Param({"16", "1024"})
+    private int payloadSize;
+
+    private static final int BATCH_SIZE = 32;
+
+    private Message message;
+    private List<Message> batch;
+    private byte[] encoded;
+    private byte[] encodedBatch;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        message = newMessage("sports/tennis/scores");
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++)
+            batch.add(newMessage("sports/tennis/scores"));
+
+        encoded = MessageCodec.encode(message);
+        encodedBatch = MessageCodec.encode(batch);
+        serialized = serialize(message);
+        System.out.printf("%nbytes per message: codec=%d, codec in a batch of %d=%d, java serialization=%d%n",
+                encoded.length, BATCH_SIZE, encodedBatch.length / BATCH_SIZE, serialized.length);
+    }
+
+    private Message newMessage(String topic) {
+        StringBuilder content = new StringBuilder(payloadSize);
+        for (int i = 0; i < payloadSize; i++)
+            content.append((char) ('a' + i % 26));
+        Message.Builder builder = Message.newBuilder(topic).setContent(content.toString());
+        for (int p = 0; p < properties; p++) {
+            if (p % 2 == 0)
+                builder.addProperty("int-" + p, p * 1000);
+            else
+                builder.addProperty("string-" + p, "value-" + p);
+        }
+        return builder.build();
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return MessageCodec.encode(message);
+    }
+
+    @Benchmark
+    public Message decode() throws IOException {
+        return MessageCodec.decode(encoded);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public byte[] encodeBatch() {
+        return MessageCodec.encode(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Message> decodeBatch() throws IOException {
+        return MessageCodec.decodeAll(encodedBatch);
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() throws IOException {
+        return serialize(message);
+    }
+
+    @Benchmark
+    public Object javaDeserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * An in-memory {@code Subscription} used by the benchmarks.
+ * <p>
+ * Unlike a {@code PubSub} subscription it has no port, a notification only keeps a reference
+ * to the last message so the JIT cannot drop the delivery, the broker applies the filter.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see BrokerBenchmark
+ */
+public class BenchmarkSubscription implements Subscription {
+    private final String subId;
+    private volatile Predicate<Message> filter;
+    private volatile Message last;
+
+    public BenchmarkSubscription(String subId) {
+        this.subId = subId;
+    }
+
+    @Override
+    public void notify(Message message) {
+        last = message;
+    }
+
+    @Override
+    public void notifyBatch(List<Message> messages) {
+        last = messages.get(messages.size() - 1);
+    }
+
+    @Override
+    public void filter(Predicate<Message> filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public Predicate<Message> getFilter() {
+        return filter;
+    }
+
+    @Override
+    public String getSubId() {
+        return subId;
+    }
+
+    @Override
+    public void end() {
+        last = null;
+    }
+
+    /**
+     * @return the last accepted message
+     */
+    public Message getLast() {
+        return last;
+    }
+}
@@ -0,0 +1,122 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link Broker} hot paths.
+ * <p>
+ * The broker is populated with {@code topics * subscribersPerTopic} {@link BenchmarkSubscription}s,
+ * each subscription has a filter on the {@code "bucket"} property of the published message,
+ * {@code selectivity} is the percentage of the subscribers of a topic that accept a message.
+ * <p>
+ * Run with:
+ * <blockquote><pre>
+ *     mvn -P benchmarks package
+ *     java -jar target/benchmarks.jar BrokerBenchmark
+ * </pre></blockquote>
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see SubscriberExecutorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrokerBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int topics;
+
+    @Param({"1", "10", "100"})
+    private int subscribersPerTopic;
+
+    @Param({"0", "10", "100"})
+    private int selectivity;
+
+    @Param({"16", "1024"})
+    private int payloadSize;
+
+    private Broker broker;
+    private Message[] messages;
+    private Topic[] topicArray;
+    private BenchmarkSubscription churn;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        broker = new Broker();
+        topicArray = new Topic[topics];
+        messages = new Message[topics];
+        for (int t = 0; t < topics; t++) {
+            topicArray[t] = Topic.of("topic-" + t);
+            messages[t] = Message.newBuilder(topicArray[t])
+                    .setContent(new byte[payloadSize])
+                    .addProperty("bucket", t % 100)
+                    .build();
+            for (int s = 0; s < subscribersPerTopic; s++) {
+                BenchmarkSubscription sub = new BenchmarkSubscription("sub-" + t + "-" + s);
+                // a subscriber accepts a message when the bucket is in its window
+                int offset = s;
+                int window = selectivity;
+                broker.subscribe(sub, topicArray[t],
+                        m -> Math.floorMod(m.getInt("bucket") - offset, 100) < window).join();
+            }
+        }
+        churn = new BenchmarkSubscription("churn");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.shutdown();
+    }
+
+    private int nextTopic() {
+        int t = next;
+        next = t + 1 == topics ? 0 : t + 1;
+        return t;
+    }
+
+    /**
+     * Publish a message and wait for the fan-out to complete.
+     */
+    @Benchmark
+    public void publish() {
+        broker.publish(messages[nextTopic()]).join();
+    }
+
+    /**
+     * Subscribe a new subscription to a topic.
+     */
+    @Benchmark
+    public void subscribe() {
+        broker.subscribe(churn, topicArray[nextTopic()]).join();
+    }
+
+    /**
+     * Subscribe then remove a subscription from all topics using its ID.
+     */
+    @Benchmark
+    public void subscribeThenUnsubscribeAll() {
+        broker.subscribe(churn, topicArray[nextTopic()]).join();
+        broker.unsubscribe(churn.getSubId()).join();
+    }
+}
@@ -0,0 +1,66 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the fan-out of a message over the subscribers of a topic:
+ * a parallel stream over the values of a {@link ConcurrentHashMap}, as the broker used to do,
+ * against a loop over the immutable snapshot array of the {@link SubscriberExecutor}.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see BrokerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int subscribers;
+
+    private ConcurrentHashMap<String, Subscription> map;
+    private Subscription[] snapshot;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new ConcurrentHashMap<>();
+        for (int s = 0; s < subscribers; s++) {
+            BenchmarkSubscription sub = new BenchmarkSubscription("sub-" + s);
+            map.put(sub.getSubId(), sub);
+        }
+        snapshot = map.values().toArray(TopicTrie.EMPTY);
+        message = Message.newBuilder("topic").setContent("payload").build();
+    }
+
+    @Benchmark
+    public void parallelStreamOverValues() {
+        map.values().parallelStream().forEach(sub -> sub.notify(message));
+    }
+
+    @Benchmark
+    public void loopOverSnapshot() {
+        for (Subscription sub : snapshot)
+            sub.notify(message);
+    }
+}
@@ -0,0 +1,119 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Filter;
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the matching of a message against the filters of many subscribers of a topic:
+ * declarative {@link Filter}s, indexed by the route of the topic, against equivalent opaque predicates,
+ * which have to be tested one by one.
+ * <p>
+ * Subscriber {@code s} accepts the messages of one of 1000 symbols whose price is within a window
+ * of 10 starting at {@code s / 1000}, hence every filter is distinct and a message matches
+ * about {@code subscribers / 10000} of them.
+ * <p>
+ * With the {@code equalities} constraints, subscriber {@code s} accepts the messages of one of 1000 symbols
+ * on one of 10 venues instead, so each filter is indexed by two equalities whose satisfied constraints are counted:
+ * a message satisfies the venue of a tenth of the filters and matches {@code subscribers / 10000} of them.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Route
+ * @see BrokerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FilterIndexBenchmark {
+
+    @Param({"10000", "100000"})
+    private int subscribers;
+
+    @Param({"filter", "predicate"})
+    private String filters;
+
+    @Param({"range", "equalities"})
+    private String constraints;
+
+    private Route route;
+    private Message[] messages;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Subscription[] subs = new Subscription[subscribers];
+        for (int s = 0; s < subscribers; s++) {
+            BenchmarkSubscription sub = new BenchmarkSubscription("sub-" + s);
+            String symbol = "S" + s % 1000;
+            int low = s / 1000;
+            String venue = "V" + s / 1000 % 10;
+            boolean equalities = constraints.equals("equalities");
+            if (filters.equals("filter") && equalities)
+                sub.filter(Filter.eq("symbol", symbol).and(Filter.eq("venue", venue)));
+            else if (filters.equals("filter"))
+                sub.filter(Filter.eq("symbol", symbol).and(Filter.between("price", low, low + 10)));
+            else if (equalities)
+                sub.filter(m -> symbol.equals(m.getString("symbol")) && venue.equals(m.getString("venue")));
+            else
+                sub.filter(m -> symbol.equals(m.getString("symbol"))
+                        && m.getDouble("price") >= low && m.getDouble("price") <= low + 10);
+            subs[s] = sub;
+        }
+        route = new Route(0, subs);
+
+        Random random = new Random(42);
+        Topic topic = Topic.of("quotes");
+        messages = new Message[1024];
+        for (int m = 0; m < messages.length; m++) {
+            messages[m] = Message.newBuilder(topic)
+                    .addProperty("symbol", "S" + random.nextInt(1000))
+                    .addProperty("price", random.nextDouble() * (subscribers / 1000 + 10))
+                    .addProperty("venue", "V" + random.nextInt(10))
+                    .build();
+        }
+    }
+
+    private Message nextMessage() {
+        int m = next;
+        next = (m + 1) & (messages.length - 1);
+        return messages[m];
+    }
+
+    /**
+     * Compute the subscribers that accept a message.
+     */
+    @Benchmark
+    public Subscription[] match() {
+        return route.match(nextMessage());
+    }
+
+    /**
+     * Compute the subscribers that accept a message then walk them, as the publisher executor does.
+     */
+    @Benchmark
+    public void matchAndDeliver(Blackhole bh) {
+        for (Subscription sub : route.match(nextMessage()))
+            bh.consume(sub);
+    }
+}
@@ -0,0 +1,82 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of persisting a published message in a {@link MessageLog}:
+ * appending it to the mapped segment of its topic, the group commit runs in the background.
+ * Compare with {@link BrokerBenchmark} for the cost of publishing a message.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see MessageLog
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageLogBenchmark {
+
+    @Param({"16", "1024"})
+    private int payload;
+
+    private File dir;
+    private MessageLog log;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("message-log").toFile();
+        // small retention so the benchmark does not fill the disk
+        log = new MessageLog(dir, MessageLog.DEFAULT_SEGMENT_SIZE, 4L * MessageLog.DEFAULT_SEGMENT_SIZE,
+                Long.MAX_VALUE, MessageLog.DEFAULT_FLUSH_INTERVAL);
+        char[] content = new char[payload];
+        Arrays.fill(content, 'x');
+        message = Message.newBuilder(Topic.of("quotes/EURUSD"))
+                .setContent(new String(content))
+                .addProperty("symbol", "EURUSD")
+                .addProperty("price", 1.0842)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        try (Stream<Path> files = Files.walk(dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Append a message to the log of its topic.
+     */
+    @Benchmark
+    public long append() throws IOException {
+        return log.append(message);
+    }
+}
@@ -0,0 +1,82 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Topic;
+import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link SubscriberExecutor#getSubscribers} lookup,
+ * i.e the part of a publish that happens before any fan-out.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see BrokerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriberExecutorBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int topics;
+
+    @Param({"1", "10", "100"})
+    private int subscribersPerTopic;
+
+    private SubscriberExecutor executor;
+    private Topic[] topicArray;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = new SubscriberExecutor();
+        topicArray = new Topic[topics];
+        for (int t = 0; t < topics; t++) {
+            topicArray[t] = Topic.of("topic-" + t);
+            for (int s = 0; s < subscribersPerTopic; s++)
+                executor.subscribe(new BenchmarkSubscription("sub-" + t + "-" + s), topicArray[t]).join();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Look up the subscribers of a topic.
+     */
+    @Benchmark
+    public Subscription[] getSubscribers() {
+        int t = next;
+        next = t + 1 == topics ? 0 : t + 1;
+        return executor.getSubscribers(topicArray[t]);
+    }
+
+    /**
+     * Look up the subscribers of a topic and walk them, as the publisher executor does.
+     */
+    @Benchmark
+    public void getSubscribersAndIterate(Blackhole bh) {
+        for (Subscription sub : getSubscribers())
+            bh.consume(sub);
+    }
+}
@@ -0,0 +1,101 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the execution modes of the {@link Broker}: requests handled by its work stealing pools
+ * against requests handled in virtual threads, see {@link HandlerExecutor}.
+ * <p>
+ * Each subscriber blocks for {@code blockMicros} on every notification, as a remote subscriber does,
+ * a benchmark operation publishes {@code messages} messages concurrently and waits for their delivery.
+ * The pools have the default parallelism of the {@code PubSub}, 10.
+ * <p>
+ * The virtual mode requires running on Java 21 or later, build and run with a JDK 21:
+ * <blockquote><pre>
+ *     mvn -P benchmarks package
+ *     java -jar target/benchmarks.jar VirtualThreadBenchmark
+ * </pre></blockquote>
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see BrokerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    @Param({"100", "10000"})
+    private int messages;
+
+    @Param({"4"})
+    private int subscribers;
+
+    @Param({"0", "100"})
+    private int blockMicros;
+
+    private Broker broker;
+    private Message message;
+    private CompletableFuture<?>[] deliveries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean virtual = mode.equals("virtual");
+        if (virtual && !VirtualThreads.isSupported())
+            throw new IllegalStateException("The virtual mode requires Java 21 or later");
+        broker = new Broker(10, 10, PublisherExecutor.DEFAULT_CHUNK_SIZE, null, 0, virtual);
+        Topic topic = Topic.of("topic");
+        long blockNanos = TimeUnit.MICROSECONDS.toNanos(blockMicros);
+        for (int s = 0; s < subscribers; s++) {
+            broker.subscribe(new BenchmarkSubscription("sub-" + s) {
+                @Override
+                public void notify(Message message) {
+                    if (blockNanos > 0)
+                        LockSupport.parkNanos(blockNanos);
+                    super.notify(message);
+                }
+            }, topic).join();
+        }
+        message = Message.newBuilder(topic).setContent("payload").build();
+        deliveries = new CompletableFuture<?>[messages];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.shutdown();
+    }
+
+    /**
+     * Publish the messages concurrently and wait for all of them to be delivered.
+     */
+    @Benchmark
+    public void publishConcurrently() {
+        for (int i = 0; i < messages; i++)
+            deliveries[i] = broker.publish(message);
+        CompletableFuture.allOf(deliveries).join();
+    }
+}
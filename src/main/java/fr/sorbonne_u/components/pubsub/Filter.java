@@ -0,0 +1,731 @@
+package fr.sorbonne_u.components.pubsub;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Predicate;
+
+/**
+ * A {@code Filter} is a declarative predicate of a {@link Message}, built from property comparisons,
+ * ranges, sets of values, content type checks, and their combinations with AND, OR and NOT.
+ * <p>
+ * Unlike an opaque lambda, a filter is a tree whose nodes are known to the broker:
+ * two equal filters, e.g two subscribers interested in {@code price >= 10}, are evaluated
+ * only once per message, and the simple constraints of a filter can be indexed.
+ * Filters are also serializable, hence they can be sent across JVMs as they are.
+ * <p>
+ * Numbers are compared as {@code double}s whatever the type of the property,
+ * a comparison with a missing property, or a property of another type, is false.
+ * Example:
+ * <blockquote><pre>
+ *      Filter filter = Filter.eq("symbol", "ACME")
+ *          .and(Filter.between("price", 10, 20))
+ *          .and(Filter.not(Filter.in("market", "NYSE", "LSE")));
+ *
+ *      subscriber.subscribe(someTopic, filter);
+ * </pre></blockquote>
+ * <p>
+ * Since a {@code Filter} is a {@code Predicate<Message>}, it is accepted wherever a filter is,
+ * and an opaque predicate can still be combined with declarative constraints through {@link #of(Predicate)}.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Message
+ * @see FilterIndex
+ * @see fr.sorbonne_u.components.pubsub.interfaces.PubSubService
+ */
+public abstract class Filter implements Predicate<Message>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    Filter() {
+    }
+
+    /**
+     * A filter on a {@code String} property equal to a value.
+     *
+     * @param key   The property key
+     * @param value A {@code String}
+     * @return a new filter
+     */
+    public static Filter eq(String key, String value) {
+        return new Equals(key, Objects.requireNonNull(value));
+    }
+
+    /**
+     * A filter on a {@code boolean} property equal to a value.
+     *
+     * @param key   The property key
+     * @param value A {@code boolean}
+     * @return a new filter
+     */
+    public static Filter eq(String key, boolean value) {
+        return new Equals(key, value);
+    }
+
+    /**
+     * A filter on a number property equal to a value.
+     *
+     * @param key   The property key
+     * @param value A number
+     * @return a new filter
+     */
+    public static Filter eq(String key, double value) {
+        return new Range(key, value, true, value, true);
+    }
+
+    /**
+     * A filter on a property that is not equal to a value, or that is missing.
+     *
+     * @param key   The property key
+     * @param value A {@code String}
+     * @return a new filter
+     */
+    public static Filter ne(String key, String value) {
+        return not(eq(key, value));
+    }
+
+    /**
+     * A filter on a property that is not equal to a value, or that is missing.
+     *
+     * @param key   The property key
+     * @param value A number
+     * @return a new filter
+     */
+    public static Filter ne(String key, double value) {
+        return not(eq(key, value));
+    }
+
+    /**
+     * A filter on a number property less than a value.
+     *
+     * @param key   The property key
+     * @param value A number
+     * @return a new filter
+     */
+    public static Filter lt(String key, double value) {
+        return new Range(key, Double.NEGATIVE_INFINITY, true, value, false);
+    }
+
+    /**
+     * A filter on a number property less than or equal to a value.
+     *
+     * @param key   The property key
+     * @param value A number
+     * @return a new filter
+     */
+    public static Filter le(String key, double value) {
+        return new Range(key, Double.NEGATIVE_INFINITY, true, value, true);
+    }
+
+    /**
+     * A filter on a number property greater than a value.
+     *
+     * @param key   The property key
+     * @param value A number
+     * @return a new filter
+     */
+    public static Filter gt(String key, double value) {
+        return new Range(key, value, false, Double.POSITIVE_INFINITY, true);
+    }
+
+    /**
+     * A filter on a number property greater than or equal to a value.
+     *
+     * @param key   The property key
+     * @param value A number
+     * @return a new filter
+     */
+    public static Filter ge(String key, double value) {
+        return new Range(key, value, true, Double.POSITIVE_INFINITY, true);
+    }
+
+    /**
+     * A filter on a number property between two values, both included.
+     *
+     * @param key  The property key
+     * @param low  The lowest accepted number
+     * @param high The highest accepted number
+     * @return a new filter
+     * @throws IllegalArgumentException if {@code low > high}
+     */
+    public static Filter between(String key, double low, double high) {
+        if (low > high)
+            throw new IllegalArgumentException("low must be <= high");
+        return new Range(key, low, true, high, true);
+    }
+
+    /**
+     * A filter on a {@code String} property equal to one of several values.
+     *
+     * @param key    The property key
+     * @param values Some {@code String}s
+     * @return a new filter
+     */
+    public static Filter in(String key, String... values) {
+        return new In(key, new LinkedHashSet<>(Arrays.asList(values)), new double[0]);
+    }
+
+    /**
+     * A filter on a number property equal to one of several values.
+     *
+     * @param key    The property key
+     * @param values Some numbers
+     * @return a new filter
+     */
+    public static Filter in(String key, double... values) {
+        double[] numbers = values.clone();
+        Arrays.sort(numbers);
+        return new In(key, Collections.emptySet(), numbers);
+    }
+
+    /**
+     * A filter on the presence of a property.
+     *
+     * @param key The property key
+     * @return a new filter
+     */
+    public static Filter exists(String key) {
+        return new Exists(key);
+    }
+
+    /**
+     * A filter on the type of the message content.
+     *
+     * @param type A class
+     * @return a new filter accepting the messages whose content is an instance of {@code type}
+     */
+    public static Filter contentType(Class<?> type) {
+        return new ContentType(type);
+    }
+
+    /**
+     * A filter accepting the messages accepted by all the given filters.
+     *
+     * @param filters Some filters
+     * @return a new filter
+     */
+    public static Filter and(Filter... filters) {
+        return new And(flatten(And.class, filters));
+    }
+
+    /**
+     * A filter accepting the messages accepted by any of the given filters.
+     *
+     * @param filters Some filters
+     * @return a new filter
+     */
+    public static Filter or(Filter... filters) {
+        return new Or(flatten(Or.class, filters));
+    }
+
+    /**
+     * A filter accepting the messages rejected by a filter.
+     *
+     * @param filter A filter
+     * @return a new filter
+     */
+    public static Filter not(Filter filter) {
+        if (filter instanceof Not)
+            return ((Not) filter).filter;
+        return new Not(filter);
+    }
+
+    /**
+     * A filter testing an opaque predicate, so that it can be combined with declarative constraints.
+     * <p>
+     * The predicate cannot be indexed, it is only tested when the other constraints of a conjunction
+     * accept the message, e.g {@code Filter.eq("symbol", "ACME").and(Filter.of(m -> ...))}.
+     * The filter is serializable only if the predicate is.
+     * </p>
+     *
+     * @param predicate A predicate of a message
+     * @return a new filter, or {@code predicate} itself if it is already a filter
+     */
+    public static Filter of(Predicate<Message> predicate) {
+        if (predicate instanceof Filter)
+            return (Filter) predicate;
+        return new Custom(predicate);
+    }
+
+    private static List<Filter> flatten(Class<? extends Composite> type, Filter[] filters) {
+        if (filters.length == 0)
+            throw new IllegalArgumentException("At least one filter is required");
+        List<Filter> flat = new ArrayList<>(filters.length);
+        for (Filter filter : filters) {
+            if (type.isInstance(filter))
+                flat.addAll(((Composite) filter).filters);
+            else
+                flat.add(Objects.requireNonNull(filter));
+        }
+        return Collections.unmodifiableList(flat);
+    }
+
+    /**
+     * @param other A filter
+     * @return a filter accepting the messages accepted by this filter and {@code other}
+     */
+    public Filter and(Filter other) {
+        return and(this, other);
+    }
+
+    /**
+     * @param other A filter
+     * @return a filter accepting the messages accepted by this filter or {@code other}
+     */
+    public Filter or(Filter other) {
+        return or(this, other);
+    }
+
+    @Override
+    public Filter negate() {
+        return not(this);
+    }
+
+    /**
+     * A comparison of a number property with an interval, equalities are intervals of a single number.
+     */
+    public static final class Range extends Filter {
+        private static final long serialVersionUID = 1L;
+        private final String key;
+        private final double low;
+        private final boolean lowInclusive;
+        private final double high;
+        private final boolean highInclusive;
+
+        private Range(String key, double low, boolean lowInclusive, double high, boolean highInclusive) {
+            this.key = Objects.requireNonNull(key);
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public double getLow() {
+            return low;
+        }
+
+        public boolean isLowInclusive() {
+            return lowInclusive;
+        }
+
+        public double getHigh() {
+            return high;
+        }
+
+        public boolean isHighInclusive() {
+            return highInclusive;
+        }
+
+        /**
+         * @return true if this range accepts a single number
+         */
+        public boolean isEquality() {
+            return low == high && lowInclusive && highInclusive;
+        }
+
+        /**
+         * @param value A number
+         * @return true if {@code value} is within this range
+         */
+        public boolean contains(double value) {
+            return (lowInclusive ? value >= low : value > low) &&
+                    (highInclusive ? value <= high : value < high);
+        }
+
+        @Override
+        public boolean test(Message message) {
+            MessageProperties properties = message.getProperties();
+            int i = properties.indexOf(key);
+            return i >= 0 && properties.isNumber(i) && contains(properties.number(i));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Range)) return false;
+            Range range = (Range) o;
+            return Double.compare(range.low, low) == 0 && lowInclusive == range.lowInclusive &&
+                    Double.compare(range.high, high) == 0 && highInclusive == range.highInclusive &&
+                    key.equals(range.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, low, lowInclusive, high, highInclusive);
+        }
+
+        @Override
+        public String toString() {
+            if (isEquality())
+                return key + " = " + low;
+            if (low == Double.NEGATIVE_INFINITY)
+                return key + (highInclusive ? " <= " : " < ") + high;
+            if (high == Double.POSITIVE_INFINITY)
+                return key + (lowInclusive ? " >= " : " > ") + low;
+            return low + (lowInclusive ? " <= " : " < ") + key + (highInclusive ? " <= " : " < ") + high;
+        }
+    }
+
+    /**
+     * An equality of a {@code String} or a {@code boolean} property with a value.
+     */
+    public static final class Equals extends Filter {
+        private static final long serialVersionUID = 1L;
+        private final String key;
+        private final Object value;
+
+        private Equals(String key, Object value) {
+            this.key = Objects.requireNonNull(key);
+            this.value = value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return a {@code String} or a {@code Boolean}
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean test(Message message) {
+            MessageProperties properties = message.getProperties();
+            int i = properties.indexOf(key);
+            if (i < 0)
+                return false;
+            if (value instanceof String)
+                return properties.type(i) == MessageProperties.STRING && value.equals(properties.string(i));
+            return properties.type(i) == MessageProperties.BOOLEAN && (properties.bits(i) != 0) == (Boolean) value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Equals)) return false;
+            Equals equals = (Equals) o;
+            return key.equals(equals.key) && value.equals(equals.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, value);
+        }
+
+        @Override
+        public String toString() {
+            return key + " = " + (value instanceof String ? "'" + value + "'" : value);
+        }
+    }
+
+    /**
+     * An equality of a property with one of several {@code String}s or numbers.
+     */
+    public static final class In extends Filter {
+        private static final long serialVersionUID = 1L;
+        private final String key;
+        private final Set<String> strings;
+        /**
+         * Sorted.
+         */
+        private final double[] numbers;
+
+        private In(String key, Set<String> strings, double[] numbers) {
+            this.key = Objects.requireNonNull(key);
+            this.strings = Collections.unmodifiableSet(strings);
+            this.numbers = numbers;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the accepted {@code String}s
+         */
+        public Set<String> getStrings() {
+            return strings;
+        }
+
+        /**
+         * @return the accepted numbers, sorted, must not be modified
+         */
+        public double[] getNumbers() {
+            return numbers;
+        }
+
+        @Override
+        public boolean test(Message message) {
+            MessageProperties properties = message.getProperties();
+            int i = properties.indexOf(key);
+            if (i < 0)
+                return false;
+            if (properties.type(i) == MessageProperties.STRING)
+                return strings.contains(properties.string(i));
+            return properties.isNumber(i) && Arrays.binarySearch(numbers, properties.number(i)) >= 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof In)) return false;
+            In in = (In) o;
+            return key.equals(in.key) && strings.equals(in.strings) && Arrays.equals(numbers, in.numbers);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, strings, Arrays.hashCode(numbers));
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", key + " IN (", ")");
+            strings.forEach(s -> joiner.add("'" + s + "'"));
+            for (double number : numbers)
+                joiner.add(String.valueOf(number));
+            return joiner.toString();
+        }
+    }
+
+    /**
+     * The presence of a property.
+     */
+    public static final class Exists extends Filter {
+        private static final long serialVersionUID = 1L;
+        private final String key;
+
+        private Exists(String key) {
+            this.key = Objects.requireNonNull(key);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public boolean test(Message message) {
+            return message.hasProperty(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Exists && key.equals(((Exists) o).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "EXISTS " + key;
+        }
+    }
+
+    /**
+     * The type of the message content.
+     */
+    public static final class ContentType extends Filter {
+        private static final long serialVersionUID = 1L;
+        private final Class<?> type;
+
+        private ContentType(Class<?> type) {
+            this.type = Objects.requireNonNull(type);
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        @Override
+        public boolean test(Message message) {
+            return type.isInstance(message.getContent());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof ContentType && type.equals(((ContentType) o).type);
+        }
+
+        @Override
+        public int hashCode() {
+            return type.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "CONTENT INSTANCEOF " + type.getName();
+        }
+    }
+
+    /**
+     * A combination of filters.
+     */
+    public abstract static class Composite extends Filter {
+        private static final long serialVersionUID = 1L;
+        final List<Filter> filters;
+
+        private Composite(List<Filter> filters) {
+            this.filters = filters;
+        }
+
+        /**
+         * @return the combined filters
+         */
+        public List<Filter> getFilters() {
+            return filters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o != null && getClass() == o.getClass() && filters.equals(((Composite) o).filters);
+        }
+
+        @Override
+        public int hashCode() {
+            return getClass().hashCode() * 31 + filters.hashCode();
+        }
+
+        String toString(String operator) {
+            StringJoiner joiner = new StringJoiner(" " + operator + " ", "(", ")");
+            filters.forEach(filter -> joiner.add(filter.toString()));
+            return joiner.toString();
+        }
+    }
+
+    /**
+     * All the filters must accept the message.
+     */
+    public static final class And extends Composite {
+        private static final long serialVersionUID = 1L;
+
+        private And(List<Filter> filters) {
+            super(filters);
+        }
+
+        @Override
+        public boolean test(Message message) {
+            for (Filter filter : filters) {
+                if (!filter.test(message))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return toString("AND");
+        }
+    }
+
+    /**
+     * Any of the filters must accept the message.
+     */
+    public static final class Or extends Composite {
+        private static final long serialVersionUID = 1L;
+
+        private Or(List<Filter> filters) {
+            super(filters);
+        }
+
+        @Override
+        public boolean test(Message message) {
+            for (Filter filter : filters) {
+                if (filter.test(message))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return toString("OR");
+        }
+    }
+
+    /**
+     * An opaque predicate.
+     */
+    public static final class Custom extends Filter {
+        private static final long serialVersionUID = 1L;
+        private final Predicate<Message> predicate;
+
+        private Custom(Predicate<Message> predicate) {
+            this.predicate = Objects.requireNonNull(predicate);
+        }
+
+        public Predicate<Message> getPredicate() {
+            return predicate;
+        }
+
+        @Override
+        public boolean test(Message message) {
+            return predicate.test(message);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Custom && predicate.equals(((Custom) o).predicate);
+        }
+
+        @Override
+        public int hashCode() {
+            return predicate.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "PREDICATE " + predicate;
+        }
+    }
+
+    /**
+     * The filter must reject the message.
+     */
+    public static final class Not extends Filter {
+        private static final long serialVersionUID = 1L;
+        private final Filter filter;
+
+        private Not(Filter filter) {
+            this.filter = Objects.requireNonNull(filter);
+        }
+
+        public Filter getFilter() {
+            return filter;
+        }
+
+        @Override
+        public boolean test(Message message) {
+            return !filter.test(message);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Not && filter.equals(((Not) o).filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return ~filter.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + filter;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package fr.sorbonne_u.components.pubsub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A {@code FilterIndex} finds the filters that accept a message without testing every filter.
+ * <p>
+ * A {@link Filter} that is a conjunction of simple constraints, i.e equalities, ranges and IN-sets
+ * on properties, is indexed by the key of its constraints: equalities and IN-sets in a hash map
+ * from the accepted values to the filters, and ranges in an {@link IntervalTree}.
+ * Matching a message looks up each of its properties in the index and counts, for each filter,
+ * the constraints that the property satisfies; a filter whose constraints are all satisfied
+ * accepts the message, and any other indexed filter rejects it. This is the <i>counting algorithm</i>,
+ * its cost grows with the number of properties of the message and the number of satisfied constraints,
+ * not with the number of filters.
+ * <p>
+ * Equalities are much more selective than ranges, e.g a range on a price is satisfied by a large part
+ * of the filters while an equality on a symbol is satisfied by a few of them, hence a filter that has
+ * equalities is only indexed by its equalities, and its ranges are tested when its equalities are satisfied.
+ * <p>
+ * The other constraints of an indexed filter, e.g an OR or a {@link Filter#of(Predicate) predicate},
+ * are only tested when its simple constraints are all satisfied.
+ * Filters without simple constraints, and opaque predicates, are not indexed, they are tested as usual.
+ * <p>
+ * An index is immutable and can be used by several threads, each thread counts the constraints in an array of its own.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Filter
+ * @see IntervalTree
+ */
+public final class FilterIndex {
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, KeyIndex> keys = new HashMap<>();
+    /**
+     * The number of simple constraints of each filter, 0 if the filter is not indexed.
+     */
+    private final int[] required;
+    /**
+     * The other constraints of each indexed filter, or null if there are none.
+     */
+    private final Filter[] residuals;
+    private final int indexed;
+    /**
+     * True if some filter is indexed by several constraints, otherwise a filter is satisfied at its first hit.
+     */
+    private final boolean counting;
+    private final ThreadLocal<Counts> counts;
+
+    /**
+     * Build an index.
+     *
+     * @param filters Some filters, any predicate which is not a {@link Filter} is not indexed
+     */
+    public FilterIndex(List<? extends Predicate<Message>> filters) {
+        this.required = new int[filters.size()];
+        this.residuals = new Filter[filters.size()];
+
+        Map<String, KeyIndex.Builder> builders = new HashMap<>();
+        int count = 0;
+        boolean counting = false;
+        for (int f = 0; f < filters.size(); f++) {
+            Predicate<Message> filter = filters.get(f);
+            if (!(filter instanceof Filter))
+                continue;
+            List<Filter> constraints = filter instanceof Filter.And ?
+                    ((Filter.And) filter).getFilters() : Collections.singletonList((Filter) filter);
+            List<Filter> equalities = new ArrayList<>();
+            List<Filter> ranges = new ArrayList<>();
+            List<Filter> others = new ArrayList<>();
+            for (Filter constraint : constraints) {
+                if (isEquality(constraint))
+                    equalities.add(constraint);
+                else if (isRange(constraint))
+                    ranges.add(constraint);
+                else
+                    others.add(constraint);
+            }
+            List<Filter> simple = equalities.isEmpty() ? ranges : equalities;
+            if (simple.isEmpty())
+                continue;
+            if (simple == equalities)
+                others.addAll(0, ranges);
+
+            for (Filter constraint : simple)
+                builders.computeIfAbsent(key(constraint), k -> new KeyIndex.Builder()).add(constraint, f);
+            required[f] = simple.size();
+            counting |= simple.size() > 1;
+            if (!others.isEmpty())
+                residuals[f] = others.size() == 1 ? others.get(0) : Filter.and(others.toArray(new Filter[0]));
+            count++;
+        }
+        builders.forEach((key, builder) -> keys.put(key, builder.build()));
+        this.indexed = count;
+        this.counting = counting;
+        this.counts = counting ? ThreadLocal.withInitial(() -> new Counts(required.length)) : null;
+    }
+
+    private static boolean isEquality(Filter filter) {
+        if (filter instanceof Filter.Range)
+            return ((Filter.Range) filter).isEquality() && isRange(filter);
+        return filter instanceof Filter.Equals || filter instanceof Filter.In;
+    }
+
+    private static boolean isRange(Filter filter) {
+        if (!(filter instanceof Filter.Range))
+            return false;
+        Filter.Range range = (Filter.Range) filter;
+        return !Double.isNaN(range.getLow()) && !Double.isNaN(range.getHigh());
+    }
+
+    private static String key(Filter filter) {
+        if (filter instanceof Filter.Range)
+            return ((Filter.Range) filter).getKey();
+        if (filter instanceof Filter.Equals)
+            return ((Filter.Equals) filter).getKey();
+        return ((Filter.In) filter).getKey();
+    }
+
+    /**
+     * Equal numbers must be equal keys, {@code -0.0 == 0.0} but they are not equal {@code Double}s.
+     */
+    private static Double normalize(double value) {
+        return value == 0 ? 0.0 : value;
+    }
+
+    /**
+     * @return the number of filters
+     */
+    public int size() {
+        return required.length;
+    }
+
+    /**
+     * @return the number of indexed filters
+     */
+    public int getIndexedCount() {
+        return indexed;
+    }
+
+    /**
+     * @param f The index of a filter
+     * @return true if the filter is indexed, i.e if {@link #match(Message)} tells whether it accepts a message
+     */
+    public boolean isIndexed(int f) {
+        return required[f] > 0;
+    }
+
+    /**
+     * Match a message against the indexed filters.
+     *
+     * @param message A {@code Message}
+     * @return the indexes of the indexed filters that accept the message, in no particular order,
+     * the filters that are not indexed are not matched
+     */
+    public int[] match(Message message) {
+        if (indexed == 0)
+            return NONE;
+        Counts counts = null;
+        if (counting) {
+            counts = this.counts.get();
+            if (counts.used)
+                counts = new Counts(required.length);
+            counts.used = true;
+        }
+        Matching matching = new Matching(message, counts);
+        try {
+            MessageProperties properties = message.getProperties();
+            for (int i = 0; i < properties.size(); i++) {
+                KeyIndex index = keys.get(properties.key(i));
+                if (index != null)
+                    index.match(properties, i, matching);
+            }
+        } finally {
+            if (counts != null)
+                counts.clear();
+        }
+        return matching.size == 0 ? NONE : Arrays.copyOf(matching.accepted, matching.size);
+    }
+
+    /**
+     * Counts the satisfied constraints of each filter while a message is matched,
+     * and collects the accepting filters.
+     */
+    private final class Matching implements IntervalTree.Hits {
+        private final Message message;
+        private final Counts counts;
+        private int[] accepted = new int[16];
+        private int size;
+
+        private Matching(Message message, Counts counts) {
+            this.message = message;
+            this.counts = counts;
+        }
+
+        @Override
+        public void hit(int f) {
+            if (counts != null && counts.increment(f) != required[f])
+                return;
+            Filter residual = residuals[f];
+            try {
+                if (residual != null && !residual.test(message))
+                    return;
+            } catch (RuntimeException e) {
+                return;
+            }
+            if (size == accepted.length)
+                accepted = Arrays.copyOf(accepted, size * 2);
+            accepted[size++] = f;
+        }
+    }
+
+    /**
+     * The counts of the satisfied constraints of each filter, reused by the matchings of a thread:
+     * the filters hit by a matching are listed, and only their counts are cleared once it is done,
+     * so a matching costs the number of hits, not the number of filters.
+     */
+    private static final class Counts {
+        private final int[] counts;
+        private int[] hit = new int[16];
+        private int hits;
+        /**
+         * True while a matching uses these counts, e.g a residual filter matching a message against the same index.
+         */
+        private boolean used;
+
+        private Counts(int filters) {
+            this.counts = new int[filters];
+        }
+
+        private int increment(int f) {
+            if (counts[f] == 0) {
+                if (hits == hit.length)
+                    hit = Arrays.copyOf(hit, hits * 2);
+                hit[hits++] = f;
+            }
+            return ++counts[f];
+        }
+
+        private void clear() {
+            for (int i = 0; i < hits; i++)
+                counts[hit[i]] = 0;
+            hits = 0;
+            used = false;
+        }
+    }
+
+    /**
+     * The simple constraints on a property key.
+     */
+    private static final class KeyIndex {
+
+        /**
+         * The filters of each accepted value, values are {@code String}s, {@code Boolean}s or {@code Double}s.
+         */
+        private final Map<Object, int[]> equalities;
+        private final IntervalTree ranges;
+
+        private KeyIndex(Map<Object, int[]> equalities, IntervalTree ranges) {
+            this.equalities = equalities;
+            this.ranges = ranges;
+        }
+
+        private void match(MessageProperties properties, int i, Matching matching) {
+            int[] owners;
+            switch (properties.type(i)) {
+                case MessageProperties.STRING:
+                    owners = equalities.get(properties.string(i));
+                    break;
+                case MessageProperties.BOOLEAN:
+                    owners = equalities.get(properties.bits(i) != 0);
+                    break;
+                default:
+                    double value = properties.number(i);
+                    owners = equalities.isEmpty() ? null : equalities.get(normalize(value));
+                    if (ranges != null)
+                        ranges.stab(value, matching);
+            }
+            for (int f : owners == null ? NONE : owners)
+                matching.hit(f);
+        }
+
+        private static final class Builder {
+            private final Map<Object, List<Integer>> equalities = new HashMap<>();
+            private final List<Filter.Range> ranges = new ArrayList<>();
+            private final List<Integer> rangeOwners = new ArrayList<>();
+
+            private void add(Filter constraint, int f) {
+                if (constraint instanceof Filter.Range) {
+                    Filter.Range range = (Filter.Range) constraint;
+                    if (range.isEquality()) {
+                        addEquality(normalize(range.getLow()), f);
+                    } else {
+                        ranges.add(range);
+                        rangeOwners.add(f);
+                    }
+                } else if (constraint instanceof Filter.Equals) {
+                    addEquality(((Filter.Equals) constraint).getValue(), f);
+                } else {
+                    // an IN-set is satisfied once, whatever the number of equal values
+                    Filter.In in = (Filter.In) constraint;
+                    Set<Object> values = new LinkedHashSet<>(in.getStrings());
+                    for (double number : in.getNumbers())
+                        values.add(normalize(number));
+                    for (Object value : values)
+                        addEquality(value, f);
+                }
+            }
+
+            private void addEquality(Object value, int f) {
+                equalities.computeIfAbsent(value, v -> new ArrayList<>()).add(f);
+            }
+
+            private KeyIndex build() {
+                Map<Object, int[]> owners = new HashMap<>();
+                equalities.forEach((value, filters) ->
+                        owners.put(value, filters.stream().mapToInt(Integer::intValue).toArray()));
+                return new KeyIndex(owners, ranges.isEmpty() ? null : new IntervalTree(ranges, rangeOwners));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FilterIndex{" +
+                "filters=" + required.length +
+                ", indexed=" + indexed +
+                ", keys=" + keys.keySet() +
+                '}';
+    }
+}
@@ -0,0 +1,134 @@
+package fr.sorbonne_u.components.pubsub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable centered interval tree of {@link Filter.Range}s, each range belongs to an owner.
+ * <p>
+ * Each node has a center, it holds the ranges that contain the center, sorted by their low bound
+ * and by their high bound, the ranges below the center are in its left subtree and the ranges
+ * above it are in its right subtree. Finding the ranges that contain a number walks a single path
+ * and only looks at the ranges of a node that contain the number, plus one,
+ * hence it costs {@code O(log n + k)} where {@code k} is the number of matching ranges.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see FilterIndex
+ */
+final class IntervalTree {
+    private final Node root;
+
+    /**
+     * Build a tree.
+     *
+     * @param ranges The ranges, their bounds must not be NaN
+     * @param owners The owner of each range
+     */
+    IntervalTree(List<Filter.Range> ranges, List<Integer> owners) {
+        List<Entry> entries = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++)
+            entries.add(new Entry(ranges.get(i), owners.get(i)));
+        this.root = build(entries);
+    }
+
+    private static Node build(List<Entry> entries) {
+        if (entries.isEmpty())
+            return null;
+        double[] bounds = new double[entries.size() * 2];
+        for (int i = 0; i < entries.size(); i++) {
+            bounds[2 * i] = entries.get(i).range.getLow();
+            bounds[2 * i + 1] = entries.get(i).range.getHigh();
+        }
+        Arrays.sort(bounds);
+        // the median is a bound of some range, hence each node holds at least one range
+        double center = bounds[bounds.length / 2];
+
+        List<Entry> left = new ArrayList<>();
+        List<Entry> right = new ArrayList<>();
+        List<Entry> here = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.range.getHigh() < center)
+                left.add(entry);
+            else if (entry.range.getLow() > center)
+                right.add(entry);
+            else
+                here.add(entry);
+        }
+        return new Node(center, here, build(left), build(right));
+    }
+
+    /**
+     * Find the ranges that contain a number.
+     *
+     * @param value A number, NaN is in no range
+     * @param hits  Notified with the owner of each matching range
+     */
+    void stab(double value, Hits hits) {
+        Node node = root;
+        while (node != null) {
+            if (value < node.center) {
+                // all the ranges of the node end at or above the center
+                for (Entry entry : node.byLow) {
+                    if (entry.range.getLow() > value)
+                        break;
+                    if (entry.range.contains(value))
+                        hits.hit(entry.owner);
+                }
+                node = node.left;
+            } else if (value > node.center) {
+                // all the ranges of the node start at or below the center
+                for (Entry entry : node.byHigh) {
+                    if (entry.range.getHigh() < value)
+                        break;
+                    if (entry.range.contains(value))
+                        hits.hit(entry.owner);
+                }
+                node = node.right;
+            } else {
+                for (Entry entry : node.byLow) {
+                    if (entry.range.contains(value))
+                        hits.hit(entry.owner);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Receives the owners of the matching ranges.
+     */
+    interface Hits {
+        void hit(int owner);
+    }
+
+    private static final class Entry {
+        private final Filter.Range range;
+        private final int owner;
+
+        private Entry(Filter.Range range, int owner) {
+            this.range = range;
+            this.owner = owner;
+        }
+    }
+
+    private static final class Node {
+        private final double center;
+        private final Entry[] byLow;
+        private final Entry[] byHigh;
+        private final Node left;
+        private final Node right;
+
+        private Node(double center, List<Entry> entries, Node left, Node right) {
+            this.center = center;
+            this.byLow = entries.toArray(new Entry[0]);
+            Arrays.sort(byLow, Comparator.comparingDouble(e -> e.range.getLow()));
+            this.byHigh = entries.toArray(new Entry[0]);
+            Arrays.sort(byHigh, Comparator.comparingDouble((Entry e) -> e.range.getHigh()).reversed());
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package fr.sorbonne_u.components.pubsub;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The {@code Message} class wraps the data that we need to publish from the publishers to the subscribers.
@@ -15,13 +14,13 @@ import java.util.concurrent.ConcurrentHashMap;
  * Each {@code Message} instance has:
  * <ul>
  * <li>
- * A unique ID generated by  {@link UUID#randomUUID()}.
+ * A unique ID generated by a {@link MessageIdGenerator}, a {@link SnowflakeIdGenerator} by default.
  * </li>
  * <li>
  * A timestamp which is set at sending time.
  * </li>
  * <li>
- * An owner which represents the host ip address.
+ * An owner which represents the host ip address, resolved once per JVM.
  * </li>
  * <li>
  * The data that is needed to be published.
@@ -31,15 +30,24 @@ import java.util.concurrent.ConcurrentHashMap;
  * </li>
  * </ul>
  * </p>
+ * <p>
+ * Messages are serialized with the compact binary format of {@link MessageCodec}.
+ * </p>
  *
  * @author Nadir Belarouci
  * @author Katia Amichi
  * @see Message.Builder
  * @see Topic
+ * @see MessageCodec
  * @see fr.sorbonne_u.components.pubsub.interfaces.PublisherService
  * @see fr.sorbonne_u.components.pubsub.interfaces.SubscriberService
  */
 public class Message implements Serializable {
+    /**
+     * The generator of the IDs of the new messages.
+     */
+    private static volatile MessageIdGenerator idGenerator;
+
     /**
      * Message unique ID.
      */
@@ -60,7 +68,7 @@ public class Message implements Serializable {
     /**
      * The message properties.
      */
-    private final Map<String, Object> properties;
+    private final MessageProperties properties;
 
     /**
      * Message timestamp.
@@ -83,15 +91,28 @@ public class Message implements Serializable {
         this.timestamp = builder.timestamp;
         this.owner = builder.owner;
         this.content = builder.content;
-        this.properties = builder.properties;
+        this.properties = builder.properties.build();
         this.topic = builder.topic;
     }
 
+    /**
+     * Creates a decoded message, used by {@link MessageCodec}.
+     */
+    Message(String id, String owner, long timestamp, Topic topic, Serializable content, MessageProperties properties) {
+        this.id = id;
+        this.owner = owner;
+        this.timestamp = timestamp;
+        this.topic = topic;
+        this.content = content;
+        this.properties = properties;
+    }
+
     /**
      * Creates a new {@link Message.Builder} from a topic.
      *
      * @param topic A topic
      * @return A {@code Builder}
+     * @throws IllegalArgumentException if the topic contains a wildcard
      */
     public static Builder newBuilder(Topic topic) {
         return new Builder(topic);
@@ -102,11 +123,58 @@ public class Message implements Serializable {
      *
      * @param topic A {@code String}
      * @return A {@code Builder}
+     * @throws IllegalArgumentException if the topic contains a wildcard
      */
     public static Builder newBuilder(String topic) {
         return new Builder(topic);
     }
 
+    /**
+     * Set the generator of the IDs of the messages built from now on in this JVM.
+     *
+     * @param generator A {@code MessageIdGenerator}
+     * @see SnowflakeIdGenerator
+     */
+    public static void setIdGenerator(MessageIdGenerator generator) {
+        idGenerator = Objects.requireNonNull(generator);
+    }
+
+    private static MessageIdGenerator idGenerator() {
+        MessageIdGenerator generator = idGenerator;
+        if (generator == null) {
+            synchronized (Message.class) {
+                if (idGenerator == null)
+                    idGenerator = new SnowflakeIdGenerator();
+                generator = idGenerator;
+            }
+        }
+        return generator;
+    }
+
+    /**
+     * Get the owner of the messages built in this JVM, i.e the local host address.
+     *
+     * @return the local owner
+     */
+    static String localOwner() {
+        return LocalOwner.OWNER;
+    }
+
+    /**
+     * Resolves the local host once, when the first message is built.
+     */
+    private static class LocalOwner {
+        private static final String OWNER = resolve();
+
+        private static String resolve() {
+            try {
+                return InetAddress.getLocalHost().toString();
+            } catch (UnknownHostException e) {
+                return InetAddress.getLoopbackAddress().toString();
+            }
+        }
+    }
+
     /**
      * @return The message ID
      */
@@ -176,91 +244,99 @@ public class Message implements Serializable {
     }
 
     /**
-     * Returns an {@code int} property value.
+     * Returns an {@code int} property value, without allocating.
      *
      * @param key The property key
-     * @return An {@code int} property value or null if key doesn't exist
-     * @throws ClassCastException if value is not an instance of {@code Integer}
+     * @return An {@code int} property value
+     * @throws NullPointerException if key doesn't exist
+     * @throws ClassCastException   if the property is not an {@code int}
      */
     public int getInt(String key) {
-        return (int) properties.get(key);
+        return (int) properties.bits(key, MessageProperties.INT);
     }
 
     /**
      * Returns a {@code byte} property value.
      *
      * @param key The property key
-     * @return A {@code byte}  property value or null if key doesn't exist
-     * @throws ClassCastException if value is not an instance of {@code Byte}
+     * @return A {@code byte} property value
+     * @throws NullPointerException if key doesn't exist
+     * @throws ClassCastException   if the property is not a {@code byte}
      */
     public byte getByte(String key) {
-        return (byte) properties.get(key);
+        return (byte) properties.bits(key, MessageProperties.BYTE);
     }
 
     /**
      * Returns a {@code short} property value.
      *
      * @param key The property key
-     * @return A {@code short}  property value or null if key doesn't exist
-     * @throws ClassCastException if value is not an instance of {@code Short}
+     * @return A {@code short} property value
+     * @throws NullPointerException if key doesn't exist
+     * @throws ClassCastException   if the property is not a {@code short}
      */
     public short getShort(String key) {
-        return (short) properties.get(key);
+        return (short) properties.bits(key, MessageProperties.SHORT);
     }
 
     /**
      * Returns a {@code char} property value.
      *
      * @param key The property key
-     * @return A {@code char}  property value or null if key doesn't exist
-     * @throws ClassCastException if value is not an instance of {@code Character}
+     * @return A {@code char} property value
+     * @throws NullPointerException if key doesn't exist
+     * @throws ClassCastException   if the property is not a {@code char}
      */
     public char getChar(String key) {
-        return (char) properties.get(key);
+        return (char) properties.bits(key, MessageProperties.CHAR);
     }
 
     /**
-     * Returns a {@code long} property value.
+     * Returns a {@code long} property value, without allocating.
      *
      * @param key The property key
-     * @return A {@code long}  property value or null if key doesn't exist
-     * @throws ClassCastException if value is not an instance of {@code Long}
+     * @return A {@code long} property value
+     * @throws NullPointerException if key doesn't exist
+     * @throws ClassCastException   if the property is not a {@code long}
      */
     public long getLong(String key) {
-        return (long) properties.get(key);
+        return properties.bits(key, MessageProperties.LONG);
     }
 
     /**
      * Returns a {@code float} property value.
      *
      * @param key The property key
-     * @return A {@code float}  property value or null if key doesn't exist
-     * @throws ClassCastException if value is not an instance of {@code Float}
+     * @return A {@code float} property value
+     * @throws NullPointerException if key doesn't exist
+     * @throws ClassCastException   if the property is not a {@code float}
      */
     public float getFloat(String key) {
-        return (float) properties.get(key);
+        return Float.intBitsToFloat((int) properties.bits(key, MessageProperties.FLOAT));
     }
 
     /**
-     * Returns a {@code double} property value.
+     * Returns a {@code double} property value, without allocating.
      *
      * @param key The property key
-     * @return A {@code double}  property value or null if key doesn't exist
-     * @throws ClassCastException if value is not an instance of {@code Double}
+     * @return A {@code double} property value
+     * @throws NullPointerException if key doesn't exist
+     * @throws ClassCastException   if the property is not a {@code double}
      */
     public double getDouble(String key) {
-        return (double) properties.get(key);
+        return Double.longBitsToDouble(properties.bits(key, MessageProperties.DOUBLE));
     }
 
     /**
      * Returns a {@code boolean} property value.
      *
      * @param key The property key
-     * @return A {@code boolean}  property value or null if key doesn't exist
-     * @throws ClassCastException if value is not an instance of {@code Boolean}
+     * @return A {@code boolean} property value
+     * @throws NullPointerException if key doesn't exist
+     * @throws ClassCastException   if the property is not a {@code boolean}
      */
     public boolean getBoolean(String key) {
-        return (boolean) properties.get(key);
+        return properties.bits(key, MessageProperties.BOOLEAN) != 0;
     }
 
     /**
@@ -271,7 +347,28 @@ public class Message implements Serializable {
      * @throws ClassCastException if value is not an instance of {@code String}
      */
     public String getString(String key) {
-        return (String) properties.get(key);
+        return properties.string(key);
+    }
+
+    /**
+     * Returns a property value of any type, a primitive value is boxed.
+     *
+     * @param key The property key
+     * @return A property value or null if key doesn't exist
+     */
+    public Object getProperty(String key) {
+        int i = properties.indexOf(key);
+        return i < 0 ? null : properties.get(i);
+    }
+
+    /**
+     * Check if the message has a property.
+     *
+     * @param key The property key
+     * @return true if the message has a property with this key
+     */
+    public boolean hasProperty(String key) {
+        return properties.indexOf(key) >= 0;
     }
 
     @Override
@@ -279,6 +376,24 @@ public class Message implements Serializable {
         return Objects.hash(id, owner, content, topic, timestamp);
     }
 
+    /**
+     * @return The message properties, must not be modified
+     */
+    MessageProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * Serialize this message with the {@link MessageCodec}.
+     */
+    private Object writeReplace() {
+        return new MessageCodec.SerializedMessage(this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("A message is deserialized by its MessageCodec");
+    }
+
     /**
      * The builder class is an implementation of the builder design pattern.
      * <p>
@@ -293,7 +408,7 @@ public class Message implements Serializable {
      * @see #newBuilder(String)
      */
     public static class Builder {
-        private final Map<String, Object> properties = new ConcurrentHashMap<>();
+        private final MessageProperties.Builder properties = new MessageProperties.Builder();
         private String id;
         private long timestamp = -1;
         private String owner;
@@ -303,12 +418,8 @@ public class Message implements Serializable {
 
         private Builder(Topic topic) {
             setTopic(topic);
-            id = Message.class.getSimpleName() + "-" + UUID.randomUUID().toString();
-            try {
-                owner = InetAddress.getLocalHost().toString();
-            } catch (UnknownHostException e) {
-                throw new IllegalStateException(e);
-            }
+            id = idGenerator().nextId();
+            owner = localOwner();
         }
 
         private Builder(String topic) {
@@ -317,6 +428,8 @@ public class Message implements Serializable {
 
         private void setTopic(Topic topic) {
             this.topic = Objects.requireNonNull(topic, "Topic cannot be null");
+            if (topic.isWildcard())
+                throw new IllegalArgumentException("Cannot publish on a wildcard topic: " + topic.getName());
         }
 
         /**
@@ -383,7 +496,7 @@ public class Message implements Serializable {
          * @return This builder instance
          */
         public Builder addProperty(String key, byte value) {
-            properties.put(key, value);
+            properties.put(key, MessageProperties.BYTE, value);
             return this;
         }
 
@@ -395,7 +508,7 @@ public class Message implements Serializable {
          * @return This builder instance
          */
         public Builder addProperty(String key, short value) {
-            properties.put(key, value);
+            properties.put(key, MessageProperties.SHORT, value);
             return this;
         }
 
@@ -407,7 +520,7 @@ public class Message implements Serializable {
          * @return This builder instance
          */
         public Builder addProperty(String key, char value) {
-            properties.put(key, value);
+            properties.put(key, MessageProperties.CHAR, value);
             return this;
         }
 
@@ -419,7 +532,7 @@ public class Message implements Serializable {
          * @return This builder instance
          */
         public Builder addProperty(String key, int value) {
-            properties.put(key, value);
+            properties.put(key, MessageProperties.INT, value);
             return this;
         }
 
@@ -431,7 +544,7 @@ public class Message implements Serializable {
          * @return This builder instance
          */
         public Builder addProperty(String key, long value) {
-            properties.put(key, value);
+            properties.put(key, MessageProperties.LONG, value);
             return this;
         }
 
@@ -443,7 +556,7 @@ public class Message implements Serializable {
          * @return This builder instance
          */
         public Builder addProperty(String key, float value) {
-            properties.put(key, value);
+            properties.put(key, MessageProperties.FLOAT, Float.floatToRawIntBits(value));
             return this;
         }
 
@@ -455,7 +568,7 @@ public class Message implements Serializable {
          * @return This builder instance
          */
         public Builder addProperty(String key, double value) {
-            properties.put(key, value);
+            properties.put(key, MessageProperties.DOUBLE, Double.doubleToRawLongBits(value));
             return this;
         }
 
@@ -467,7 +580,7 @@ public class Message implements Serializable {
          * @return This builder instance
          */
         public Builder addProperty(String key, boolean value) {
-            properties.put(key, value);
+            properties.put(key, MessageProperties.BOOLEAN, value ? 1 : 0);
             return this;
         }
 
@@ -0,0 +1,767 @@
+package fr.sorbonne_u.components.pubsub;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code MessageCodec} class encodes {@link Message}s in a compact binary format.
+ * <p>
+ * A message is written as:
+ * <ul>
+ * <li>A format version byte.</li>
+ * <li>Its ID, owner and topic as strings, i.e a varint length followed by UTF-8 bytes.</li>
+ * <li>Its timestamp as a zigzag varint.</li>
+ * <li>Its properties as a table, i.e a varint count followed by, for each property,
+ * its key, a type tag and its value in the smallest form of its type.</li>
+ * <li>Its content as a type tag followed by the value, strings and byte arrays are written as is,
+ * any other {@code Serializable} content falls back to Java serialization.</li>
+ * </ul>
+ * Topics are interned: a {@link Writer} writes the name of a topic the first time it meets it
+ * and only its index afterwards, a {@link Reader} rebuilds the same table while reading,
+ * hence a batch of messages on a few topics pays for each topic name once.
+ * <p>
+ * {@code Message} delegates its Java serialization to this codec, so every message sent through
+ * a port or a connector uses this format.
+ * Messages can also be encoded into a {@code ByteBuffer}, e.g a memory-mapped file, see {@link #encode(Message, ByteBuffer)}.
+ * Example of encoding messages directly:
+ * <blockquote><pre>
+ *      byte[] bytes = MessageCodec.encode(messages);
+ *      List&lt;Message&gt; decoded = MessageCodec.decodeAll(bytes);
+ * </pre></blockquote>
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Message
+ * @see Topic
+ */
+public final class MessageCodec {
+    /**
+     * The format version written before each message.
+     */
+    private static final byte VERSION = 1;
+    /**
+     * The bytes of a string or of a byte array are allocated by chunks of this size at most,
+     * so a corrupt length does not allocate more than the bytes actually read.
+     */
+    private static final int READ_CHUNK = 8192;
+
+    // the types of the properties are written as is, hence they share their tags with the content
+    private static final byte NULL = 0;
+    private static final byte STRING = MessageProperties.STRING;
+    private static final byte BYTE = MessageProperties.BYTE;
+    private static final byte SHORT = MessageProperties.SHORT;
+    private static final byte CHAR = MessageProperties.CHAR;
+    private static final byte INT = MessageProperties.INT;
+    private static final byte LONG = MessageProperties.LONG;
+    private static final byte FLOAT = MessageProperties.FLOAT;
+    private static final byte DOUBLE = MessageProperties.DOUBLE;
+    private static final byte BOOLEAN = MessageProperties.BOOLEAN;
+    private static final byte BYTES = 10;
+    private static final byte SERIALIZED = 11;
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Encode a message.
+     *
+     * @param message A {@code Message}
+     * @return the encoded message
+     */
+    public static byte[] encode(Message message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try {
+            new Writer(new DataOutputStream(bytes)).write(message);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode a list of messages, the topics are interned across the list.
+     *
+     * @param messages A list of {@code Message}s
+     * @return the encoded messages
+     */
+    public static byte[] encode(List<Message> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 * messages.size());
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeVarInt(out, messages.size());
+            Writer writer = new Writer(out);
+            for (Message message : messages)
+                writer.write(message);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encode a message into a buffer from its position, e.g into a memory-mapped file,
+     * without going through an intermediate array.
+     *
+     * @param message A {@code Message}
+     * @param buffer  A {@code ByteBuffer}, its position is moved after the encoded message
+     * @throws BufferOverflowException if the message does not fit in the remaining bytes of the buffer,
+     *                                 the position of the buffer is then undefined
+     */
+    public static void encode(Message message, ByteBuffer buffer) {
+        try {
+            new Writer(new BufferOutput(buffer)).write(message);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode a message encoded by {@link #encode(Message)}.
+     *
+     * @param bytes An encoded message
+     * @return the decoded message
+     * @throws IOException if {@code bytes} is not a valid message
+     */
+    public static Message decode(byte[] bytes) throws IOException {
+        return new Reader(new DataInputStream(new ByteArrayInputStream(bytes))).read();
+    }
+
+    /**
+     * Decode a message encoded by {@link #encode(Message, ByteBuffer)}.
+     *
+     * @param buffer A {@code ByteBuffer}, its position is moved after the decoded message
+     * @return the decoded message
+     * @throws IOException if the remaining bytes of the buffer do not start with a valid message
+     */
+    public static Message decode(ByteBuffer buffer) throws IOException {
+        try {
+            return new Reader(new BufferInput(buffer)).read();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Decode a list of messages encoded by {@link #encode(List)}.
+     *
+     * @param bytes Encoded messages
+     * @return the decoded messages
+     * @throws IOException if {@code bytes} is not a valid list of messages
+     */
+    public static List<Message> decodeAll(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int size = readVarInt(in);
+        if (size < 0)
+            throw new StreamCorruptedException("Negative number of messages: " + size);
+        List<Message> messages = new ArrayList<>(Math.min(size, 1024));
+        Reader reader = new Reader(in);
+        for (int i = 0; i < size; i++)
+            messages.add(reader.read());
+        return messages;
+    }
+
+    /**
+     * Writes messages to a {@code DataOutput}, interning their topics.
+     */
+    public static class Writer {
+        private final DataOutput out;
+        private final Map<Topic, Integer> topics = new HashMap<>();
+
+        /**
+         * @param out The output the messages are written to
+         */
+        public Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        /**
+         * Write a message.
+         *
+         * @param message A {@code Message}
+         * @throws IOException if the output fails
+         */
+        public void write(Message message) throws IOException {
+            out.writeByte(VERSION);
+            writeString(out, message.getId());
+            writeString(out, message.getOwner());
+            writeVarLong(out, zigzag(message.getTimestamp()));
+            writeTopic(message.getTopic());
+            MessageProperties properties = message.getProperties();
+            writeVarInt(out, properties.size());
+            for (int i = 0; i < properties.size(); i++) {
+                writeString(out, properties.key(i));
+                writeProperty(out, properties, i);
+            }
+            writeValue(out, message.getContent());
+        }
+
+        private void writeTopic(Topic topic) throws IOException {
+            Integer index = topics.get(topic);
+            if (index != null) {
+                writeVarInt(out, index + 1);
+                return;
+            }
+            topics.put(topic, topics.size());
+            writeVarInt(out, 0);
+            writeString(out, topic.getName());
+        }
+    }
+
+    /**
+     * Reads messages written by a {@link Writer} from a {@code DataInput}.
+     */
+    public static class Reader {
+        private final DataInput in;
+        private final List<Topic> topics = new ArrayList<>();
+
+        /**
+         * @param in The input the messages are read from
+         */
+        public Reader(DataInput in) {
+            this.in = in;
+        }
+
+        /**
+         * Read a message.
+         *
+         * @return the message
+         * @throws IOException if the input fails or is not a valid message
+         */
+        public Message read() throws IOException {
+            byte version = in.readByte();
+            if (version != VERSION)
+                throw new StreamCorruptedException("Unknown message format version: " + version);
+            String id = readString(in);
+            String owner = readString(in);
+            long timestamp = unzigzag(readVarLong(in));
+            Topic topic = readTopic();
+            int size = readVarInt(in);
+            MessageProperties.Builder properties = new MessageProperties.Builder();
+            for (int i = 0; i < size; i++) {
+                String key = readString(in);
+                if (key == null)
+                    throw new StreamCorruptedException("Null message property");
+                readProperty(in, key, properties);
+            }
+            Serializable content = (Serializable) readValue(in);
+            return new Message(id, owner, timestamp, topic, content, properties.build());
+        }
+
+        private Topic readTopic() throws IOException {
+            int index = readVarInt(in);
+            if (index > 0) {
+                if (index > topics.size())
+                    throw new StreamCorruptedException("Unknown topic index: " + index);
+                return topics.get(index - 1);
+            }
+            Topic topic;
+            try {
+                topic = Topic.valueOf(readString(in));
+            } catch (IllegalArgumentException e) {
+                throw new StreamCorruptedException(e.getMessage());
+            }
+            topics.add(topic);
+            return topic;
+        }
+    }
+
+    private static void writeProperty(DataOutput out, MessageProperties properties, int i) throws IOException {
+        byte type = properties.type(i);
+        long bits = properties.bits(i);
+        out.writeByte(type);
+        switch (type) {
+            case STRING:
+                writeString(out, properties.string(i));
+                break;
+            case BYTE:
+            case BOOLEAN:
+                out.writeByte((int) bits);
+                break;
+            case SHORT:
+            case INT:
+                writeVarInt(out, zigzag((int) bits));
+                break;
+            case CHAR:
+                writeVarInt(out, (int) bits);
+                break;
+            case LONG:
+                writeVarLong(out, zigzag(bits));
+                break;
+            case FLOAT:
+                out.writeInt((int) bits);
+                break;
+            default:
+                out.writeLong(bits);
+        }
+    }
+
+    private static void readProperty(DataInput in, String key, MessageProperties.Builder properties) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case STRING:
+                String value = readString(in);
+                if (value == null)
+                    throw new StreamCorruptedException("Null message property");
+                properties.put(key, value);
+                break;
+            case BYTE:
+                properties.put(key, type, in.readByte());
+                break;
+            case BOOLEAN:
+                properties.put(key, type, in.readByte() != 0 ? 1 : 0);
+                break;
+            case SHORT:
+                properties.put(key, type, (short) unzigzag(readVarInt(in)));
+                break;
+            case INT:
+                properties.put(key, type, unzigzag(readVarInt(in)));
+                break;
+            case CHAR:
+                properties.put(key, type, (char) readVarInt(in));
+                break;
+            case LONG:
+                properties.put(key, type, unzigzag(readVarLong(in)));
+                break;
+            case FLOAT:
+                properties.put(key, type, in.readInt());
+                break;
+            case DOUBLE:
+                properties.put(key, type, in.readLong());
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown property type: " + type);
+        }
+    }
+
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            writeVarInt(out, zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigzag((Long) value));
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            writeVarInt(out, zigzag((Short) value));
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            writeVarInt(out, (Character) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else {
+            out.writeByte(SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(value);
+            }
+            writeBytes(out, bytes.toByteArray());
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INT:
+                return unzigzag(readVarInt(in));
+            case LONG:
+                return unzigzag(readVarLong(in));
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return (short) unzigzag(readVarInt(in));
+            case CHAR:
+                return (char) readVarInt(in);
+            case FLOAT:
+                return in.readFloat();
+            case BYTES:
+                return readBytes(in);
+            case SERIALIZED:
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                    return objects.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            default:
+                throw new StreamCorruptedException("Unknown value type: " + type);
+        }
+    }
+
+    /**
+     * Write a string as its UTF-8 length plus one, 0 standing for null, followed by its UTF-8 bytes.
+     */
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0)
+            return null;
+        if (length < 0)
+            throw new StreamCorruptedException("Negative string length: " + length);
+        return new String(readFully(in, length - 1), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0)
+            throw new StreamCorruptedException("Negative byte array length: " + length);
+        return readFully(in, length);
+    }
+
+    /**
+     * Read a decoded number of bytes, which is not trusted: the array grows by chunks as the bytes are read.
+     */
+    private static byte[] readFully(DataInput in, int length) throws IOException {
+        byte[] bytes = new byte[Math.min(length, READ_CHUNK)];
+        int read = 0;
+        while (true) {
+            in.readFully(bytes, read, bytes.length - read);
+            read = bytes.length;
+            if (read == length)
+                return bytes;
+            bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * read));
+        }
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte(((int) value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A {@code DataOutput} writing to a {@code ByteBuffer}, in the same byte order as a {@code DataOutputStream}.
+     */
+    private static final class BufferOutput implements DataOutput {
+        private final ByteBuffer buffer;
+
+        private BufferOutput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b) {
+            buffer.put(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+
+        @Override
+        public void writeBoolean(boolean v) {
+            buffer.put(v ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        public void writeByte(int v) {
+            buffer.put((byte) v);
+        }
+
+        @Override
+        public void writeShort(int v) {
+            buffer.putShort((short) v);
+        }
+
+        @Override
+        public void writeChar(int v) {
+            buffer.putChar((char) v);
+        }
+
+        @Override
+        public void writeInt(int v) {
+            buffer.putInt(v);
+        }
+
+        @Override
+        public void writeLong(long v) {
+            buffer.putLong(v);
+        }
+
+        @Override
+        public void writeFloat(float v) {
+            buffer.putFloat(v);
+        }
+
+        @Override
+        public void writeDouble(double v) {
+            buffer.putDouble(v);
+        }
+
+        @Override
+        public void writeBytes(String s) {
+            for (int i = 0; i < s.length(); i++)
+                buffer.put((byte) s.charAt(i));
+        }
+
+        @Override
+        public void writeChars(String s) {
+            for (int i = 0; i < s.length(); i++)
+                buffer.putChar(s.charAt(i));
+        }
+
+        @Override
+        public void writeUTF(String s) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(s.length() + 2);
+            new DataOutputStream(bytes).writeUTF(s);
+            buffer.put(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * A {@code DataInput} reading from a {@code ByteBuffer}, in the same byte order as a {@code DataInputStream}.
+     */
+    private static final class BufferInput implements DataInput {
+        private final ByteBuffer buffer;
+
+        private BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void readFully(byte[] b) {
+            buffer.get(b);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) {
+            buffer.get(b, off, len);
+        }
+
+        @Override
+        public int skipBytes(int n) {
+            int skipped = Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        @Override
+        public byte readByte() {
+            return buffer.get();
+        }
+
+        @Override
+        public int readUnsignedByte() {
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public short readShort() {
+            return buffer.getShort();
+        }
+
+        @Override
+        public int readUnsignedShort() {
+            return buffer.getShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar() {
+            return buffer.getChar();
+        }
+
+        @Override
+        public int readInt() {
+            return buffer.getInt();
+        }
+
+        @Override
+        public long readLong() {
+            return buffer.getLong();
+        }
+
+        @Override
+        public float readFloat() {
+            return buffer.getFloat();
+        }
+
+        @Override
+        public double readDouble() {
+            return buffer.getDouble();
+        }
+
+        /**
+         * Reads a line as {@link DataInputStream#readLine()} does: each byte is a character,
+         * and a line ends with a {@code '\n'}, a {@code '\r'} or a {@code "\r\n"}.
+         *
+         * @return the next line without its terminator, or null at the end of the buffer
+         */
+        @Override
+        public String readLine() {
+            if (!buffer.hasRemaining())
+                return null;
+            StringBuilder line = new StringBuilder();
+            while (buffer.hasRemaining()) {
+                char c = (char) (buffer.get() & 0xFF);
+                if (c == '\n')
+                    break;
+                if (c == '\r') {
+                    if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n')
+                        buffer.get();
+                    break;
+                }
+                line.append(c);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+    }
+
+    /**
+     * The serialized form of a {@code Message}, written with this codec.
+     * <p>
+     * {@code Message} replaces itself by an instance of this class when it is serialized,
+     * and this class resolves to the decoded message when it is deserialized.
+     */
+    static final class SerializedMessage implements Externalizable {
+        private static final long serialVersionUID = 1L;
+        private Message message;
+
+        /**
+         * Used by Java serialization only.
+         */
+        public SerializedMessage() {
+        }
+
+        SerializedMessage(Message message) {
+            this.message = message;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            new Writer(out).write(message);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            message = new Reader(in).read();
+        }
+
+        private Object readResolve() {
+            return message;
+        }
+    }
+}
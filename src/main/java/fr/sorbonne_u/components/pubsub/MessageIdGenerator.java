@@ -0,0 +1,24 @@
+package fr.sorbonne_u.components.pubsub;
+
+/**
+ * A {@code MessageIdGenerator} gives each new {@link Message} its ID.
+ * <p>
+ * Generators are called by {@link Message.Builder} on the publishing thread,
+ * hence they must be thread safe and should be cheap.
+ * The default generator is a {@link SnowflakeIdGenerator}, another one can be plugged with
+ * {@link Message#setIdGenerator(MessageIdGenerator)}.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see SnowflakeIdGenerator
+ * @see Message
+ */
+@FunctionalInterface
+public interface MessageIdGenerator {
+    /**
+     * Generate a new ID.
+     *
+     * @return a unique ID
+     */
+    String nextId();
+}
@@ -0,0 +1,286 @@
+package fr.sorbonne_u.components.pubsub;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The immutable properties of a {@link Message}.
+ * <p>
+ * Properties are kept in parallel arrays: their keys, their types and their values,
+ * primitive values are stored unboxed as the bits of a {@code long}
+ * and {@code String} values in an array of their own.
+ * A message has a few properties, hence finding one is a scan of the keys,
+ * and reading a primitive property allocates nothing.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Message
+ * @see MessageCodec
+ */
+final class MessageProperties {
+    static final byte STRING = 1;
+    static final byte BYTE = 2;
+    static final byte SHORT = 3;
+    static final byte CHAR = 4;
+    static final byte INT = 5;
+    static final byte LONG = 6;
+    static final byte FLOAT = 7;
+    static final byte DOUBLE = 8;
+    static final byte BOOLEAN = 9;
+
+    static final MessageProperties EMPTY = new MessageProperties(new String[0], new byte[0], new long[0], new String[0]);
+
+    private final String[] keys;
+    private final byte[] types;
+    private final long[] values;
+    private final String[] strings;
+
+    private MessageProperties(String[] keys, byte[] types, long[] values, String[] strings) {
+        this.keys = keys;
+        this.types = types;
+        this.values = values;
+        this.strings = strings;
+    }
+
+    /**
+     * @return the number of properties
+     */
+    int size() {
+        return keys.length;
+    }
+
+    String key(int i) {
+        return keys[i];
+    }
+
+    byte type(int i) {
+        return types[i];
+    }
+
+    /**
+     * @return the bits of a primitive property
+     */
+    long bits(int i) {
+        return values[i];
+    }
+
+    /**
+     * @return true if the property is a number, i.e neither a {@code String} nor a {@code boolean}
+     */
+    boolean isNumber(int i) {
+        return types[i] != STRING && types[i] != BOOLEAN;
+    }
+
+    /**
+     * @return the value of a number property as a {@code double}
+     */
+    double number(int i) {
+        switch (types[i]) {
+            case FLOAT:
+                return Float.intBitsToFloat((int) values[i]);
+            case DOUBLE:
+                return Double.longBitsToDouble(values[i]);
+            default:
+                return values[i];
+        }
+    }
+
+    /**
+     * @return the value of a {@code String} property
+     */
+    String string(int i) {
+        return strings[i];
+    }
+
+    /**
+     * @param key A property key
+     * @return the index of the property, or -1 if there is no such property
+     */
+    int indexOf(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key || keys[i].equals(key))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the bits of a primitive property.
+     *
+     * @param key  A property key
+     * @param type The expected type of the property
+     * @return the bits of the property value
+     * @throws NullPointerException if there is no such property
+     * @throws ClassCastException   if the property is not of the expected type
+     */
+    long bits(String key, byte type) {
+        int i = indexOf(key);
+        if (i < 0)
+            throw new NullPointerException("No property: " + key);
+        if (types[i] != type)
+            throw new ClassCastException("Property " + key + " is a " + typeName(types[i]) + " not a " + typeName(type));
+        return values[i];
+    }
+
+    /**
+     * Get a {@code String} property.
+     *
+     * @param key A property key
+     * @return the property value, or null if there is no such property
+     * @throws ClassCastException if the property is not a {@code String}
+     */
+    String string(String key) {
+        int i = indexOf(key);
+        if (i < 0)
+            return null;
+        if (types[i] != STRING)
+            throw new ClassCastException("Property " + key + " is a " + typeName(types[i]) + " not a String");
+        return strings[i];
+    }
+
+    /**
+     * Get a property value, boxing primitive values.
+     *
+     * @param i A property index
+     * @return the property value
+     */
+    Object get(int i) {
+        long bits = values[i];
+        switch (types[i]) {
+            case STRING:
+                return strings[i];
+            case BYTE:
+                return (byte) bits;
+            case SHORT:
+                return (short) bits;
+            case CHAR:
+                return (char) bits;
+            case INT:
+                return (int) bits;
+            case LONG:
+                return bits;
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                return bits != 0;
+        }
+    }
+
+    private static String typeName(byte type) {
+        switch (type) {
+            case STRING:
+                return "String";
+            case BYTE:
+                return "byte";
+            case SHORT:
+                return "short";
+            case CHAR:
+                return "char";
+            case INT:
+                return "int";
+            case LONG:
+                return "long";
+            case FLOAT:
+                return "float";
+            case DOUBLE:
+                return "double";
+            default:
+                return "boolean";
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MessageProperties)) return false;
+        MessageProperties that = (MessageProperties) o;
+        return Arrays.equals(keys, that.keys) &&
+                Arrays.equals(types, that.types) &&
+                Arrays.equals(values, that.values) &&
+                Arrays.equals(strings, that.strings);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(keys), Arrays.hashCode(values));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0)
+                builder.append(", ");
+            builder.append(keys[i]).append('=').append(get(i));
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Collects properties, a property added twice keeps its last value.
+     */
+    static final class Builder {
+        private String[] keys = EMPTY.keys;
+        private byte[] types = EMPTY.types;
+        private long[] values = EMPTY.values;
+        private String[] strings = EMPTY.strings;
+        private int size;
+
+        /**
+         * Add a primitive property.
+         *
+         * @param key  A non null property key
+         * @param type The property type
+         * @param bits The bits of the property value
+         */
+        void put(String key, byte type, long bits) {
+            put(key, type, bits, null);
+        }
+
+        /**
+         * Add a {@code String} property.
+         *
+         * @param key   A non null property key
+         * @param value A non null property value
+         */
+        void put(String key, String value) {
+            put(key, STRING, 0, Objects.requireNonNull(value));
+        }
+
+        private void put(String key, byte type, long bits, String string) {
+            Objects.requireNonNull(key);
+            int i = 0;
+            while (i < size && !keys[i].equals(key))
+                i++;
+            if (i == size) {
+                if (size == keys.length)
+                    grow();
+                size++;
+            }
+            keys[i] = key;
+            types[i] = type;
+            values[i] = bits;
+            strings[i] = string;
+        }
+
+        private void grow() {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            types = Arrays.copyOf(types, capacity);
+            values = Arrays.copyOf(values, capacity);
+            strings = Arrays.copyOf(strings, capacity);
+        }
+
+        MessageProperties build() {
+            if (size == 0)
+                return EMPTY;
+            return new MessageProperties(
+                    Arrays.copyOf(keys, size),
+                    Arrays.copyOf(types, size),
+                    Arrays.copyOf(values, size),
+                    Arrays.copyOf(strings, size));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package fr.sorbonne_u.components.pubsub;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code SnowflakeIdGenerator} generates unique, increasing, IDs without locks nor randomness.
+ * <p>
+ * An ID is a 64 bits number made of:
+ * <ul>
+ * <li>41 bits of milliseconds since 2020-01-01, i.e about 69 years.</li>
+ * <li>10 bits of node ID, which tells apart the generators of different JVMs.</li>
+ * <li>12 bits of sequence, i.e 4096 IDs per millisecond.</li>
+ * </ul>
+ * The time and the sequence are kept in a single {@link AtomicLong}, when the sequence of a millisecond
+ * is exhausted, or when the clock goes backward, the generator keeps counting from its last ID,
+ * so that IDs always increase, and the clock catches up later.
+ * <p>
+ * {@link #nextId()} writes IDs in hexadecimal.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see MessageIdGenerator
+ */
+public class SnowflakeIdGenerator implements MessageIdGenerator {
+    /**
+     * 2020-01-01T00:00:00Z in milliseconds.
+     */
+    private static final long EPOCH = 1577836800000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    /**
+     * The maximum node ID.
+     */
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private final long node;
+    /**
+     * The milliseconds and sequence of the last ID.
+     */
+    private final AtomicLong last = new AtomicLong();
+
+    /**
+     * Creates a generator whose node ID is derived from the owner and the process of this JVM.
+     * <p>
+     * Two JVMs may derive the same node ID, use {@link #SnowflakeIdGenerator(int)}
+     * when the nodes of a system are known.
+     * </p>
+     */
+    public SnowflakeIdGenerator() {
+        this(defaultNodeId());
+    }
+
+    /**
+     * Creates a generator with a specific node ID.
+     *
+     * @param nodeId An {@code int} value between 0 and {@link #MAX_NODE_ID}
+     * @throws IllegalArgumentException if {@code nodeId} is out of range
+     */
+    public SnowflakeIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID)
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID);
+        this.node = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    private static int defaultNodeId() {
+        // the runtime name is "pid@host" on the usual JVMs
+        int hash = (Message.localOwner() + ManagementFactory.getRuntimeMXBean().getName()).hashCode();
+        hash ^= hash >>> 16;
+        return hash & MAX_NODE_ID;
+    }
+
+    /**
+     * Generate a new ID as a number.
+     *
+     * @return a unique ID, greater than all the IDs previously generated by this generator
+     */
+    public long next() {
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = last.get();
+            next = now > prev ? now : prev + 1;
+        } while (!last.compareAndSet(prev, next));
+
+        long millis = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1 << SEQUENCE_BITS) - 1);
+        return millis << (NODE_BITS + SEQUENCE_BITS) | node | sequence;
+    }
+
+    @Override
+    public String nextId() {
+        return Long.toHexString(next());
+    }
+}
@@ -0,0 +1,126 @@
+package fr.sorbonne_u.components.pubsub;
+
+import java.io.Serializable;
+
+/**
+ * A {@code StartPosition} tells from which message a subscription to a topic starts,
+ * when the {@code PubSub} persists the published messages in a log,
+ * or keeps the last messages of each topic in memory.
+ * <p>
+ * A subscription that starts before the end of the log first receives the retained messages
+ * from its position, read from the log in batches, then the messages published since,
+ * as a regular subscription. Each message is received once and in the order of the log.
+ * <ul>
+ * <li>{@link #earliest()}: from the first retained message.</li>
+ * <li>{@link #latest()}: only the messages published from now on, as a regular subscription.</li>
+ * <li>{@link #offset(long)}: from the message at an offset of the log of the topic.</li>
+ * <li>{@link #timestamp(long)}: from the first message appended to the log at or after a time.</li>
+ * <li>{@link #last(int)}: from the last messages of the topic, kept in memory if the {@code PubSub}
+ * has a replay buffer, otherwise read from the log.</li>
+ * </ul>
+ * Example:
+ * <blockquote><pre>
+ *      subscriber.subscribe(someTopic, StartPosition.earliest());
+ * </pre></blockquote>
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see fr.sorbonne_u.components.pubsub.interfaces.SubscriberService#subscribe(Topic, StartPosition)
+ */
+public final class StartPosition implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final StartPosition EARLIEST = new StartPosition(Kind.EARLIEST, 0);
+    private static final StartPosition LATEST = new StartPosition(Kind.LATEST, 0);
+
+    /**
+     * The kinds of start positions.
+     */
+    public enum Kind {
+        EARLIEST, LATEST, OFFSET, TIMESTAMP, LAST
+    }
+
+    private final Kind kind;
+    private final long value;
+
+    private StartPosition(Kind kind, long value) {
+        this.kind = kind;
+        this.value = value;
+    }
+
+    /**
+     * @return the position of the first retained message
+     */
+    public static StartPosition earliest() {
+        return EARLIEST;
+    }
+
+    /**
+     * @return the position of the next published message
+     */
+    public static StartPosition latest() {
+        return LATEST;
+    }
+
+    /**
+     * @param offset The offset of a message in the log of its topic, the first message has offset 0
+     * @return the position of the message at {@code offset}
+     * @throws IllegalArgumentException if {@code offset} is < 0
+     */
+    public static StartPosition offset(long offset) {
+        if (offset < 0)
+            throw new IllegalArgumentException("offset must be >= 0");
+        return new StartPosition(Kind.OFFSET, offset);
+    }
+
+    /**
+     * @param timestamp A time in milliseconds
+     * @return the position of the first message appended to the log at or after {@code timestamp}
+     */
+    public static StartPosition timestamp(long timestamp) {
+        return new StartPosition(Kind.TIMESTAMP, timestamp);
+    }
+
+    /**
+     * @param count A number of messages
+     * @return the position of the {@code count}-th last message
+     * @throws IllegalArgumentException if {@code count} is <= 0
+     */
+    public static StartPosition last(int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("count must be > 0");
+        return new StartPosition(Kind.LAST, count);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the offset, the timestamp or the count of this position, 0 for {@code EARLIEST} and {@code LATEST}
+     */
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StartPosition)) return false;
+        StartPosition that = (StartPosition) o;
+        return kind == that.kind && value == that.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * kind.hashCode() + Long.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return "StartPosition{" +
+                "kind=" + kind +
+                ", value=" + value +
+                '}';
+    }
+}
@@ -12,6 +12,20 @@ import java.util.Objects;
  * The {@code Topic} class represents a <b>unique</b> identifier
  * on which messages will be published on, and subscribers will subscribe to.
  * </p>
+ * <p>
+ * Topics are hierarchical, their levels are separated by a {@code '/'}, e.g {@code "sports/tennis/scores"}.
+ * A subscriber can use wildcards to subscribe to several topics at once:
+ * <ul>
+ * <li>
+ * {@code '+'} matches exactly one level, e.g {@code "sports/+/scores"}.
+ * </li>
+ * <li>
+ * {@code '#'} matches any number of levels, including none, and must be the last level,
+ * e.g {@code "sports/#"} matches {@code "sports"} and {@code "sports/tennis/scores"}.
+ * </li>
+ * </ul>
+ * Messages can only be published on topics without wildcards.
+ * </p>
  *
  * @author Nadir Belarouci
  * @author katia Amichi
@@ -24,10 +38,26 @@ public class Topic implements Serializable {
      * A final topic that hosts will subscribe to on a distributed environment.
      */
     public static final Topic ROOT = new Topic("ROOT");
+    /**
+     * The levels separator.
+     */
+    public static final String SEPARATOR = "/";
+    /**
+     * The single level wildcard.
+     */
+    public static final String SINGLE_LEVEL_WILDCARD = "+";
+    /**
+     * The multi level wildcard.
+     */
+    public static final String MULTI_LEVEL_WILDCARD = "#";
     /**
      * name of the topic
      */
     private final String name;
+    /**
+     * The topic levels, computed lazily.
+     */
+    private transient String[] levels;
 
     /**
      * Creates a new topic.
@@ -48,7 +78,8 @@ public class Topic implements Serializable {
      *
      * @param name A {@code String}
      * @return a new topic
-     * @throws IllegalArgumentException when name is null or empty, or name == ROOT.
+     * @throws IllegalArgumentException when name is null or empty, or name == ROOT,
+     *                                  or when a wildcard is misplaced.
      */
     public static Topic of(String name) {
         if (name == null || name.isEmpty())
@@ -56,8 +87,29 @@ public class Topic implements Serializable {
         if (name.equals(ROOT.name))
             throw new IllegalArgumentException("Topic cannot be equal to ROOT. RESERVED");
 
-        return new Topic(name);
+        Topic topic = new Topic(name);
+        String[] levels = topic.getLevels();
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if (level.contains(MULTI_LEVEL_WILDCARD) && (!level.equals(MULTI_LEVEL_WILDCARD) || i != levels.length - 1))
+                throw new IllegalArgumentException("'#' must be the last level of a topic: " + name);
+            if (level.contains(SINGLE_LEVEL_WILDCARD) && !level.equals(SINGLE_LEVEL_WILDCARD))
+                throw new IllegalArgumentException("'+' must occupy a whole level of a topic: " + name);
+        }
+        return topic;
+
+    }
 
+    /**
+     * Get the topic of a name, including {@code ROOT}, used to read topics back from the wire.
+     *
+     * @param name A {@code String}
+     * @return a topic
+     * @throws IllegalArgumentException if the name is not a valid topic name
+     * @see MessageCodec
+     */
+    static Topic valueOf(String name) {
+        return ROOT.name.equals(name) ? ROOT : of(name);
     }
 
     /**
@@ -67,6 +119,56 @@ public class Topic implements Serializable {
         return name;
     }
 
+    /**
+     * Returns the levels of this topic, i.e its name split by {@code '/'}.
+     * <p>
+     * Note that the returned array is shared and must not be modified.
+     * </p>
+     *
+     * @return the topic's levels
+     */
+    public String[] getLevels() {
+        String[] levels = this.levels;
+        if (levels == null)
+            this.levels = levels = name.split(SEPARATOR, -1);
+        return levels;
+    }
+
+    /**
+     * Check if this topic contains a wildcard.
+     *
+     * @return true if one of the topic levels is a wildcard
+     */
+    public boolean isWildcard() {
+        for (String level : getLevels()) {
+            if (level.equals(SINGLE_LEVEL_WILDCARD) || level.equals(MULTI_LEVEL_WILDCARD))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check if a topic is matched by this topic, i.e a message published
+     * on {@code topic} is received by the subscribers of this topic.
+     *
+     * @param topic A {@code Topic} without wildcards
+     * @return true if this topic matches {@code topic}
+     */
+    public boolean matches(Topic topic) {
+        String[] patterns = getLevels();
+        String[] levels = topic.getLevels();
+        int i = 0;
+        for (; i < patterns.length; i++) {
+            if (patterns[i].equals(MULTI_LEVEL_WILDCARD))
+                return true;
+            if (i == levels.length)
+                return false;
+            if (!patterns[i].equals(SINGLE_LEVEL_WILDCARD) && !patterns[i].equals(levels[i]))
+                return false;
+        }
+        return i == levels.length;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -77,7 +179,7 @@ public class Topic implements Serializable {
 
     @Override
     public int hashCode() {
-        return Objects.hash(getName());
+        return name.hashCode();
     }
 
     @Override
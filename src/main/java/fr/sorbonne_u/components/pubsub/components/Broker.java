@@ -1,13 +1,24 @@
 package fr.sorbonne_u.components.pubsub.components;
 
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * A {@code Broker} is the heart of a {@code PubSub} component, in fact The {@code PubSub} class
@@ -28,6 +39,36 @@ import java.util.function.Predicate;
  * </p>
  *
  * <p>
+ * Subscribers are matched by content as well as by topic: the declarative
+ * {@link fr.sorbonne_u.components.pubsub.Filter}s of the subscribers of a topic are indexed by the
+ * route of the topic, see {@link fr.sorbonne_u.components.pubsub.FilterIndex}, so matching a message
+ * does not test every filter.
+ * </p>
+ *
+ * <p>
+ * A broker may also persist the published messages in a {@link MessageLog}, a message is appended
+ * to the log of its topic before it is delivered, so it survives a restart of the {@code PubSub},
+ * and a subscriber can start from a past position of the log, see {@link fr.sorbonne_u.components.pubsub.StartPosition}.
+ * A broker may also keep the last messages of each topic in a preallocated {@link RingBuffer},
+ * a cheap, non-durable way for a new subscriber to get them right away.
+ * </p>
+ *
+ * <p>
+ * A broker may be split in shards, see {@link #Broker(int, int, int, MessageLog, int, boolean, int)}:
+ * a topic belongs to the shard of its hash, and each shard has its own executors, so a hot topic
+ * does not slow down the topics of the other shards. The publications of a shard are delivered
+ * by a single thread, in order, hence the messages published on a topic by a thread are delivered
+ * in the order they were published. A subscription to a wildcard topic, or to {@code ROOT},
+ * is registered in every shard.
+ * </p>
+ *
+ * <p>
+ * A topic may be compacted, see {@link #compact(Topic, String)}: the broker keeps the last message
+ * of each key of the topic in a {@link LastValueCache}, a new subscriber to the topic first receives
+ * this snapshot of the current values then the published messages.
+ * </p>
+ *
+ * <p>
  * All this class methods could have been embedded directly in the {@code PubSub}
  * component, but if we did so, the class would become hard to test.
  * Since all requests are handled asynchronously, returning a {@code CompletableFuture}
@@ -47,48 +88,334 @@ import java.util.function.Predicate;
  */
 public class Broker {
     /**
-     * An executor for handling message publishing.
+     * The shards of this broker, a single one unless the broker is sharded, see {@link #shard(Topic)}.
      */
-    private final PublisherExecutor publisherExecutor;
+    private final Shard[] shards;
     /**
-     * An executor for handling subscriber requests.
+     * The log of the published messages, null if messages are not persisted.
      */
-    private final SubscriberExecutor subscriberExecutor;
+    private final MessageLog log;
+    /**
+     * The number of messages kept per topic, 0 if the last messages are not kept.
+     */
+    private final int replayBufferSize;
+    /**
+     * The last messages of each topic.
+     */
+    private final ConcurrentHashMap<Topic, RingBuffer<Message>> replayBuffers = new ConcurrentHashMap<>();
+    /**
+     * The last values of the compacted topics.
+     */
+    private final ConcurrentHashMap<Topic, LastValueCache> lastValues = new ConcurrentHashMap<>();
 
     /**
      * Creates a new broker instance with default parallelism equals to <b>10</b> for both the
-     * {@link #subscriberExecutor} and the {@link #publisherExecutor}.
+     * {@code SubscriberExecutor} and the {@code PublisherExecutor}.
      */
     protected Broker() {
-        this.publisherExecutor = new PublisherExecutor();
-        this.subscriberExecutor = new SubscriberExecutor();
+        this.shards = new Shard[]{new Shard(new SubscriberExecutor(), new PublisherExecutor())};
+        this.log = null;
+        this.replayBufferSize = 0;
     }
 
     /**
      * Creates a new broker instance with specific parallelism values  for both the
-     * {@link #subscriberExecutor} and the {@link #publisherExecutor}.
+     * {@code SubscriberExecutor} and the {@code PublisherExecutor}.
      *
      * @param subscribingParallelism The subscriberExecutor parallelism
      * @param publishingParallelism  The publisherExecutor parallelism
      */
     protected Broker(int subscribingParallelism, int publishingParallelism) {
-        this.subscriberExecutor = new SubscriberExecutor(subscribingParallelism);
-        this.publisherExecutor = new PublisherExecutor(publishingParallelism);
+        this.shards = new Shard[]{new Shard(new SubscriberExecutor(subscribingParallelism),
+                new PublisherExecutor(publishingParallelism))};
+        this.log = null;
+        this.replayBufferSize = 0;
+    }
+
+    /**
+     * Creates a new broker instance with specific parallelism values  for both the
+     * {@code SubscriberExecutor} and the {@code PublisherExecutor},
+     * and a specific delivery chunk size for the {@code PublisherExecutor}.
+     *
+     * @param subscribingParallelism The subscriberExecutor parallelism
+     * @param publishingParallelism  The publisherExecutor parallelism
+     * @param deliveryChunkSize      The maximum number of subscribers delivered by a single task
+     */
+    protected Broker(int subscribingParallelism, int publishingParallelism, int deliveryChunkSize) {
+        this(subscribingParallelism, publishingParallelism, deliveryChunkSize, null, 0);
+    }
+
+    /**
+     * Creates a new broker instance which persists the published messages in a log.
+     *
+     * @param subscribingParallelism The subscriberExecutor parallelism
+     * @param publishingParallelism  The publisherExecutor parallelism
+     * @param deliveryChunkSize      The maximum number of subscribers delivered by a single task
+     * @param log                    The log of the published messages, or null to not persist them
+     * @param replayBufferSize       The number of messages kept in memory per topic, rounded up
+     *                               to the next power of 2, 0 to not keep them
+     */
+    protected Broker(int subscribingParallelism, int publishingParallelism, int deliveryChunkSize,
+                     MessageLog log, int replayBufferSize) {
+        this(subscribingParallelism, publishingParallelism, deliveryChunkSize, log, replayBufferSize, false);
+    }
+
+    /**
+     * Creates a new broker instance whose executors may handle the requests in virtual threads,
+     * see {@link HandlerExecutor}.
+     *
+     * @param subscribingParallelism The subscriberExecutor parallelism
+     * @param publishingParallelism  The publisherExecutor parallelism
+     * @param deliveryChunkSize      The maximum number of subscribers delivered by a single task
+     * @param log                    The log of the published messages, or null to not persist them
+     * @param replayBufferSize       The number of messages kept in memory per topic, rounded up
+     *                               to the next power of 2, 0 to not keep them
+     * @param virtualThreads         true to handle each request in a new virtual thread
+     * @throws UnsupportedOperationException if {@code virtualThreads} is true and the JVM does not support them
+     */
+    protected Broker(int subscribingParallelism, int publishingParallelism, int deliveryChunkSize,
+                     MessageLog log, int replayBufferSize, boolean virtualThreads) {
+        this(subscribingParallelism, publishingParallelism, deliveryChunkSize, log, replayBufferSize, virtualThreads, 1);
+    }
+
+    /**
+     * Creates a new broker instance split in shards, a topic belongs to the shard of its hash.
+     * <p>
+     * Each shard has a {@code SubscriberExecutor}, whose parallelism is its share of
+     * {@code subscribingParallelism}, and a single-threaded {@code PublisherExecutor} which delivers
+     * the publications of the shard in order, so {@code publishingParallelism} and {@code deliveryChunkSize}
+     * are not used, and the publications are not handled in virtual threads, only the subscriber requests.
+     * A broker with a single shard is a broker as {@link #Broker(int, int, int, MessageLog, int, boolean)}.
+     * </p>
+     *
+     * @param subscribingParallelism The parallelism of the subscriberExecutors of all the shards
+     * @param publishingParallelism  The publisherExecutor parallelism, when there is a single shard
+     * @param deliveryChunkSize      The maximum number of subscribers delivered by a single task,
+     *                               when there is a single shard
+     * @param log                    The log of the published messages, or null to not persist them
+     * @param replayBufferSize       The number of messages kept in memory per topic, rounded up
+     *                               to the next power of 2, 0 to not keep them
+     * @param virtualThreads         true to handle each request in a new virtual thread
+     * @param shardCount             The number of shards
+     * @throws IllegalArgumentException      if {@code shardCount} is <= 0
+     * @throws UnsupportedOperationException if {@code virtualThreads} is true and the JVM does not support them
+     */
+    protected Broker(int subscribingParallelism, int publishingParallelism, int deliveryChunkSize,
+                     MessageLog log, int replayBufferSize, boolean virtualThreads, int shardCount) {
+        if (replayBufferSize < 0)
+            throw new IllegalArgumentException("replayBufferSize must be >= 0");
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("shardCount must be > 0");
+        this.shards = new Shard[shardCount];
+        if (shardCount == 1) {
+            shards[0] = new Shard(new SubscriberExecutor(subscribingParallelism, virtualThreads),
+                    new PublisherExecutor(publishingParallelism, deliveryChunkSize, virtualThreads));
+        } else {
+            // the subscribers are registered by any shard, their statistics are shared
+            ConcurrentHashMap<String, SubscriberStats> subscriberStats = new ConcurrentHashMap<>();
+            int parallelism = Math.max(1, subscribingParallelism / shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                // a single thread delivering inline keeps the order of the publications
+                shards[i] = new Shard(new SubscriberExecutor(parallelism, virtualThreads),
+                        new PublisherExecutor(1, Integer.MAX_VALUE, false, subscriberStats));
+            }
+        }
+        this.log = log;
+        this.replayBufferSize = replayBufferSize;
+    }
+
+    /**
+     * Compact a topic: keep the last message of each key of the topic, where the key of a message
+     * is the value of one of its properties. A new subscriber to the topic first receives the last
+     * value of each key, then the published messages, unless it starts from {@link StartPosition#latest()}.
+     * <p>
+     * The memory of a compacted topic is bounded by its number of keys, a message without the key
+     * property is delivered but not kept. A wildcard subscription does not receive the snapshot.
+     * </p>
+     *
+     * @param topic       A {@code Topic} without wildcards
+     * @param keyProperty The property whose value is the key of a message, e.g {@code "symbol"}
+     * @throws IllegalArgumentException if {@code topic} has wildcards or is already compacted on another property
+     */
+    protected void compact(Topic topic, String keyProperty) {
+        Objects.requireNonNull(topic, "Topic cannot be null.");
+        Objects.requireNonNull(keyProperty, "Key property cannot be null.");
+        if (topic.isWildcard())
+            throw new IllegalArgumentException("Cannot compact a wildcard topic: " + topic);
+        LastValueCache cache = lastValues.computeIfAbsent(topic, t -> new LastValueCache(keyProperty));
+        if (!cache.getKeyProperty().equals(keyProperty))
+            throw new IllegalArgumentException("The topic " + topic + " is compacted on " + cache.getKeyProperty());
     }
 
     /**
      * Publish a message to subscribers.
+     * <p>
+     * When the broker has a {@link MessageLog}, the message is appended to it first,
+     * and it is not delivered if it cannot be appended.
+     * When the topic is compacted, the message replaces the last value of its key.
+     * </p>
      *
      * @param message A {@code Message}
-     * @return A {@code CompletableFuture} for this async request
+     * @return A {@code CompletableFuture} for this async request, completed exceptionally
+     * with an {@code IOException} if the message cannot be appended to the log
      */
     protected CompletableFuture<Void> publish(Message message) {
         Objects.requireNonNull(message, "Message cannot be null");
-        return publisherExecutor.publish(message, subscriberExecutor.getSubscribers(message.getTopic()));
+        long published = System.nanoTime();
+        keep(message);
+        Topic topic = message.getTopic();
+        Shard shard = shard(topic);
+        SubscriberExecutor subscriberExecutor = shard.subscriberExecutor;
+        LastValueCache cache = lastValues.get(topic);
+        Route route;
+        if (log == null && cache == null) {
+            route = subscriberExecutor.getRoute(topic);
+        } else {
+            // the route is taken atomically with the append and with the last value,
+            // see subscribe(Subscription, Topic, StartPosition)
+            Supplier<Route> lookup = cache == null ? () -> subscriberExecutor.getRoute(topic) :
+                    () -> cache.put(message, () -> subscriberExecutor.getRoute(topic));
+            try {
+                route = log == null ? lookup.get() : log.append(message, lookup);
+            } catch (IOException e) {
+                return failed(e);
+            }
+        }
+        return shard.publisherExecutor.publish(message, route, published);
+    }
+
+    /**
+     * Publish a batch of messages to subscribers.
+     * <p>
+     * The batch is grouped by topic, the subscribers of each topic are looked up once
+     * and each group is published by a single task, so messages on the same topic
+     * keep the order of the batch.
+     * </p>
+     * <p>
+     * When the broker has a {@link MessageLog}, the batch is appended to it first,
+     * and none of its messages is delivered if one of them cannot be appended.
+     * </p>
+     *
+     * @param messages A list of {@code Message}s
+     * @return A {@code CompletableFuture} for this async request, completed exceptionally
+     * with an {@code IOException} if a message cannot be appended to the log
+     */
+    protected CompletableFuture<Void> publish(List<Message> messages) {
+        Objects.requireNonNull(messages, "Messages cannot be null");
+        long published = System.nanoTime();
+        Map<Topic, List<Message>> groups = new LinkedHashMap<>();
+        for (Message message : messages) {
+            Objects.requireNonNull(message, "Message cannot be null");
+            groups.computeIfAbsent(message.getTopic(), t -> new ArrayList<>()).add(message);
+        }
+        for (Message message : messages)
+            keep(message);
+
+        Route[] routes = new Route[groups.size()];
+        Shard[] groupShards = new Shard[groups.size()];
+        int i = 0;
+        for (Map.Entry<Topic, List<Message>> group : groups.entrySet()) {
+            Topic topic = group.getKey();
+            groupShards[i] = shard(topic);
+            SubscriberExecutor subscriberExecutor = groupShards[i].subscriberExecutor;
+            LastValueCache cache = lastValues.get(topic);
+            if (log == null && cache == null) {
+                routes[i++] = subscriberExecutor.getRoute(topic);
+                continue;
+            }
+            Supplier<Route> lookup = cache == null ? () -> subscriberExecutor.getRoute(topic) :
+                    () -> cache.put(group.getValue(), () -> subscriberExecutor.getRoute(topic));
+            try {
+                routes[i++] = log == null ? lookup.get() : log.append(topic, group.getValue(), lookup);
+            } catch (IOException e) {
+                return failed(e);
+            }
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[groups.size()];
+        i = 0;
+        for (List<Message> group : groups.values()) {
+            futures[i] = groupShards[i].publisherExecutor.publish(group, routes[i], published);
+            i++;
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Keep a message in the replay buffer of its topic, before its subscribers are looked up,
+     * see {@link SubscriberExecutor#subscribe(Subscription, Topic, java.util.function.Supplier)}.
+     */
+    private void keep(Message message) {
+        if (replayBufferSize == 0)
+            return;
+        RingBuffer<Message> buffer = replayBuffers.get(message.getTopic());
+        if (buffer == null)
+            buffer = replayBuffers.computeIfAbsent(message.getTopic(), t -> new RingBuffer<>(replayBufferSize));
+        buffer.add(message);
+    }
+
+    private List<Message> lastMessages(Topic topic, int count) {
+        List<Message> messages = new ArrayList<>();
+        RingBuffer<Message> buffer = replayBuffers.get(topic);
+        if (buffer != null)
+            buffer.last(count, messages);
+        return messages;
+    }
+
+    /**
+     * Get the shard of a topic, from the hash of its name.
+     *
+     * @param topic A {@code Topic}
+     * @return the shard which delivers the messages published on {@code topic}
+     */
+    private Shard shard(Topic topic) {
+        if (shards.length == 1)
+            return shards[0];
+        int h = topic.hashCode();
+        return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+    }
+
+    /**
+     * Get the shards where a subscription to a topic is registered: every shard for a wildcard topic,
+     * or for {@code ROOT}, since it may match the topics of every shard, otherwise the shard of the topic.
+     *
+     * @param topic A {@code Topic}
+     * @return some shards
+     */
+    private Shard[] shardsOf(Topic topic) {
+        if (shards.length == 1 || topic.isWildcard() || topic.equals(Topic.ROOT))
+            return shards;
+        return new Shard[]{shard(topic)};
+    }
+
+    /**
+     * Send a request to the {@code SubscriberExecutor} of some shards.
+     *
+     * @param shards  Some shards
+     * @param request A request to a {@code SubscriberExecutor}
+     * @return A {@code CompletableFuture} completed once all the shards handled the request
+     */
+    private static CompletableFuture<Void> request(Shard[] shards,
+                                                   Function<SubscriberExecutor, CompletableFuture<Void>> request) {
+        if (shards.length == 1)
+            return request.apply(shards[0].subscriberExecutor);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++)
+            futures[i] = request.apply(shards[i].subscriberExecutor);
+        return CompletableFuture.allOf(futures);
+    }
+
+    private static CompletableFuture<Void> failed(Throwable cause) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
     }
 
     /**
      * Subscribe to a topic.
+     * <p>
+     * A subscriber to a compacted topic first receives the last value of each key.
+     * </p>
      *
      * @param sub   A {@code Subscription}
      * @param topic A {@code Topic}
@@ -98,24 +425,68 @@ public class Broker {
         Objects.requireNonNull(sub, "Subscriber cannot be null.");
         Objects.requireNonNull(topic, "Topic cannot be null.");
 
-        return subscriberExecutor.subscribe(sub, topic);
+        return subscribeWithLastValues(sub, topic);
+    }
+
+    private CompletableFuture<Void> subscribeWithLastValues(Subscription sub, Topic topic) {
+        LastValueCache cache = lastValues.get(topic);
+        return cache == null ? request(shardsOf(topic), executor -> executor.subscribe(sub, topic)) :
+                shard(topic).subscriberExecutor.subscribe(sub, topic, cache);
     }
 
 
     /**
      * Subscribe to a topic using a filter
+     * <p>
+     * Filters are evaluated by the broker before notifying the subscribers, equal filters
+     * are evaluated once per message, hence a {@link fr.sorbonne_u.components.pubsub.Filter}
+     * is cheaper than an opaque predicate when subscribers share filters.
+     * </p>
      *
      * @param sub    A {@code Subscription}
      * @param topic  A {@code Topic}
-     * @param filter A predicate of a message
+     * @param filter A predicate of a message, preferably a {@code Filter}
      * @return A {@code CompletableFuture} for this async request
      */
     protected CompletableFuture<Void> subscribe(Subscription sub, Topic topic, Predicate<Message> filter) {
         Objects.requireNonNull(sub, "Subscriber cannot be null.");
         Objects.requireNonNull(topic, "Topic cannot be null.");
         Objects.requireNonNull(filter, "Filter cannot be null.");
-        sub.filter( filter);
-        return subscriberExecutor.subscribe(sub, topic);
+        sub.filter(filter);
+        return subscribeWithLastValues(sub, topic);
+    }
+
+    /**
+     * Subscribe to a topic from a position of its log.
+     * <p>
+     * The subscriber first receives the messages of the log from {@code position}, read in batches,
+     * then the messages published since, each message once. The last messages of a topic,
+     * see {@link StartPosition#last(int)}, are taken from its replay buffer if the broker keeps them,
+     * otherwise from the log. When the broker has neither it is a subscription as {@link #subscribe(Subscription, Topic)},
+     * and when the position is {@link StartPosition#latest()} it only receives the messages published from now on.
+     * </p>
+     *
+     * @param sub      A {@code Subscription}
+     * @param topic    A {@code Topic} without wildcards
+     * @param position A {@code StartPosition}
+     * @return A {@code CompletableFuture} for this async request, completed once the past messages were sent
+     * @throws IllegalArgumentException if the subscription starts in the past of a wildcard topic
+     */
+    protected CompletableFuture<Void> subscribe(Subscription sub, Topic topic, StartPosition position) {
+        Objects.requireNonNull(sub, "Subscriber cannot be null.");
+        Objects.requireNonNull(topic, "Topic cannot be null.");
+        Objects.requireNonNull(position, "Position cannot be null.");
+        boolean buffered = position.getKind() == StartPosition.Kind.LAST && replayBufferSize > 0;
+        if (position.getKind() == StartPosition.Kind.LATEST)
+            return request(shardsOf(topic), executor -> executor.subscribe(sub, topic));
+        if (log == null && !buffered)
+            return subscribeWithLastValues(sub, topic);
+        if (topic.isWildcard())
+            throw new IllegalArgumentException("Cannot replay the messages of a wildcard topic: " + topic);
+        SubscriberExecutor subscriberExecutor = shard(topic).subscriberExecutor;
+        if (buffered)
+            return subscriberExecutor.subscribe(sub, topic, () -> lastMessages(topic, (int) position.getValue()));
+        return subscriberExecutor.subscribe(sub, topic, log, position);
     }
 
     /**
@@ -128,7 +499,7 @@ public class Broker {
     protected CompletableFuture<Void> unsubscribe(Subscription sub, Topic topic) {
         Objects.requireNonNull(sub, "Subscriber cannot be null.");
         Objects.requireNonNull(topic, "Topic cannot be null.");
-        return subscriberExecutor.unsubscribe(sub, topic);
+        return request(shardsOf(topic), executor -> executor.unsubscribe(sub, topic));
     }
 
     /**
@@ -141,7 +512,7 @@ public class Broker {
     protected CompletableFuture<Void> unsubscribe(String subId, Topic topic) {
         Objects.requireNonNull(subId, "Subscriber cannot be null.");
         Objects.requireNonNull(topic, "Topic cannot be null.");
-        return subscriberExecutor.unsubscribe(subId, topic);
+        return request(shardsOf(topic), executor -> executor.unsubscribe(subId, topic));
     }
 
     /**
@@ -151,7 +522,8 @@ public class Broker {
      */
     protected CompletableFuture<Void> unsubscribe(Subscription sub) {
         Objects.requireNonNull(sub, "Subscriber cannot be null.");
-        return subscriberExecutor.unsubscribe(sub);
+        shards[0].publisherExecutor.removeSubscriberStats(sub.getSubId());
+        return request(shards, executor -> executor.unsubscribe(sub));
     }
 
     /**
@@ -162,7 +534,8 @@ public class Broker {
      */
     protected CompletableFuture<Void> unsubscribe(String subId) {
         Objects.requireNonNull(subId, "Subscriber cannot be null.");
-        return subscriberExecutor.unsubscribe(subId);
+        shards[0].publisherExecutor.removeSubscriberStats(subId);
+        return request(shards, executor -> executor.unsubscribe(subId));
     }
 
 
@@ -180,7 +553,7 @@ public class Broker {
         Objects.requireNonNull(topic, "Topic cannot be null.");
         Objects.requireNonNull(filter, "Filter cannot be null.");
 
-        return subscriberExecutor.filter(subId, topic, filter);
+        return request(shardsOf(topic), executor -> executor.filter(subId, topic, filter));
     }
 
     /**
@@ -188,6 +561,8 @@ public class Broker {
      * <p>
      * When deleting a topic it is not guaranteed that all the subscribers to this topic will get
      * the messages published on this topic at this moment.
+     * Its last values, replay buffer and delivery stats are dropped as well,
+     * hence a topic created again with the same name is not compacted unless it is compacted again.
      * </p>
      *
      * @param topic A {@code Topic}
@@ -196,7 +571,13 @@ public class Broker {
 
     protected CompletableFuture<Void> removeTopic(Topic topic) {
         Objects.requireNonNull(topic, "Topic cannot be null.");
-        return subscriberExecutor.removeTopic(topic);
+        // cleared as well, for a publication that looked the cache up before its removal
+        LastValueCache cache = lastValues.remove(topic);
+        if (cache != null)
+            cache.clear();
+        replayBuffers.remove(topic);
+        shard(topic).publisherExecutor.removeDeliveryStats(topic);
+        return request(shardsOf(topic), executor -> executor.removeTopic(topic));
     }
 
     /**
@@ -205,7 +586,12 @@ public class Broker {
      * @return a set of topics
      */
     protected Set<Topic> geTopics() {
-        return subscriberExecutor.getTopics();
+        if (shards.length == 1)
+            return shards[0].subscriberExecutor.getTopics();
+        Set<Topic> topics = new HashSet<>();
+        for (Shard shard : shards)
+            topics.addAll(shard.subscriberExecutor.getTopics());
+        return topics;
     }
 
     /**
@@ -216,7 +602,11 @@ public class Broker {
      */
     protected boolean hasTopic(Topic topic) {
         Objects.requireNonNull(topic, "Topic cannot be null.");
-        return subscriberExecutor.hasTopic(topic);
+        for (Shard shard : shardsOf(topic)) {
+            if (shard.subscriberExecutor.hasTopic(topic))
+                return true;
+        }
+        return false;
     }
 
     /**
@@ -227,7 +617,11 @@ public class Broker {
      */
     protected boolean isSubscribed(Subscription sub) {
         Objects.requireNonNull(sub, "Subscriber cannot be null.");
-        return subscriberExecutor.isSubscribed(sub);
+        for (Shard shard : shards) {
+            if (shard.subscriberExecutor.isSubscribed(sub))
+                return true;
+        }
+        return false;
     }
 
     /**
@@ -240,16 +634,116 @@ public class Broker {
     protected boolean isSubscribed(Subscription sub, Topic topic) {
         Objects.requireNonNull(sub, "Subscriber cannot be null.");
         Objects.requireNonNull(topic, "Topic cannot be null.");
-        return subscriberExecutor.isSubscribed(sub, topic);
+        return shardsOf(topic)[0].subscriberExecutor.isSubscribed(sub, topic);
     }
 
     /**
-     * Shutdown this broker executors.
+     * Get the delivery statistics of a topic.
+     *
+     * @param topic A {@code Topic}
+     * @return the statistics of the topic, or null if no message was published on it
+     */
+    protected DeliveryStats getDeliveryStats(Topic topic) {
+        Objects.requireNonNull(topic, "Topic cannot be null.");
+        return shard(topic).publisherExecutor.getDeliveryStats(topic);
+    }
+
+    /**
+     * @return the topics on which messages were published
+     */
+    protected Set<Topic> getPublishedTopics() {
+        if (shards.length == 1)
+            return shards[0].publisherExecutor.getPublishedTopics();
+        Set<Topic> topics = new HashSet<>();
+        for (Shard shard : shards)
+            topics.addAll(shard.publisherExecutor.getPublishedTopics());
+        return Collections.unmodifiableSet(topics);
+    }
+
+    /**
+     * Get the delivery statistics of a subscriber.
+     *
+     * @param subId  The subscriber ID
+     * @param create true to start recording them if they are not
+     * @return the statistics of the subscriber, or null if they are not recorded
+     */
+    protected SubscriberStats getSubscriberStats(String subId, boolean create) {
+        Objects.requireNonNull(subId, "Subscriber cannot be null.");
+        // the shards share the statistics of the subscribers
+        return shards[0].publisherExecutor.getSubscriberStats(subId, create);
+    }
+
+    /**
+     * @return the IDs of the subscribers whose deliveries are recorded
+     */
+    protected Set<String> getRecordedSubscribers() {
+        return shards[0].publisherExecutor.getSubscribers();
+    }
+
+    /**
+     * @return an estimate of the number of publications waiting to be delivered
+     */
+    protected long getPublishingQueueDepth() {
+        long depth = 0;
+        for (Shard shard : shards)
+            depth += shard.publisherExecutor.getQueueDepth();
+        return depth;
+    }
+
+    /**
+     * @return an estimate of the number of subscriber requests waiting to be handled
+     */
+    protected long getSubscribingQueueDepth() {
+        long depth = 0;
+        for (Shard shard : shards)
+            depth += shard.subscriberExecutor.getQueueDepth();
+        return depth;
+    }
+
+    /**
+     * @return the number of shards of this broker
+     */
+    protected int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Get the log of the published messages.
+     *
+     * @return the log, or null if messages are not persisted
+     */
+    protected MessageLog getMessageLog() {
+        return log;
+    }
+
+    /**
+     * Shutdown this broker executors, and close its log after flushing it.
      */
     protected void shutdown() {
-        publisherExecutor.shutdown();
-        subscriberExecutor.shutdown();
+        for (Shard shard : shards) {
+            shard.publisherExecutor.shutdown();
+            shard.subscriberExecutor.shutdown();
+        }
+        if (log != null)
+            log.close();
     }
 
+    /**
+     * A shard of a broker: the subscribers of its topics, and the executor delivering their messages.
+     */
+    private static final class Shard {
+        /**
+         * An executor for handling subscriber requests.
+         */
+        private final SubscriberExecutor subscriberExecutor;
+        /**
+         * An executor for handling message publishing.
+         */
+        private final PublisherExecutor publisherExecutor;
 
+        private Shard(SubscriberExecutor subscriberExecutor, PublisherExecutor publisherExecutor) {
+            this.subscriberExecutor = subscriberExecutor;
+            this.publisherExecutor = publisherExecutor;
+        }
+    }
 }
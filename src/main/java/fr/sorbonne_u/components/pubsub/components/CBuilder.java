@@ -47,6 +47,18 @@ public abstract class CBuilder<T extends CBuilder<T>> {
      * Enable logging if true
      */
     private boolean logging;
+    /**
+     * The most verbose level of the events recorded by the component.
+     */
+    private TraceLevel traceLevel;
+    /**
+     * One in {@code traceSampleRate} {@code DEBUG} events is recorded.
+     */
+    private int traceSampleRate;
+    /**
+     * The maximum number of events waiting to be written.
+     */
+    private int traceBufferSize;
 
     /**
      * Creates a new builder.
@@ -57,6 +69,9 @@ public abstract class CBuilder<T extends CBuilder<T>> {
         this.cvm = Objects.requireNonNull(cvm, "CVM cannot be null");
         logging = true;
         tracing = true;
+        traceLevel = TraceLevel.DEBUG;
+        traceSampleRate = 1;
+        traceBufferSize = TraceLog.DEFAULT_CAPACITY;
     }
 
     /**
@@ -94,6 +109,49 @@ public abstract class CBuilder<T extends CBuilder<T>> {
         return self();
     }
 
+    /**
+     * Set the most verbose level of the events logged by this component, see {@link TraceLog}.
+     * The default level is {@code DEBUG}, i.e every message is logged, {@code INFO} only logs
+     * the lifecycle of the component and of its subscriptions. Nothing is logged if logging is off.
+     *
+     * @param traceLevel A {@code TraceLevel}
+     * @return This builder
+     */
+    public T setTraceLevel(TraceLevel traceLevel) {
+        this.traceLevel = Objects.requireNonNull(traceLevel);
+        return self();
+    }
+
+    /**
+     * Log one in {@code traceSampleRate} {@code DEBUG} events, chosen at random.
+     * The default value is 1, i.e every event is logged.
+     *
+     * @param traceSampleRate An {@code int} value
+     * @return This builder
+     * @throws IllegalArgumentException if {@code traceSampleRate} is <= 0
+     */
+    public T setTraceSampleRate(int traceSampleRate) {
+        if (traceSampleRate <= 0)
+            throw new IllegalArgumentException("traceSampleRate must be > 0");
+        this.traceSampleRate = traceSampleRate;
+        return self();
+    }
+
+    /**
+     * Set the maximum number of events waiting to be logged, the following events are dropped
+     * until the queued ones are logged. The default value is {@value TraceLog#DEFAULT_CAPACITY}.
+     *
+     * @param traceBufferSize An {@code int} value, rounded up to the next power of 2
+     * @return This builder
+     * @throws IllegalArgumentException if {@code traceBufferSize} is <= 0
+     */
+    public T setTraceBufferSize(int traceBufferSize) {
+        if (traceBufferSize <= 0)
+            throw new IllegalArgumentException("traceBufferSize must be > 0");
+        this.traceBufferSize = traceBufferSize;
+        return self();
+    }
+
     /**
      * Set the number of threads for this component.
      *
@@ -132,6 +190,17 @@ public abstract class CBuilder<T extends CBuilder<T>> {
             componentI.toggleTracing();
     }
 
+    /**
+     * Create the trace log of a component, its events are written to the log of the component.
+     *
+     * @param component A component
+     * @return a {@code TraceLog} configured by this builder, which records nothing if logging is off
+     */
+    protected TraceLog newTraceLog(AbstractComponent component) {
+        return new TraceLog(logging ? traceLevel : TraceLevel.OFF, traceSampleRate, traceBufferSize,
+                component::logMessage);
+    }
+
     /**
      * Subclasses must override this method to return {@code this}.
      *
@@ -0,0 +1,113 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code DeliveryStats} class counts the deliveries of the messages published on a topic.
+ * <p>
+ * Counters are {@link LongAdder}s so that concurrent publications on the same topic
+ * do not contend on a single memory location, for the same reason the latencies from the publication
+ * of a message to its hand-off to each subscription are recorded in a striped {@link LatencyHistogram},
+ * whose stripes are only allocated once the topic is contended.
+ * The statistics of a topic are dropped when it is deleted.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see PublisherExecutor
+ */
+public class DeliveryStats {
+    private final LongAdder publications = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder splitPublications = new LongAdder();
+    private final LongAdder fanOutNanos = new LongAdder();
+    private final LatencyHistogram notifyLatency = new LatencyHistogram(LatencyHistogram.STRIPES);
+
+    /**
+     * Record the fan-out of a message.
+     *
+     * @param subscribers The number of subscribers the message was delivered to
+     * @param rejected    The number of subscribers whose filter rejected the message
+     * @param split       true if the subscribers were split in chunks
+     * @param nanos       The fan-out duration in nanoseconds
+     */
+    protected void record(int subscribers, int rejected, boolean split, long nanos) {
+        publications.increment();
+        deliveries.add(subscribers);
+        rejections.add(rejected);
+        if (split)
+            splitPublications.increment();
+        fanOutNanos.add(nanos);
+    }
+
+    /**
+     * Record the hand-off of a message to a subscription.
+     *
+     * @param nanos The time since the message was published in nanoseconds
+     */
+    protected void recordLatency(long nanos) {
+        notifyLatency.record(nanos);
+    }
+
+    /**
+     * @return the number of published messages
+     */
+    public long getPublications() {
+        return publications.sum();
+    }
+
+    /**
+     * @return the number of messages handed to subscriptions
+     */
+    public long getDeliveries() {
+        return deliveries.sum();
+    }
+
+    /**
+     * @return the number of messages not delivered to a subscriber because its filter rejected them
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return the number of published messages whose subscribers were split in chunks
+     */
+    public long getSplitPublications() {
+        return splitPublications.sum();
+    }
+
+    /**
+     * @return the total fan-out time in nanoseconds
+     */
+    public long getFanOutNanos() {
+        return fanOutNanos.sum();
+    }
+
+    /**
+     * @return the mean fan-out time of a message in nanoseconds
+     */
+    public double getMeanFanOutNanos() {
+        long n = getPublications();
+        return n == 0 ? 0 : (double) getFanOutNanos() / n;
+    }
+
+    /**
+     * @return the latencies from the publication of a message to its hand-off to each subscription
+     */
+    public LatencyHistogram getNotifyLatency() {
+        return notifyLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryStats{" +
+                "publications=" + getPublications() +
+                ", deliveries=" + getDeliveries() +
+                ", rejections=" + getRejections() +
+                ", splitPublications=" + getSplitPublications() +
+                ", meanFanOutNanos=" + getMeanFanOutNanos() +
+                ", notifyLatency=" + notifyLatency +
+                '}';
+    }
+}
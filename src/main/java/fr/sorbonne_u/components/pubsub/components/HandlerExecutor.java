@@ -1,12 +1,28 @@
 package fr.sorbonne_u.components.pubsub.components;
 
+import java.util.ArrayDeque;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A {@code HandlerExecutor} is an abstraction of handling the requests that a broker will receive.
+ * <p>
+ * The requests are handled by a work stealing pool, or, in the virtual-thread execution mode,
+ * each request runs in its own virtual thread, see {@link VirtualThreads}, so a request blocked
+ * on a full subscription queue does not hold a thread of the pool. The fork/join tasks splitting
+ * the delivery of a message always run in the pool, they are short and do not block.
+ * <p>
+ * The requests that must keep their order, e.g the publications on a topic, are run with a key,
+ * see {@link #runAsync(Runnable, Object)}: each key has its own lane, created with its first request
+ * and dropped once it is empty, and a lane runs its requests one at a time, in order, on the pool
+ * or in a virtual thread. A request blocked in a lane, e.g a publication waiting for room in a full
+ * subscription queue, only delays the requests of its own key.
  *
  * @author Nadir Belarouci
  * @author Katia Amichi
@@ -15,9 +31,21 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class HandlerExecutor {
     /**
-     * An executor service that handles requests.
+     * A work stealing pool that handles requests.
      */
-    private final ExecutorService executor;
+    private final ForkJoinPool executor;
+    /**
+     * Runs each request in a new virtual thread, null if requests are handled by the pool.
+     */
+    private final ExecutorService virtualExecutor;
+    /**
+     * The lanes of the ordered requests by key, a key has a lane while it has queued or running requests.
+     */
+    private final ConcurrentHashMap<Object, Lane> lanes = new ConcurrentHashMap<>();
+    /**
+     * The number of ordered requests waiting in the lanes.
+     */
+    private final LongAdder queued = new LongAdder();
 
     /**
      * Create a defalut executor with parallelism equals to 10.
@@ -32,7 +60,19 @@ public abstract class HandlerExecutor {
      * @param parallelism An {@code int} value.
      */
     protected HandlerExecutor(int parallelism) {
-        this.executor = Executors.newWorkStealingPool(parallelism);
+        this(parallelism, false);
+    }
+
+    /**
+     * Create an executor with a specific parallelism value, which may handle its requests in virtual threads.
+     *
+     * @param parallelism    An {@code int} value.
+     * @param virtualThreads true to handle each request in a new virtual thread
+     * @throws UnsupportedOperationException if {@code virtualThreads} is true and the JVM does not support them
+     */
+    protected HandlerExecutor(int parallelism, boolean virtualThreads) {
+        this.virtualExecutor = virtualThreads ? VirtualThreads.newExecutor() : null;
+        this.executor = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
     }
 
     /**
@@ -40,6 +80,8 @@ public abstract class HandlerExecutor {
      * ShutdownNow after 5 seconds.
      */
     protected void shutdown() {
+        if (virtualExecutor != null)
+            virtualExecutor.shutdownNow();
         try {
             executor.shutdown();
             executor.awaitTermination(5, TimeUnit.SECONDS);
@@ -56,7 +98,122 @@ public abstract class HandlerExecutor {
      * @return A {@code CompletableFuture} of this runnable block.
      */
     protected CompletableFuture<Void> runAsync(Runnable runnable) {
-        return CompletableFuture.runAsync(runnable, executor);
+        return CompletableFuture.runAsync(runnable, virtualExecutor == null ? executor : virtualExecutor);
+    }
+
+    /**
+     * Run asynchronously a runnable block after the blocks previously run with the same key.
+     *
+     * @param runnable A runnable block
+     * @param key      The key of the block, e.g a topic
+     * @return A {@code CompletableFuture} of this runnable block.
+     */
+    protected CompletableFuture<Void> runAsync(Runnable runnable, Object key) {
+        return CompletableFuture.runAsync(runnable, task -> enqueue(key, task));
+    }
+
+    /**
+     * Queue a task in the lane of its key, and start the lane if it was empty.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the lane cannot be started, e.g after shutdown
+     */
+    private void enqueue(Object key, Runnable task) {
+        Lane[] created = new Lane[1];
+        queued.increment();
+        lanes.compute(key, (k, lane) -> {
+            if (lane == null)
+                lane = created[0] = new Lane(k);
+            lane.tasks.add(task);
+            return lane;
+        });
+        if (created[0] != null)
+            created[0].schedule();
     }
 
+    /**
+     * @return an estimate of the number of tasks waiting to run in this executor,
+     * a request handled in a virtual thread never waits
+     */
+    protected long getQueueDepth() {
+        return executor.getQueuedSubmissionCount() + executor.getQueuedTaskCount() + queued.sum();
+    }
+
+    /**
+     * Run a fork/join task in this executor and wait for its completion.
+     * <p>
+     * When called from a thread of this executor the task runs in the calling thread
+     * and its sub-tasks are forked to this executor, otherwise the task is submitted.
+     *
+     * @param task A {@code ForkJoinTask}
+     */
+    protected void invoke(ForkJoinTask<?> task) {
+        if (ForkJoinTask.getPool() == executor)
+            task.invoke();
+        else
+            executor.invoke(task);
+    }
+
+    /**
+     * A lane of ordered requests: a drain loop, scheduled on the pool or in a virtual thread
+     * while the lane has queued requests, runs them one at a time.
+     * <p>
+     * The lane is in the map of the lanes while its drain loop is scheduled or running, its tasks are
+     * queued and polled under the lock of its map entry, so a task is never queued in a dropped lane.
+     */
+    private final class Lane {
+        /**
+         * The number of tasks run before the drain loop is scheduled again, so a busy key does not hold a thread.
+         */
+        private static final int BATCH = 64;
+
+        private final Object key;
+        /**
+         * Only accessed under the lock of the map entry of the lane.
+         */
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        private Lane(Object key) {
+            this.key = key;
+        }
+
+        private void schedule() {
+            try {
+                (virtualExecutor == null ? executor : virtualExecutor).execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // drop the lane, or it would never be drained again
+                Lane dropped = lanes.remove(key);
+                if (dropped != null)
+                    queued.add(-dropped.tasks.size());
+                throw e;
+            }
+        }
+
+        private void drain() {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable task = next();
+                if (task == null)
+                    return;
+                queued.decrement();
+                // the tasks of a CompletableFuture do not throw
+                task.run();
+            }
+            try {
+                schedule();
+            } catch (RejectedExecutionException e) {
+                // the executor is shut down
+            }
+        }
+
+        /**
+         * @return the next task, or null once the lane is empty, it is then dropped
+         */
+        private Runnable next() {
+            Runnable[] next = new Runnable[1];
+            lanes.computeIfPresent(key, (k, lane) -> {
+                next[0] = lane.tasks.poll();
+                return next[0] == null ? null : lane;
+            });
+            return next[0];
+        }
+    }
 }
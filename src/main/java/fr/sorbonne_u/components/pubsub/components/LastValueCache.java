@@ -0,0 +1,112 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A {@code LastValueCache} keeps the last message of each key of a compacted topic,
+ * the key of a message is the value of one of its properties, e.g the symbol of a price.
+ * <p>
+ * A message replaces the previous message with the same key, so the cache holds one message per key
+ * whatever the rate of the messages. A message without the key property is not kept.
+ * <p>
+ * The cache is guarded by its monitor: a message is put and its subscribers are looked up atomically,
+ * and a subscription is registered atomically with the snapshot of the cache,
+ * so a new subscriber receives each message either in its snapshot or as a delta, never both,
+ * and never a value older than its snapshot.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Broker
+ * @see SubscriberExecutor#subscribe(fr.sorbonne_u.components.pubsub.interfaces.Subscription,
+ * fr.sorbonne_u.components.pubsub.Topic, LastValueCache)
+ */
+final class LastValueCache {
+    private static final Comparator<Message> BY_TIMESTAMP = Comparator.comparingLong(Message::getTimestamp);
+
+    private final String keyProperty;
+    private final Map<Object, Message> values = new HashMap<>();
+
+    /**
+     * @param keyProperty The property whose value is the key of a message
+     */
+    LastValueCache(String keyProperty) {
+        this.keyProperty = keyProperty;
+    }
+
+    /**
+     * Put a message then run an action before any other message is put.
+     *
+     * @param message A {@code Message}
+     * @param then    The action
+     * @return the result of the action
+     */
+    synchronized <T> T put(Message message, Supplier<T> then) {
+        put(message);
+        return then.get();
+    }
+
+    /**
+     * Put messages, in order, then run an action before any other message is put.
+     *
+     * @param messages Some {@code Message}s
+     * @param then     The action
+     * @return the result of the action
+     */
+    synchronized <T> T put(List<Message> messages, Supplier<T> then) {
+        for (Message message : messages)
+            put(message);
+        return then.get();
+    }
+
+    private void put(Message message) {
+        Object key = message.getProperty(keyProperty);
+        if (key != null)
+            values.put(key, message);
+    }
+
+    /**
+     * Run an action then take a snapshot of the cache, before any message is put.
+     *
+     * @param before The action
+     * @return the last message of each key, oldest first
+     */
+    synchronized List<Message> snapshot(Runnable before) {
+        before.run();
+        List<Message> snapshot = new ArrayList<>(values.values());
+        snapshot.sort(BY_TIMESTAMP);
+        return snapshot;
+    }
+
+    /**
+     * Remove all messages.
+     */
+    synchronized void clear() {
+        values.clear();
+    }
+
+    /**
+     * @return the number of keys
+     */
+    synchronized int size() {
+        return values.size();
+    }
+
+    String getKeyProperty() {
+        return keyProperty;
+    }
+
+    @Override
+    public String toString() {
+        return "LastValueCache{" +
+                "keyProperty='" + keyProperty + '\'' +
+                ", size=" + size() +
+                '}';
+    }
+}
@@ -0,0 +1,200 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@code LatencyHistogram} records durations in nanoseconds, in the style of an HdrHistogram.
+ * <p>
+ * The buckets are log-linear: each power of 2 is split in {@value #SUB_BUCKETS} buckets of equal width,
+ * so a recorded value is known within 1/{@value #SUB_BUCKETS} of its value whatever its magnitude,
+ * and the histogram has a fixed number of buckets, durations above 2^38 ns (about 4.5 minutes)
+ * are counted in the last one.
+ * <p>
+ * Recording a value increments one bucket. The buckets are striped: each thread records
+ * in the stripe of its id, so threads recording concurrently seldom contend on the same counters.
+ * A stripe is a row of about 4.5 KB, only the first one is allocated up front, the stripe of a thread
+ * is allocated the first time it contends on the first one, so a histogram recorded by one thread at a time,
+ * e.g the one of a quiet topic, stays small. Reading sums the stripes, it is meant for monitoring,
+ * not for the hot path, and a read concurrent with recordings may miss some of them.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see DeliveryStats
+ * @see SubscriberStats
+ */
+public class LatencyHistogram {
+    /**
+     * The default number of stripes, the number of processors rounded up to a power of 2, at most 8.
+     */
+    static final int STRIPES = Math.min(8, ceilingPowerOf2(Runtime.getRuntime().availableProcessors()));
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 38;
+    /**
+     * The buckets below 2^38 and a last bucket for the longer durations.
+     */
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + 1;
+    /**
+     * Each stripe is a row of buckets followed by the sum and the maximum of its values.
+     */
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+    private static final int ROW = BUCKETS + 2;
+
+    /**
+     * The stripes, null until allocated except the first one.
+     */
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+    private final int mask;
+
+    /**
+     * Create a histogram.
+     *
+     * @param stripes The number of stripes, rounded up to the next power of 2
+     * @throws IllegalArgumentException if {@code stripes} is <= 0
+     */
+    protected LatencyHistogram(int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripes must be > 0");
+        int actual = ceilingPowerOf2(stripes);
+        this.stripes = new AtomicReferenceArray<>(actual);
+        this.stripes.set(0, new AtomicLongArray(ROW));
+        this.mask = actual - 1;
+    }
+
+    private static int ceilingPowerOf2(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos A duration in nanoseconds, a negative duration is recorded as 0
+     */
+    protected void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int bucket = bucketOf(value);
+        int stripe = (int) Thread.currentThread().getId() & mask;
+        AtomicLongArray row = stripes.get(stripe);
+        if (row == null) {
+            // share the first stripe until it is contended
+            row = stripes.get(0);
+            long count = row.get(bucket);
+            if (!row.compareAndSet(bucket, count, count + 1)) {
+                stripes.compareAndSet(stripe, null, new AtomicLongArray(ROW));
+                row = stripes.get(stripe);
+                row.incrementAndGet(bucket);
+            }
+        } else {
+            row.incrementAndGet(bucket);
+        }
+        row.addAndGet(SUM, value);
+        long max = row.get(MAX);
+        while (value > max && !row.compareAndSet(MAX, max, value))
+            max = row.get(MAX);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude >= MAX_MAGNITUDE)
+            return BUCKETS - 1;
+        int sub = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the highest value counted in a bucket
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private long sum(int index) {
+        long sum = 0;
+        for (int stripe = 0; stripe < stripes.length(); stripe++) {
+            AtomicLongArray row = stripes.get(stripe);
+            if (row != null)
+                sum += row.get(index);
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+            count += sum(bucket);
+        return count;
+    }
+
+    /**
+     * @return the mean of the recorded durations in nanoseconds, 0 if none was recorded
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum(SUM) / count;
+    }
+
+    /**
+     * @return the longest recorded duration in nanoseconds, 0 if none was recorded
+     */
+    public long getMax() {
+        long max = 0;
+        for (int stripe = 0; stripe < stripes.length(); stripe++) {
+            AtomicLongArray row = stripes.get(stripe);
+            if (row != null)
+                max = Math.max(max, row.get(MAX));
+        }
+        return max;
+    }
+
+    /**
+     * Get a percentile of the recorded durations, within the precision of the buckets.
+     *
+     * @param percentile A percentile between 0 and 100, e.g 99.9
+     * @return the duration in nanoseconds below which {@code percentile} % of the durations are, 0 if none was recorded
+     * @throws IllegalArgumentException if {@code percentile} is not between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        long[] buckets = new long[BUCKETS];
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            buckets[bucket] = sum(bucket);
+            count += buckets[bucket];
+        }
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank)
+                return Math.min(highestValueOf(bucket), getMax());
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getCount() +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) +
+                ", p99.9=" + getValueAtPercentile(99.9) +
+                ", max=" + getMax() +
+                '}';
+    }
+}
@@ -0,0 +1,357 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.MessageCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A {@code LogSegment} is a file of a {@link TopicLog}, holding the messages from a base offset,
+ * memory-mapped with a {@link MappedByteBuffer}.
+ * <p>
+ * The file is preallocated to the segment size, each record is:
+ * <ul>
+ * <li>Its size, written last, so a record whose size is 0 was never completely written.</li>
+ * <li>The offset of its message and the time it was appended, the timestamp of a published message is only
+ * set when it is delivered, so the retention and the timestamp start positions use the append time.</li>
+ * <li>The CRC32 of its message.</li>
+ * <li>Its message, encoded in place by {@link MessageCodec#encode(Message, ByteBuffer)}.</li>
+ * </ul>
+ * Appending a message encodes it directly into the mapped file, the operating system writes
+ * the pages back to the disk, and {@link #flush()} forces them to it.
+ * <p>
+ * A segment also has a sparse offset index, a mapped file of {@code (relative offset, position)} entries,
+ * one entry every {@link #INDEX_INTERVAL} bytes of records, so reading from an offset
+ * only scans a few records.
+ * <p>
+ * Records are appended by one thread at a time, which is guaranteed by the {@code TopicLog},
+ * and read by any thread: a record is visible to readers once the volatile end of the segment moves past it.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see TopicLog
+ * @see MessageLog
+ */
+final class LogSegment {
+    /**
+     * The size of a record header: size, offset, timestamp and CRC.
+     */
+    static final int HEADER = 4 + 8 + 8 + 4;
+    /**
+     * The number of bytes of records between two index entries.
+     */
+    static final int INDEX_INTERVAL = 4096;
+    private static final int INDEX_ENTRY = 8;
+
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".index";
+
+    private final long baseOffset;
+    private final File logFile;
+    private final File indexFile;
+    private final MappedByteBuffer log;
+    private final MappedByteBuffer index;
+    /**
+     * The end of the last record.
+     */
+    private volatile int end;
+    private volatile int indexEntries;
+    private int lastIndexed;
+    private volatile long nextOffset;
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+
+    private LogSegment(File dir, long baseOffset, int size) throws IOException {
+        this.baseOffset = baseOffset;
+        this.logFile = new File(dir, fileName(baseOffset) + LOG_SUFFIX);
+        this.indexFile = new File(dir, fileName(baseOffset) + INDEX_SUFFIX);
+        this.log = map(logFile, size);
+        this.index = map(indexFile, (size / INDEX_INTERVAL + 1) * INDEX_ENTRY);
+        this.nextOffset = baseOffset;
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        // the mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+    }
+
+    /**
+     * @return the name of the files of a segment, its base offset padded with zeros so names sort as offsets
+     */
+    static String fileName(long baseOffset) {
+        return String.format("%020d", baseOffset);
+    }
+
+    /**
+     * Create a new empty segment.
+     *
+     * @param dir        The directory of the topic log
+     * @param baseOffset The offset of the first message of the segment
+     * @param size       The size of the segment in bytes
+     * @return the new segment
+     * @throws IOException if the files cannot be created
+     */
+    static LogSegment create(File dir, long baseOffset, int size) throws IOException {
+        return new LogSegment(dir, baseOffset, size);
+    }
+
+    /**
+     * Open an existing segment, the records after the last valid record, e.g a record
+     * that was being written when the JVM stopped, are discarded.
+     *
+     * @param dir        The directory of the topic log
+     * @param baseOffset The base offset of the segment, i.e the name of its files
+     * @param size       The size of a new segment in bytes, an existing file keeps its size
+     * @return the opened segment
+     * @throws IOException if the files cannot be opened
+     */
+    static LogSegment open(File dir, long baseOffset, int size) throws IOException {
+        LogSegment segment = new LogSegment(dir, baseOffset, size);
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() {
+        // resume from the last indexed record, the records before it are complete
+        int written = 0;
+        while (written < index.capacity() / INDEX_ENTRY &&
+                (written == 0 || index.getInt(written * INDEX_ENTRY + 4) > 0))
+            written++;
+        int entries = written;
+        int position = 0;
+        long offset = baseOffset;
+        while (entries > 0) {
+            position = index.getInt((entries - 1) * INDEX_ENTRY + 4);
+            offset = baseOffset + index.getInt((entries - 1) * INDEX_ENTRY);
+            if (isValid(position, offset))
+                break;
+            entries--;
+        }
+        if (entries == 0) {
+            position = 0;
+            offset = baseOffset;
+        }
+        // the entries of discarded records would be mistaken for valid entries by the next recovery
+        for (int i = entries; i < written; i++)
+            index.putLong(i * INDEX_ENTRY, 0);
+        indexEntries = entries;
+        lastIndexed = position;
+        if (entries == 0 && isValid(0, baseOffset))
+            addIndexEntry(baseOffset, 0);
+
+        while (isValid(position, offset)) {
+            position += 4 + log.getInt(position);
+            offset++;
+            if (position - lastIndexed >= INDEX_INTERVAL)
+                addIndexEntry(offset, position);
+        }
+        end = position;
+        nextOffset = offset;
+
+        // timestamps are not ordered by offset, so every record counts, only its header is read
+        long max = Long.MIN_VALUE;
+        for (int p = 0; p < position; p += 4 + log.getInt(p))
+            max = Math.max(max, log.getLong(p + 12));
+        maxTimestamp = max;
+    }
+
+    private boolean isValid(int position, long offset) {
+        if (position + HEADER > log.capacity())
+            return false;
+        int size = log.getInt(position);
+        if (size < HEADER - 4 || position + 4 + size > log.capacity() || log.getLong(position + 4) != offset)
+            return false;
+        return log.getInt(position + 20) == crc(position + HEADER, position + 4 + size);
+    }
+
+    private int crc(int from, int to) {
+        ByteBuffer payload = log.duplicate();
+        payload.limit(to);
+        payload.position(from);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private void addIndexEntry(long offset, int position) {
+        int i = indexEntries;
+        if ((i + 1) * INDEX_ENTRY > index.capacity())
+            return;
+        index.putInt(i * INDEX_ENTRY, (int) (offset - baseOffset));
+        index.putInt(i * INDEX_ENTRY + 4, position);
+        lastIndexed = position;
+        indexEntries = i + 1;
+    }
+
+    /**
+     * Append a message at the end of the segment.
+     *
+     * @param message   A {@code Message}
+     * @param offset    The offset of the message, the next offset of this segment
+     * @param timestamp The append time in milliseconds
+     * @return false if the message does not fit in the segment
+     */
+    boolean append(Message message, long offset, long timestamp) {
+        int start = end;
+        if (start + HEADER > log.capacity())
+            return false;
+        log.position(start + HEADER);
+        try {
+            MessageCodec.encode(message, log);
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+        int stop = log.position();
+        log.putLong(start + 4, offset);
+        log.putLong(start + 12, timestamp);
+        log.putInt(start + 20, crc(start + HEADER, stop));
+        log.putInt(start, stop - start - 4);
+
+        if (start == 0 || stop - lastIndexed >= INDEX_INTERVAL)
+            addIndexEntry(offset, start);
+        nextOffset = offset + 1;
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        end = stop;
+        return true;
+    }
+
+    /**
+     * Read the messages of the segment from an offset.
+     *
+     * @param offset   The offset of the first message to read
+     * @param max      The maximum number of messages to read
+     * @param messages The list the messages are added to
+     * @return the offset following the last read message
+     * @throws IOException if a message cannot be decoded
+     */
+    long read(long offset, int max, List<Message> messages) throws IOException {
+        int limit = end;
+        if (limit == 0)
+            return baseOffset;
+        ByteBuffer records = log.duplicate();
+        int position = lookup(offset);
+        long current = records.getLong(position + 4);
+        // skip the records before the offset
+        while (position < limit && current < offset) {
+            position += 4 + records.getInt(position);
+            current++;
+        }
+        int read = 0;
+        while (position < limit && read < max) {
+            int stop = position + 4 + records.getInt(position);
+            records.limit(stop);
+            records.position(position + HEADER);
+            messages.add(MessageCodec.decode(records));
+            records.limit(records.capacity());
+            position = stop;
+            current++;
+            read++;
+        }
+        return current;
+    }
+
+    /**
+     * Find the first message of the segment appended at or after a time,
+     * only the headers of the records are read.
+     *
+     * @param timestamp A time in milliseconds
+     * @return the offset of the message, or the next offset of the segment if there is none
+     */
+    long offsetOf(long timestamp) {
+        int limit = end;
+        int position = 0;
+        while (position < limit) {
+            if (log.getLong(position + 12) >= timestamp)
+                return log.getLong(position + 4);
+            position += 4 + log.getInt(position);
+        }
+        return nextOffset;
+    }
+
+    /**
+     * @return the position of the last indexed record whose offset is not after {@code offset}
+     */
+    private int lookup(long offset) {
+        int relative = (int) Math.max(0, Math.min(offset - baseOffset, Integer.MAX_VALUE));
+        int low = 0;
+        int high = indexEntries - 1;
+        int position = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (index.getInt(mid * INDEX_ENTRY) <= relative) {
+                position = index.getInt(mid * INDEX_ENTRY + 4);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Force the appended records to the disk.
+     */
+    void flush() {
+        log.force();
+        index.force();
+    }
+
+    /**
+     * Delete the files of this segment, it must not be used anymore.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    void delete() throws IOException {
+        // the mappings are released when the buffers are collected
+        Files.deleteIfExists(logFile.toPath());
+        Files.deleteIfExists(indexFile.toPath());
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    /**
+     * @return the offset of the next appended message
+     */
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * @return the size of the records in bytes
+     */
+    int size() {
+        return end;
+    }
+
+    boolean isEmpty() {
+        return end == 0;
+    }
+
+    /**
+     * @return the greatest timestamp of the messages of this segment, {@code Long.MIN_VALUE} if it is empty
+     */
+    long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "LogSegment{" +
+                "file=" + logFile +
+                ", size=" + end +
+                '}';
+    }
+}
@@ -0,0 +1,150 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A {@code MessageInbox} is the bounded inbox of a {@code Subscriber} in the asynchronous delivery mode,
+ * see {@link Subscriber.Builder#setInboxCapacity(int)}.
+ * <p>
+ * The in-bound port of the subscriber puts the received messages in the inbox and returns,
+ * the handler threads of the inbox take them and run the message consumer of the subscriber,
+ * hence a slow consumer does not hold the thread delivering the messages.
+ * When the inbox is full, putting a message waits until a handler makes room: the messages
+ * then wait in the queue of the subscription on the {@code PubSub} side, whose {@link OverflowPolicy}
+ * applies, so a slow consumer never slows down the broker.
+ * <p>
+ * With a single handler thread the messages are consumed in the order they were received,
+ * with more handlers they are consumed concurrently, in any order.
+ * The handlers may be virtual threads, see {@link VirtualThreads}.
+ * A consumer that fails does not stop its handler, the failure is recorded in the {@link TraceLog}
+ * of the subscriber at {@link TraceLevel#ERROR}.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Subscriber
+ * @see fr.sorbonne_u.components.pubsub.port.SubscriberInBoundPort
+ */
+public final class MessageInbox {
+    private final BlockingQueue<Message> messages;
+    private final ExecutorService handlers;
+    private final Consumer<Message> consumer;
+    private final TraceLog trace;
+
+    /**
+     * Creates an inbox and starts its handler threads.
+     *
+     * @param name           The name of the handler threads
+     * @param capacity       The maximum number of messages waiting in the inbox
+     * @param handlerThreads The number of threads consuming the messages
+     * @param consumer       Consumes a message
+     * @param trace          Records the failures of the consumer
+     * @throws IllegalArgumentException if {@code capacity} or {@code handlerThreads} is <= 0
+     */
+    MessageInbox(String name, int capacity, int handlerThreads, Consumer<Message> consumer, TraceLog trace) {
+        this(name, capacity, handlerThreads, false, consumer, trace);
+    }
+
+    /**
+     * Creates an inbox and starts its handler threads, which may be virtual threads.
+     *
+     * @param name           The name of the handler threads
+     * @param capacity       The maximum number of messages waiting in the inbox
+     * @param handlerThreads The number of threads consuming the messages
+     * @param virtualThreads true to consume the messages in virtual threads
+     * @param consumer       Consumes a message
+     * @param trace          Records the failures of the consumer
+     * @throws IllegalArgumentException      if {@code capacity} or {@code handlerThreads} is <= 0
+     * @throws UnsupportedOperationException if {@code virtualThreads} is true and the JVM does not support them
+     */
+    MessageInbox(String name, int capacity, int handlerThreads, boolean virtualThreads,
+                 Consumer<Message> consumer, TraceLog trace) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be > 0");
+        if (handlerThreads <= 0)
+            throw new IllegalArgumentException("handlerThreads must be > 0");
+        this.messages = new ArrayBlockingQueue<>(capacity);
+        this.consumer = consumer;
+        this.trace = trace;
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = virtualThreads ? VirtualThreads.newThreadFactory(name + "-handler-") : r -> {
+            Thread thread = new Thread(r, name + "-handler-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.handlers = Executors.newFixedThreadPool(handlerThreads, factory);
+        for (int i = 0; i < handlerThreads; i++)
+            handlers.execute(this::handle);
+    }
+
+    /**
+     * Put a message in the inbox, wait while it is full.
+     *
+     * @param message A {@code Message}
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void put(Message message) throws InterruptedException {
+        messages.put(message);
+    }
+
+    /**
+     * Put messages in the inbox, in order, wait while it is full.
+     *
+     * @param messages Some {@code Message}s
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void putAll(List<Message> messages) throws InterruptedException {
+        for (Message message : messages)
+            this.messages.put(message);
+    }
+
+    /**
+     * @return the number of messages waiting in the inbox
+     */
+    public int size() {
+        return messages.size();
+    }
+
+    /**
+     * The loop of a handler thread.
+     */
+    private void handle() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Message message = messages.take();
+                try {
+                    consumer.accept(message);
+                } catch (RuntimeException e) {
+                    // a failing consumer must not stop the handler
+                    trace.log(TraceLevel.ERROR, "consuming a message of {} failed: {}", message.getTopic(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // the inbox is closed
+        }
+    }
+
+    /**
+     * Stop the handler threads, the messages still waiting in the inbox are dropped.
+     */
+    void close() {
+        handlers.shutdownNow();
+        messages.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "MessageInbox{" +
+                "size=" + size() +
+                ", remainingCapacity=" + messages.remainingCapacity() +
+                '}';
+    }
+}
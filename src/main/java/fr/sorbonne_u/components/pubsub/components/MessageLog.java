@@ -0,0 +1,286 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * A {@code MessageLog} persists the published messages in a durable append-only log per topic,
+ * so that they survive a restart of the {@code PubSub} and can be read again from an offset.
+ * <p>
+ * The log of a topic is a directory of memory-mapped segment files, see {@link LogSegment}:
+ * appending a message encodes it directly into the mapped file, without any intermediate copy
+ * and without any system call. The segments are forced to the disk by a background flusher
+ * every flush interval, a <i>group commit</i> of all the messages appended meanwhile,
+ * hence a message is durable at most one flush interval after it was appended, or once
+ * {@link #flush()} returns.
+ * <p>
+ * A log is rolled to a new segment when its active segment is full, and its oldest segments
+ * are deleted once the log exceeds the retention size or their messages exceed the retention time.
+ * <p>
+ * Example:
+ * <blockquote><pre>
+ *      MessageLog log = new MessageLog(new File("pubsub-log"));
+ *      long offset = log.append(message);
+ *      List&lt;Message&gt; messages = new ArrayList&lt;&gt;();
+ *      log.read(message.getTopic(), offset, 100, messages);
+ * </pre></blockquote>
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Broker
+ * @see TopicLog
+ */
+public class MessageLog {
+    /**
+     * The default size of a segment, 16 MB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+    /**
+     * The default time between two flushes, in milliseconds.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 10;
+    /**
+     * The time between two retention checks, in milliseconds.
+     */
+    private static final long RETENTION_CHECK_INTERVAL = 1000;
+
+    private final File dir;
+    private final int segmentSize;
+    private final long retentionBytes;
+    private final long retentionTime;
+    private final Map<Topic, TopicLog> logs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Open a message log with the default segment size and flush interval, and an unlimited retention.
+     *
+     * @param dir The directory of the log
+     * @throws IOException if the existing logs cannot be opened
+     */
+    public MessageLog(File dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_SIZE, Long.MAX_VALUE, Long.MAX_VALUE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Open a message log, the logs already in its directory are recovered.
+     *
+     * @param dir            The directory of the log
+     * @param segmentSize    The size of a segment in bytes
+     * @param retentionBytes The maximum size of the log of a topic in bytes
+     * @param retentionTime  The maximum age of a message in milliseconds
+     * @param flushInterval  The time between two flushes in milliseconds
+     * @throws IOException if the existing logs cannot be opened
+     */
+    public MessageLog(File dir, int segmentSize, long retentionBytes, long retentionTime, long flushInterval)
+            throws IOException {
+        this.dir = Objects.requireNonNull(dir, "Directory cannot be null.");
+        if (segmentSize <= LogSegment.HEADER)
+            throw new IllegalArgumentException("segmentSize must be > " + LogSegment.HEADER);
+        if (retentionBytes <= 0 || retentionTime <= 0 || flushInterval <= 0)
+            throw new IllegalArgumentException("retentionBytes, retentionTime and flushInterval must be > 0");
+        this.segmentSize = segmentSize;
+        this.retentionBytes = retentionBytes;
+        this.retentionTime = retentionTime;
+
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create the directory " + dir);
+        File[] topics = dir.listFiles(File::isDirectory);
+        if (topics != null) {
+            for (File topicDir : topics) {
+                Topic topic = TopicLog.topicOf(topicDir);
+                logs.put(topic, TopicLog.open(dir, topic, segmentSize));
+            }
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "message-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::retainQuietly,
+                RETENTION_CHECK_INTERVAL, RETENTION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private TopicLog getLog(Topic topic) throws IOException {
+        TopicLog log = logs.get(topic);
+        if (log != null)
+            return log;
+        synchronized (logs) {
+            log = logs.get(topic);
+            if (log == null) {
+                log = TopicLog.open(dir, topic, segmentSize);
+                logs.put(topic, log);
+            }
+            return log;
+        }
+    }
+
+    /**
+     * Append a message to the log of its topic.
+     *
+     * @param message A {@code Message}
+     * @return the offset of the message in the log of its topic
+     * @throws IOException if the message cannot be appended
+     */
+    public long append(Message message) throws IOException {
+        return getLog(message.getTopic()).append(message);
+    }
+
+    /**
+     * Append a message to the log of its topic, then run an action before any other message
+     * of the topic is appended, e.g look up the subscribers of the message.
+     *
+     * @param message A {@code Message}
+     * @param then    The action
+     * @return the result of the action
+     * @throws IOException if the message cannot be appended, the action is then not run
+     * @see #atEnd(Topic, LongFunction)
+     */
+    public <T> T append(Message message, Supplier<T> then) throws IOException {
+        return getLog(message.getTopic()).append(message, then);
+    }
+
+    /**
+     * Append messages published on the same topic to the log of the topic, then run an action
+     * before any other message of the topic is appended.
+     *
+     * @param topic    The topic of the messages
+     * @param messages Some {@code Message}s published on {@code topic}
+     * @param then     The action
+     * @return the result of the action
+     * @throws IOException if a message cannot be appended, the action is then not run
+     */
+    public <T> T append(Topic topic, List<Message> messages, Supplier<T> then) throws IOException {
+        return getLog(topic).append(messages, then);
+    }
+
+    /**
+     * Run an action at the end of the log of a topic, i.e while no message of the topic can be appended.
+     *
+     * @param topic  A {@code Topic}
+     * @param action The action, called with the offset of the next message appended to the topic
+     * @return the result of the action
+     * @throws IOException if the log of the topic cannot be created
+     */
+    public <T> T atEnd(Topic topic, LongFunction<T> action) throws IOException {
+        return getLog(topic).atEnd(action);
+    }
+
+    /**
+     * Find the first message of a topic appended at or after a time.
+     *
+     * @param topic     A {@code Topic}
+     * @param timestamp A time in milliseconds
+     * @return the offset of the message, or the next offset of the topic if there is none
+     */
+    public long offsetOf(Topic topic, long timestamp) {
+        TopicLog log = logs.get(topic);
+        return log == null ? 0 : log.offsetOf(timestamp);
+    }
+
+    /**
+     * Read the messages of a topic from an offset.
+     *
+     * @param topic    A {@code Topic}
+     * @param offset   The offset of the first message to read, the first retained message if it was deleted
+     * @param max      The maximum number of messages to read
+     * @param messages The list the messages are added to
+     * @return the offset following the last read message
+     * @throws IOException if a message cannot be read
+     */
+    public long read(Topic topic, long offset, int max, List<Message> messages) throws IOException {
+        TopicLog log = logs.get(topic);
+        return log == null ? 0 : log.read(offset, max, messages);
+    }
+
+    /**
+     * @param topic A {@code Topic}
+     * @return the offset of the first retained message of the topic
+     */
+    public long getStartOffset(Topic topic) {
+        TopicLog log = logs.get(topic);
+        return log == null ? 0 : log.getStartOffset();
+    }
+
+    /**
+     * @param topic A {@code Topic}
+     * @return the offset of the next message appended to the topic
+     */
+    public long getNextOffset(Topic topic) {
+        TopicLog log = logs.get(topic);
+        return log == null ? 0 : log.getNextOffset();
+    }
+
+    /**
+     * @return the topics that have a log
+     */
+    public Set<Topic> getTopics() {
+        return Collections.unmodifiableSet(logs.keySet());
+    }
+
+    /**
+     * Force the appended messages of all topics to the disk.
+     */
+    public void flush() {
+        for (TopicLog log : logs.values())
+            log.flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // retried at the next flush
+        }
+    }
+
+    /**
+     * Delete the segments that are out of the retention of their log.
+     *
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void retain() throws IOException {
+        long now = System.currentTimeMillis();
+        for (TopicLog log : logs.values())
+            log.retain(retentionBytes, retentionTime, now);
+    }
+
+    private void retainQuietly() {
+        try {
+            retain();
+        } catch (IOException | RuntimeException e) {
+            // retried at the next check
+        }
+    }
+
+    /**
+     * Stop the flusher and flush the appended messages, the log must not be used anymore.
+     */
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    @Override
+    public String toString() {
+        return "MessageLog{" +
+                "dir=" + dir +
+                ", topics=" + logs.keySet() +
+                '}';
+    }
+}
@@ -0,0 +1,140 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free FIFO queue backed by an array, written by multiple producers.
+ * <p>
+ * Each slot of the array has a sequence number telling whether it is ready to be written
+ * by a producer or read by a consumer, producers claim a slot by incrementing the producer index
+ * with a CAS, consumers claim the head the same way, neither of them ever takes a lock.
+ * <p>
+ * {@link #poll} and {@link #evict} both claim the head with a CAS, so the queue is safe with
+ * multiple consumers as well. The name tells how a subscription uses it: a single drain loop,
+ * guarded by a flag, polls the messages, while producers use {@link #evict} to make room in
+ * a full queue by dropping its oldest element.
+ *
+ * @param <E> the type of the elements
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see PubSub
+ */
+public class MpscArrayQueue<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity the queue capacity, rounded up to the next power of 2, at least 2
+     * @throws IllegalArgumentException if {@code capacity} is <= 0
+     */
+    public MpscArrayQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be > 0");
+        int actual = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(actual);
+        this.sequences = new AtomicLongArray(actual);
+        for (int i = 0; i < actual; i++)
+            sequences.set(i, i);
+        this.capacity = actual;
+        this.mask = actual - 1;
+    }
+
+    /**
+     * Insert an element at the tail of the queue if it is not full.
+     *
+     * @param e A non null element
+     * @return false if the queue is full
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        long p = producerIndex.get();
+        while (true) {
+            int i = (int) p & mask;
+            long dif = sequences.get(i) - p;
+            if (dif == 0) {
+                if (producerIndex.compareAndSet(p, p + 1)) {
+                    buffer.lazySet(i, e);
+                    sequences.lazySet(i, p + 1);
+                    return true;
+                }
+                p = producerIndex.get();
+            } else if (dif < 0) {
+                // the slot still holds the element of the previous round
+                return false;
+            } else {
+                p = producerIndex.get();
+            }
+        }
+    }
+
+    /**
+     * Remove the element at the head of the queue, may be called by any thread.
+     *
+     * @return the head of the queue, or null if the queue is empty
+     */
+    public E poll() {
+        return take();
+    }
+
+    /**
+     * Remove the element at the head of the queue, may be called by any thread.
+     *
+     * @return the removed element, or null if the queue is empty
+     */
+    public E evict() {
+        return take();
+    }
+
+    private E take() {
+        long c = consumerIndex.get();
+        while (true) {
+            int i = (int) c & mask;
+            long dif = sequences.get(i) - (c + 1);
+            if (dif == 0) {
+                if (consumerIndex.compareAndSet(c, c + 1)) {
+                    E e = buffer.get(i);
+                    buffer.lazySet(i, null);
+                    sequences.lazySet(i, c + capacity);
+                    return e;
+                }
+                c = consumerIndex.get();
+            } else if (dif < 0) {
+                // the slot is empty, or its producer did not store its element yet
+                return null;
+            } else {
+                c = consumerIndex.get();
+            }
+        }
+    }
+
+    /**
+     * @return the number of elements in the queue, a snapshot when called concurrently
+     */
+    public int size() {
+        long size = producerIndex.get() - consumerIndex.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    /**
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex.get();
+    }
+
+    /**
+     * @return the queue capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,32 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+/**
+ * What a subscription does with a message published while its queue is full.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see PubSub.Builder#setOverflowPolicy(OverflowPolicy)
+ * @see OverflowStats
+ */
+public enum OverflowPolicy {
+    /**
+     * The publishing thread waits until the subscriber makes room, no message is lost.
+     * Meanwhile the next publications on the same topic wait too, to keep their order,
+     * while the publications on the other topics go on.
+     */
+    BLOCK,
+    /**
+     * The oldest queued message is dropped to make room for the new one.
+     * When other publishing threads keep taking the freed room, the new message is dropped
+     * after a few attempts, and counted as {@link #DROP_NEWEST}.
+     */
+    DROP_OLDEST,
+    /**
+     * The new message is dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * The subscription is ended and its queued messages are dropped.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,62 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code OverflowStats} class counts, for each {@link OverflowPolicy}, the messages published
+ * while the queue of a subscription was full.
+ * <ul>
+ * <li>{@code BLOCK}: the messages whose publishing thread had to wait.</li>
+ * <li>{@code DROP_OLDEST}: the queued messages that were dropped.</li>
+ * <li>{@code DROP_NEWEST}: the published messages that were dropped.</li>
+ * <li>{@code DISCONNECT}: the subscriptions that were ended.</li>
+ * </ul>
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see OverflowPolicy
+ * @see PubSub
+ */
+public class OverflowStats {
+    private final LongAdder[] overflows = new LongAdder[OverflowPolicy.values().length];
+
+    protected OverflowStats() {
+        for (int i = 0; i < overflows.length; i++)
+            overflows[i] = new LongAdder();
+    }
+
+    /**
+     * Record an overflow.
+     *
+     * @param policy The policy that handled the overflow
+     */
+    protected void record(OverflowPolicy policy) {
+        overflows[policy.ordinal()].increment();
+    }
+
+    /**
+     * @param policy An {@code OverflowPolicy}
+     * @return the number of overflows handled by {@code policy}
+     */
+    public long getOverflows(OverflowPolicy policy) {
+        return overflows[policy.ordinal()].sum();
+    }
+
+    /**
+     * @return the number of messages dropped by the {@code DROP_OLDEST} and {@code DROP_NEWEST} policies
+     */
+    public long getDroppedMessages() {
+        return getOverflows(OverflowPolicy.DROP_OLDEST) + getOverflows(OverflowPolicy.DROP_NEWEST);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("OverflowStats{");
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            if (policy.ordinal() > 0)
+                builder.append(", ");
+            builder.append(policy).append('=').append(getOverflows(policy));
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -8,6 +8,7 @@ import fr.sorbonne_u.components.cvm.AbstractCVM;
 import fr.sorbonne_u.components.cvm.AbstractDistributedCVM;
 import fr.sorbonne_u.components.exceptions.ComponentShutdownException;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 import fr.sorbonne_u.components.pubsub.connectors.ObserverConnector;
 import fr.sorbonne_u.components.pubsub.exceptions.UnPublishPortException;
@@ -17,8 +18,23 @@ import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
 import fr.sorbonne_u.components.pubsub.port.PubSubInBoundPort;
 import fr.sorbonne_u.components.pubsub.port.PubSubOutBoundPort;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Predicate;
 
 import static fr.sorbonne_u.components.ports.AbstractPort.generatePortURI;
@@ -184,6 +200,20 @@ import static fr.sorbonne_u.components.ports.AbstractPort.generatePortURI;
 
 public class PubSub extends AbstractComponent implements PubSubService {
     private final static String COMMON_PUBSUB = "COMMON_PUBSUB";
+    /**
+     * The default maximum number of messages waiting in the queue of a subscription.
+     */
+    private final static int DEFAULT_QUEUE_CAPACITY = 1024;
+    /**
+     * How long a thread waiting for a drain loop parks before retrying,
+     * e.g a publishing thread waiting for room in a full queue.
+     */
+    private final static long RETRY_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    /**
+     * How many times a publishing thread evicts the oldest message of a full queue
+     * before it drops the new message, see {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    private final static int DROP_OLDEST_ATTEMPTS = 8;
     /**
      * A common PubSub instance
      */
@@ -199,6 +229,66 @@ public class PubSub extends AbstractComponent implements PubSubService {
      */
     private PubSubInBoundPort pubSubInBoundPort;
 
+    /**
+     * The events of this component, recorded lazily, see {@link TraceLog}.
+     */
+    private final TraceLog trace;
+
+    /**
+     * Runs the drain loops of the subscriptions, a drain loop holds a thread only while
+     * its subscription has queued messages, so a slow subscriber never holds a publishing thread.
+     * In the virtual-thread execution mode a drain loop runs in a virtual thread,
+     * which also handles the requests of the in-bound port.
+     */
+    private final ExecutorService deliveryExecutor;
+
+    /**
+     * Hands the publications of the in-bound port to the broker, a single thread keeps them
+     * in the order they arrive and runs the log appends instead of the threads of the publishers.
+     */
+    private final ExecutorService publicationExecutor;
+
+    /**
+     * Maximum number of messages waiting in the queue of a subscription.
+     */
+    private final int queueCapacity;
+
+    /**
+     * What a subscription does when its queue is full, unless its topic has its own policy.
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * The overflow policies of specific topics.
+     */
+    private final Map<Topic, OverflowPolicy> topicOverflowPolicies;
+
+    /**
+     * Counts the overflows of the subscriptions queues.
+     */
+    private final OverflowStats overflowStats = new OverflowStats();
+
+    /**
+     * The measures of this component.
+     */
+    private final PubSubMetrics metrics;
+
+    /**
+     * Maximum number of messages delivered to a subscriber in one notification.
+     */
+    private final int deliveryBatchSize;
+
+    /**
+     * Maximum time in milliseconds a message waits in a subscription buffer before it is delivered.
+     */
+    private final long deliveryLingerTime;
+
+    /**
+     * Flushes the subscription buffers when the linger time is over,
+     * null when messages are not batched.
+     */
+    private final ScheduledExecutorService deliveryFlusher;
+
     /**
      * Creates a new {@code} PubSub component using its builder.
      *
@@ -209,10 +299,26 @@ public class PubSub extends AbstractComponent implements PubSubService {
                 builder.reflectionInboundPortURI = generatePortURI() :
                 builder.reflectionInboundPortURI, builder.nbThreads, builder.nbSchedulableThreads);
 
-        broker = new Broker(builder.subscribingParallelism, builder.publishingParallelism);
+        trace = builder.newTraceLog(this);
+        MessageLog log = builder.logDirectory == null ? null :
+                new MessageLog(new File(builder.logDirectory), builder.logSegmentSize,
+                        builder.logRetentionBytes, builder.logRetentionTime, builder.logFlushInterval);
+        broker = new Broker(builder.subscribingParallelism, builder.publishingParallelism,
+                builder.deliveryChunkSize, log, builder.replayBufferSize, builder.virtualThreads, builder.shardCount);
+        builder.compactedTopics.forEach(broker::compact);
+        metrics = new PubSubMetrics(broker, overflowStats);
+        deliveryExecutor = builder.virtualThreads ? VirtualThreads.newExecutor() : Executors.newCachedThreadPool();
+        publicationExecutor = Executors.newSingleThreadExecutor();
+        queueCapacity = builder.queueCapacity;
+        overflowPolicy = builder.overflowPolicy;
+        topicOverflowPolicies = new HashMap<>(builder.topicOverflowPolicies);
+        deliveryBatchSize = builder.deliveryBatchSize;
+        deliveryLingerTime = builder.deliveryLingerTime;
+        deliveryFlusher = deliveryBatchSize > 1 ? Executors.newSingleThreadScheduledExecutor() : null;
+        Executor requestExecutor = builder.virtualThreads ? deliveryExecutor : null;
         this.pubSubInBoundPort = builder.pubSubInBoundPortURI == null ?
-                new PubSubInBoundPort(this) :
-                new PubSubInBoundPort(builder.pubSubInBoundPortURI, this);
+                new PubSubInBoundPort(this, requestExecutor, publicationExecutor, trace) :
+                new PubSubInBoundPort(builder.pubSubInBoundPortURI, this, requestExecutor, publicationExecutor, trace);
 
         this.addPort(pubSubInBoundPort);
         pubSubInBoundPort.publishPort();
@@ -320,8 +426,15 @@ public class PubSub extends AbstractComponent implements PubSubService {
 
     @Override
     public void finalise() throws Exception {
-        this.logMessage("stopping  component.");
+        trace.log(TraceLevel.INFO, "stopping component.");
+        // the publications already received reach the broker before it shuts down
+        publicationExecutor.shutdown();
+        publicationExecutor.awaitTermination(5, TimeUnit.SECONDS);
         broker.shutdown();
+        deliveryExecutor.shutdownNow();
+        if (deliveryFlusher != null)
+            deliveryFlusher.shutdownNow();
+        trace.close();
         super.finalise();
 
     }
@@ -349,40 +462,54 @@ public class PubSub extends AbstractComponent implements PubSubService {
 
     @Override
     public void publish(Message message) {
-        this.logMessage("publishing: " + message.getContent() + " to " + message.getTopic());
+        trace.log(TraceLevel.DEBUG, "publishing: {} to {}", message.getContent(), message.getTopic());
+        metrics.recordReceived(1);
         broker.publish(message);
     }
 
+    @Override
+    public void publishBatch(List<Message> messages) {
+        trace.log(TraceLevel.DEBUG, "publishing a batch of {} messages", messages.size());
+        metrics.recordReceived(messages.size());
+        broker.publish(messages);
+    }
+
     @Override
     public void subscribe(String subId, Topic topic) throws Exception {
-        this.logMessage("subscribing " + subId + " to :" + topic);
+        trace.log(TraceLevel.INFO, "subscribing {} to :{}", subId, topic);
 
-        this.broker.subscribe(new SubscriptionImpl(this, subId), topic);
+        this.broker.subscribe(new SubscriptionImpl(this, subId, topic), topic);
     }
 
     @Override
     public void subscribe(String subId, Topic topic, Predicate<Message> filter) throws Exception {
-        this.logMessage("subscribing with filter " + subId + " to :" + topic);
-        this.broker.subscribe(new SubscriptionImpl(this, subId), topic, filter);
+        trace.log(TraceLevel.INFO, "subscribing with filter {} to :{}", subId, topic);
+        this.broker.subscribe(new SubscriptionImpl(this, subId, topic), topic, filter);
+
+    }
 
+    @Override
+    public void subscribe(String subId, Topic topic, StartPosition position) throws Exception {
+        trace.log(TraceLevel.INFO, "subscribing {} from {} to :{}", subId, position, topic);
+        this.broker.subscribe(new SubscriptionImpl(this, subId, topic), topic, position);
     }
 
 
     @Override
     public void filter(String subId, Topic topic, Predicate<Message> filter) {
-        this.logMessage(subId + " filtering: " + topic);
+        trace.log(TraceLevel.INFO, "{} filtering: {}", subId, topic);
         this.broker.filter(subId, topic, filter);
     }
 
     @Override
     public void unsubscribe(String subId, Topic topic) {
-        this.logMessage("unsubscribing " + subId + " subscription from :" + topic);
+        trace.log(TraceLevel.INFO, "unsubscribing {} subscription from :{}", subId, topic);
         this.broker.unsubscribe(subId, topic);
     }
 
     @Override
     public void unsubscribe(String subId) {
-        this.logMessage("removing " + subId + " subscription from all topics");
+        trace.log(TraceLevel.INFO, "removing {} subscription from all topics", subId);
         broker.unsubscribe(subId);
     }
 
@@ -418,6 +545,35 @@ public class PubSub extends AbstractComponent implements PubSubService {
         return broker.geTopics();
     }
 
+    /**
+     * Get the delivery statistics of a topic.
+     *
+     * @param topic A {@code Topic}
+     * @return the statistics of the topic, or null if no message was published on it
+     */
+    public DeliveryStats getDeliveryStats(Topic topic) {
+        return broker.getDeliveryStats(topic);
+    }
+
+    /**
+     * Get the overflow statistics of the subscriptions queues.
+     *
+     * @return the overflow statistics of this {@code PubSub}
+     */
+    public OverflowStats getOverflowStats() {
+        return overflowStats;
+    }
+
+    /**
+     * Get the measures of this component: throughput and latency per topic and per subscriber,
+     * queue depths and overflows.
+     *
+     * @return the metrics of this {@code PubSub}
+     */
+    public PubSubMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Get the in-bound port of this {@code PubSub} component.
      *
@@ -437,6 +593,21 @@ public class PubSub extends AbstractComponent implements PubSubService {
         private int subscribingParallelism;
         private int publishingParallelism;
         private String pubSubInBoundPortURI;
+        private int deliveryBatchSize;
+        private long deliveryLingerTime;
+        private int deliveryChunkSize;
+        private int queueCapacity;
+        private OverflowPolicy overflowPolicy;
+        private final Map<Topic, OverflowPolicy> topicOverflowPolicies = new HashMap<>();
+        private String logDirectory;
+        private int logSegmentSize;
+        private long logRetentionBytes;
+        private long logRetentionTime;
+        private long logFlushInterval;
+        private int replayBufferSize;
+        private final Map<Topic, String> compactedTopics = new HashMap<>();
+        private boolean virtualThreads;
+        private int shardCount;
 
         protected Builder(AbstractCVM cvm) {
             super(cvm);
@@ -444,6 +615,16 @@ public class PubSub extends AbstractComponent implements PubSubService {
             nbSchedulableThreads = 0;
             subscribingParallelism = 10;
             publishingParallelism = 10;
+            shardCount = 1;
+            deliveryBatchSize = 1;
+            deliveryLingerTime = 5;
+            deliveryChunkSize = PublisherExecutor.DEFAULT_CHUNK_SIZE;
+            queueCapacity = DEFAULT_QUEUE_CAPACITY;
+            overflowPolicy = OverflowPolicy.BLOCK;
+            logSegmentSize = MessageLog.DEFAULT_SEGMENT_SIZE;
+            logRetentionBytes = Long.MAX_VALUE;
+            logRetentionTime = Long.MAX_VALUE;
+            logFlushInterval = MessageLog.DEFAULT_FLUSH_INTERVAL;
         }
 
         /**
@@ -475,6 +656,261 @@ public class PubSub extends AbstractComponent implements PubSubService {
             return this;
         }
 
+        /**
+         * Split the broker in shards, a topic belongs to the shard of its hash and each shard has
+         * its own executors, so a hot topic does not slow down the topics of the other shards.
+         * <p>
+         * The messages of a shard are delivered by a single thread, plus a spare thread while a publication waits
+         * for room in a full subscription queue, see {@link OverflowPolicy#BLOCK}, so the messages published on a topic
+         * by a thread, e.g the calls of a {@code Publisher} to the in-bound port, which hands them to the broker
+         * on a single thread in the order they arrive, are delivered in the order they were published,
+         * and the publishing parallelism is the number of shards: {@link #setPublishingParallelism(int)} and {@link #setDeliveryChunkSize(int)}
+         * are only used by a broker with a single shard, and the subscribing parallelism is shared by the shards.
+         * The default value is 1, i.e the broker is not sharded.
+         * </p>
+         *
+         * @param shardCount An {@code int} value, e.g the number of cores
+         * @return This builder
+         * @throws IllegalArgumentException if {@code shardCount} is <= 0
+         */
+        public Builder setShardCount(int shardCount) {
+            if (shardCount <= 0)
+                throw new IllegalArgumentException("shardCount must be > 0");
+            this.shardCount = shardCount;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of subscribers a single task of the broker delivers a message to.
+         * <p>
+         * A message whose subscribers fit in one chunk is delivered inline by its publishing task,
+         * otherwise its subscribers are split in chunks that are delivered in parallel
+         * by the publishing executor.
+         * </p>
+         *
+         * @param deliveryChunkSize An {@code int} value
+         * @return This builder
+         * @throws IllegalArgumentException if {@code deliveryChunkSize} is <= 0
+         */
+        public Builder setDeliveryChunkSize(int deliveryChunkSize) {
+            if (deliveryChunkSize <= 0)
+                throw new IllegalArgumentException("deliveryChunkSize must be > 0");
+            this.deliveryChunkSize = deliveryChunkSize;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of messages delivered to a subscriber in one notification.
+         * <p>
+         * When greater than 1, messages are buffered per subscriber and delivered with
+         * {@code notifyBatch} once the buffer is full or the linger time is over.
+         * The default value is 1, i.e every message is delivered as soon as it is published.
+         * </p>
+         *
+         * @param deliveryBatchSize An {@code int} value
+         * @return This builder
+         * @throws IllegalArgumentException if {@code deliveryBatchSize} is <= 0
+         * @see #setDeliveryLingerTime(long)
+         */
+        public Builder setDeliveryBatchSize(int deliveryBatchSize) {
+            if (deliveryBatchSize <= 0)
+                throw new IllegalArgumentException("deliveryBatchSize must be > 0");
+            this.deliveryBatchSize = deliveryBatchSize;
+            return this;
+        }
+
+        /**
+         * Set the maximum time a message waits in a subscriber buffer before it is delivered,
+         * only used when the delivery batch size is greater than 1.
+         *
+         * @param deliveryLingerTime A time in milliseconds
+         * @return This builder
+         * @throws IllegalArgumentException if {@code deliveryLingerTime} is <= 0
+         * @see #setDeliveryBatchSize(int)
+         */
+        public Builder setDeliveryLingerTime(long deliveryLingerTime) {
+            if (deliveryLingerTime <= 0)
+                throw new IllegalArgumentException("deliveryLingerTime must be > 0");
+            this.deliveryLingerTime = deliveryLingerTime;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of messages waiting in the queue of a subscription,
+         * the default value is 1024.
+         *
+         * @param queueCapacity An {@code int} value, rounded up to the next power of 2
+         * @return This builder
+         * @throws IllegalArgumentException if {@code queueCapacity} is <= 0
+         * @see #setOverflowPolicy(OverflowPolicy)
+         */
+        public Builder setQueueCapacity(int queueCapacity) {
+            if (queueCapacity <= 0)
+                throw new IllegalArgumentException("queueCapacity must be > 0");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Set what a subscription does with a message published while its queue is full,
+         * the default policy is {@link OverflowPolicy#BLOCK}.
+         *
+         * @param overflowPolicy An {@code OverflowPolicy}
+         * @return This builder
+         * @see #setOverflowPolicy(Topic, OverflowPolicy)
+         */
+        public Builder setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+            return this;
+        }
+
+        /**
+         * Set the overflow policy of the subscriptions to a specific topic.
+         *
+         * @param topic          A {@code Topic}, wildcards are compared as is
+         * @param overflowPolicy An {@code OverflowPolicy}
+         * @return This builder
+         * @see #setOverflowPolicy(OverflowPolicy)
+         */
+        public Builder setOverflowPolicy(Topic topic, OverflowPolicy overflowPolicy) {
+            topicOverflowPolicies.put(Objects.requireNonNull(topic), Objects.requireNonNull(overflowPolicy));
+            return this;
+        }
+
+        /**
+         * Persist the published messages in a {@link MessageLog} in a directory,
+         * the messages already in the directory are recovered. By default messages are not persisted.
+         *
+         * @param logDirectory The path of the directory of the log
+         * @return This builder
+         * @see #setLogSegmentSize(int)
+         * @see #setLogRetentionBytes(long)
+         * @see #setLogRetentionTime(long)
+         * @see #setLogFlushInterval(long)
+         */
+        public Builder setLogDirectory(String logDirectory) {
+            this.logDirectory = Objects.requireNonNull(logDirectory);
+            return this;
+        }
+
+        /**
+         * Set the size of a segment file of the log, the default size is 16 MB.
+         *
+         * @param logSegmentSize A size in bytes, a message must fit in a segment
+         * @return This builder
+         * @throws IllegalArgumentException if {@code logSegmentSize} is <= 1024
+         */
+        public Builder setLogSegmentSize(int logSegmentSize) {
+            if (logSegmentSize <= 1024)
+                throw new IllegalArgumentException("logSegmentSize must be > 1024");
+            this.logSegmentSize = logSegmentSize;
+            return this;
+        }
+
+        /**
+         * Set the maximum size of the log of a topic, its oldest segments are deleted beyond it.
+         * By default the size is unlimited.
+         *
+         * @param logRetentionBytes A size in bytes
+         * @return This builder
+         * @throws IllegalArgumentException if {@code logRetentionBytes} is <= 0
+         */
+        public Builder setLogRetentionBytes(long logRetentionBytes) {
+            if (logRetentionBytes <= 0)
+                throw new IllegalArgumentException("logRetentionBytes must be > 0");
+            this.logRetentionBytes = logRetentionBytes;
+            return this;
+        }
+
+        /**
+         * Set the maximum age of a persisted message, the segments whose messages are all older are deleted.
+         * By default the age is unlimited.
+         *
+         * @param logRetentionTime A time in milliseconds
+         * @return This builder
+         * @throws IllegalArgumentException if {@code logRetentionTime} is <= 0
+         */
+        public Builder setLogRetentionTime(long logRetentionTime) {
+            if (logRetentionTime <= 0)
+                throw new IllegalArgumentException("logRetentionTime must be > 0");
+            this.logRetentionTime = logRetentionTime;
+            return this;
+        }
+
+        /**
+         * Set the time between two flushes of the log to the disk, the default value is 10 ms.
+         * <p>
+         * A message is durable at most one flush interval after it was published,
+         * all the messages published meanwhile are flushed at once.
+         * </p>
+         *
+         * @param logFlushInterval A time in milliseconds
+         * @return This builder
+         * @throws IllegalArgumentException if {@code logFlushInterval} is <= 0
+         */
+        public Builder setLogFlushInterval(long logFlushInterval) {
+            if (logFlushInterval <= 0)
+                throw new IllegalArgumentException("logFlushInterval must be > 0");
+            this.logFlushInterval = logFlushInterval;
+            return this;
+        }
+
+        /**
+         * Keep the last messages of each topic in memory, in a ring buffer preallocated
+         * on the first publication on the topic, so a subscriber starting from
+         * {@link fr.sorbonne_u.components.pubsub.StartPosition#last(int)} gets them right away,
+         * without a log. The default value is 0, i.e the messages are not kept.
+         *
+         * @param replayBufferSize The number of messages kept per topic, rounded up to the next power of 2
+         * @return This builder
+         * @throws IllegalArgumentException if {@code replayBufferSize} is < 0
+         */
+        public Builder setReplayBufferSize(int replayBufferSize) {
+            if (replayBufferSize < 0)
+                throw new IllegalArgumentException("replayBufferSize must be >= 0");
+            this.replayBufferSize = replayBufferSize;
+            return this;
+        }
+
+        /**
+         * Compact a topic: keep the last message of each key of the topic, where the key of a message
+         * is the value of one of its properties, e.g the symbol of a price feed.
+         * A new subscriber to the topic first receives the current value of each key, then the published messages.
+         * The memory of the topic is bounded by its number of keys.
+         *
+         * @param topic       A {@code Topic} without wildcards
+         * @param keyProperty The property whose value is the key of a message
+         * @return This builder
+         * @throws IllegalArgumentException if {@code topic} has wildcards
+         */
+        public Builder setCompactedTopic(Topic topic, String keyProperty) {
+            if (Objects.requireNonNull(topic).isWildcard())
+                throw new IllegalArgumentException("topic must not have wildcards");
+            compactedTopics.put(topic, Objects.requireNonNull(keyProperty));
+            return this;
+        }
+
+        /**
+         * Run the broker requests, the requests of the in-bound port and the deliveries to the subscribers
+         * in virtual threads, one per task, instead of the pools sized by {@link #setNbThreads(int)},
+         * {@link #setSubscribingParallelism(int)} and {@link #setPublishingParallelism(int)}.
+         * A delivery blocked on a slow or remote subscriber then holds no platform thread,
+         * so many concurrent deliveries are cheap. The default value is false.
+         * <p>
+         * Virtual threads require Java 21 or later, see the {@code java21} build profile.
+         * </p>
+         *
+         * @param virtualThreads A {@code boolean} value
+         * @return This builder
+         * @throws UnsupportedOperationException if {@code virtualThreads} is true and the JVM does not support them
+         */
+        public Builder setVirtualThreads(boolean virtualThreads) {
+            if (virtualThreads)
+                VirtualThreads.checkSupported();
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
         /**
          * Set the in-bound port URI of this PubSub component.
          *
@@ -509,24 +945,95 @@ public class PubSub extends AbstractComponent implements PubSubService {
      * the Subscriber ID to establish the connection between the {@code PubSubOutBoundPort} and
      * the {@code SubscriberInBoundPort}.
      * <p>
+     * Each {@code SubscriptionImpl} owns a bounded {@link MpscArrayQueue} of messages:
+     * {@link #notify} only appends the message, already filtered by the broker, to the queue, then a single drain loop,
+     * scheduled on the {@code PubSub} delivery executor, sends the queued messages to the subscriber
+     * in the order in which they were queued. A slow subscriber only delays its own drain loop,
+     * and what happens when its queue is full is decided by the {@link OverflowPolicy} of the subscription.
+     * <p>
      * Since a {@code Subscription} instance is manipulated by multiple threads, it must carefully
      * synchronize its operations, mainly in this scenario:
      * when a {@code end} is called, the PubSubOutBoundPort is unpublished and cannot be used,
-     * in the same time the {@link PublisherExecutor} executor
-     * is calling the {@link #notify} method.
-     * if the two methods {@link #notify} and {@link #end} are not synchronized then an exception
-     * will occur since the port would be already unpublished.
+     * in the same time the drain loop is sending messages through it.
+     * Instead of a lock, the subscription has an atomic lifecycle state,
+     * {@code OPEN -> [DISCONNECTING ->] CLOSING -> CLOSED}: {@link #notify} only queues messages
+     * while the subscription is {@code OPEN}, and {@link #end} moves it to {@code CLOSING}.
+     * The port is only torn down by the thread holding the drain loop flag: {@link #end} tears it down
+     * itself when the flag is free, otherwise the holder tears it down when it releases the flag,
+     * so neither {@link #end} nor the publishing threads ever wait for the drain loop or take a monitor.
+     * <p>
+     * When the {@code PubSub} delivery batch size is greater than 1, the drain loop gathers the
+     * queued messages and sends them with a single {@code notifyBatch} call when the batch is full or
+     * when the linger time of its first message is over.
      *
      * @see Broker
      */
     private static class SubscriptionImpl implements Subscription {
+        /**
+         * Messages are queued and delivered.
+         */
+        private static final int OPEN = 0;
+        /**
+         * The overflow policy asked the broker to remove this subscription, messages are not queued anymore.
+         */
+        private static final int DISCONNECTING = 1;
+        /**
+         * {@link #end} was called, the holder of the drain loop flag tears down the port.
+         */
+        private static final int CLOSING = 2;
+        /**
+         * The port is disconnected and unpublished.
+         */
+        private static final int CLOSED = 3;
 
         private final PubSubOutBoundPort pubSubOutBoundPort;
         private final String subscriberInBoundPortURI;
-        private Predicate<Message> filter;
-
-
-        private SubscriptionImpl(PubSub owner, String subscriberInBoundPortURI) throws Exception {
+        private final Topic topic;
+        private final Broker broker;
+        private final MpscArrayQueue<Message> queue;
+        private final OverflowPolicy overflowPolicy;
+        private final OverflowStats overflowStats;
+        private final SubscriberStats stats;
+        private final ExecutorService drainer;
+        private final int batchSize;
+        private final long lingerTime;
+        private final ScheduledExecutorService flusher;
+        /**
+         * The trace of the owner, records the failed deliveries.
+         */
+        private final TraceLog trace;
+        /**
+         * True while a drain loop is scheduled or running, only one drain loop runs at a time.
+         */
+        private final AtomicBoolean draining = new AtomicBoolean();
+        /**
+         * Set when the linger time of the pending batch is over.
+         */
+        private volatile boolean lingerExpired;
+        /**
+         * The lifecycle state of this subscription.
+         */
+        private final AtomicInteger state = new AtomicInteger(OPEN);
+        private volatile Predicate<Message> filter;
+        /**
+         * The pending batch and its linger timer, only used by the drain loop.
+         */
+        private List<Message> buffer;
+        private boolean lingerScheduled;
+
+
+        private SubscriptionImpl(PubSub owner, String subscriberInBoundPortURI, Topic topic) throws Exception {
+            this.topic = topic;
+            this.broker = owner.broker;
+            this.queue = new MpscArrayQueue<>(owner.queueCapacity);
+            this.overflowPolicy = owner.topicOverflowPolicies.getOrDefault(topic, owner.overflowPolicy);
+            this.overflowStats = owner.overflowStats;
+            this.drainer = owner.deliveryExecutor;
+            this.batchSize = owner.deliveryBatchSize;
+            this.lingerTime = owner.deliveryLingerTime;
+            this.flusher = owner.deliveryFlusher;
+            this.trace = owner.trace;
+            this.buffer = new ArrayList<>(batchSize);
             this.pubSubOutBoundPort = new PubSubOutBoundPort(owner);
             owner.addPort(pubSubOutBoundPort);
             this.pubSubOutBoundPort.localPublishPort();
@@ -536,34 +1043,214 @@ public class PubSub extends AbstractComponent implements PubSubService {
                     pubSubOutBoundPort.getPortURI(),
                     subscriberInBoundPortURI,
                     ObserverConnector.class.getCanonicalName());
+            this.stats = broker.getSubscriberStats(subscriberInBoundPortURI, true);
+            stats.addQueue(queue);
+
+        }
+
+        @Override
+        public void notify(Message message) {
+            if (state.get() != OPEN)
+                return;
+            if (!queue.offer(message) && !overflow(message))
+                return;
+            scheduleDrain();
+        }
 
+        /**
+         * Send a batch in a single notification, once the queued messages were sent.
+         * <p>
+         * The batch bypasses the queue, the calling thread takes over the drain loop flag
+         * and sends it itself, hence a large batch, e.g a catch-up read from the log,
+         * neither overflows the queue nor is split.
+         */
+        @Override
+        public void notifyBatch(List<Message> messages) {
+            if (messages.isEmpty())
+                return;
+            while (!draining.compareAndSet(false, true)) {
+                // a drain loop discarded by a shut down executor never releases the flag
+                if (state.get() != OPEN || drainer.isShutdown())
+                    return;
+                LockSupport.parkNanos(RETRY_PARK_NANOS);
+            }
+            boolean failed = false;
+            try {
+                if (state.get() != OPEN)
+                    return;
+                Message message;
+                while ((message = queue.poll()) != null)
+                    buffer.add(message);
+                if (!buffer.isEmpty())
+                    flush();
+                this.pubSubOutBoundPort.notifyBatch(messages);
+                stats.recordNotifications(messages.size());
+            } catch (Exception e) {
+                trace.log(TraceLevel.ERROR, "notifying {} of a batch failed: {}", subscriberInBoundPortURI, e);
+                failed = true;
+            } finally {
+                release();
+            }
+            if (failed)
+                end();
+            else if (state.get() == OPEN && !queue.isEmpty())
+                scheduleDrain();
         }
 
         /**
-         * See if there is a filter for this message.
+         * Apply the overflow policy to a message that does not fit in the queue.
          *
          * @param message A {@code Message}
-         * @return true if the filter is accepted
+         * @return true if the message was eventually queued
          */
-        private boolean accept(Message message) {
-            if (filter == null)
-                return true;
+        private boolean overflow(Message message) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    overflowStats.record(OverflowPolicy.BLOCK);
+                    // wait for the drain loop to make room, a waiting thread of a pool is compensated
+                    // by the pool, so the other topics of the publisher executor are still published
+                    BlockedOffer offer = new BlockedOffer(message);
+                    try {
+                        ForkJoinPool.managedBlock(offer);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    return offer.queued;
+                case DROP_OLDEST:
+                    for (int attempt = 0; attempt < DROP_OLDEST_ATTEMPTS; attempt++) {
+                        // an evicted message is dropped, even if another producer takes its slot
+                        if (queue.evict() != null)
+                            overflowStats.record(OverflowPolicy.DROP_OLDEST);
+                        if (queue.offer(message))
+                            return true;
+                        LockSupport.parkNanos(RETRY_PARK_NANOS);
+                    }
+                    overflowStats.record(OverflowPolicy.DROP_NEWEST);
+                    return false;
+                case DISCONNECT:
+                    if (!state.compareAndSet(OPEN, DISCONNECTING))
+                        return false;
+                    overflowStats.record(OverflowPolicy.DISCONNECT);
+                    // the broker ends this subscription once it is removed from the topic
+                    broker.unsubscribe(subscriberInBoundPortURI, topic);
+                    return false;
+                default:
+                    overflowStats.record(OverflowPolicy.DROP_NEWEST);
+                    return false;
+            }
+        }
 
-            return filter.test(message);
+        /**
+         * Waits until a message fits in the queue, or until the subscription is not open anymore.
+         */
+        private final class BlockedOffer implements ForkJoinPool.ManagedBlocker {
+            private final Message message;
+            private boolean queued;
+
+            private BlockedOffer(Message message) {
+                this.message = message;
+            }
+
+            @Override
+            public boolean block() {
+                scheduleDrain();
+                LockSupport.parkNanos(RETRY_PARK_NANOS);
+                return isReleasable();
+            }
+
+            @Override
+            public boolean isReleasable() {
+                if (!queued && state.get() == OPEN)
+                    queued = queue.offer(message);
+                return queued || state.get() != OPEN;
+            }
         }
 
-        @Override
-        public void notify(Message message) {
-            synchronized (pubSubOutBoundPort) {
+        /**
+         * Schedule the drain loop unless it is already scheduled or running.
+         */
+        private void scheduleDrain() {
+            if (!draining.get() && draining.compareAndSet(false, true)) {
                 try {
-                    if (accept(message) && pubSubOutBoundPort.isPublished())
-                        this.pubSubOutBoundPort.notify(message);
+                    drainer.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // the PubSub is shutting down
+                    release();
+                }
+            }
+        }
+
+        /**
+         * Send the queued messages to the subscriber, runs on one thread at a time.
+         */
+        private void drain() {
+            boolean failed = false;
+            try {
+                Message message;
+                while (state.get() == OPEN && (message = queue.poll()) != null) {
+                    buffer.add(message);
+                    if (buffer.size() >= batchSize)
+                        flush();
+                }
+                if (buffer.isEmpty() || state.get() != OPEN)
+                    lingerExpired = false;
+                else if (lingerExpired)
+                    flush();
+                else if (!lingerScheduled) {
+                    lingerScheduled = true;
+                    flusher.schedule(this::lingerFlush, lingerTime, TimeUnit.MILLISECONDS);
+                }
+            } catch (Exception e) {
+                trace.log(TraceLevel.ERROR, "notifying {} failed: {}", subscriberInBoundPortURI, e);
+                failed = true;
+            } finally {
+                release();
+            }
+            if (failed)
+                end();
+            // a message may have been queued after the last poll but before the flag was cleared
+            else if (state.get() == OPEN && (!queue.isEmpty() || lingerExpired))
+                scheduleDrain();
+        }
+
+        /**
+         * Release the drain loop flag, then tear down the port if {@link #end} was called
+         * while the flag was held.
+         */
+        private void release() {
+            draining.set(false);
+            if (state.get() == CLOSING && draining.compareAndSet(false, true)) {
+                try {
+                    close();
                 } catch (Exception e) {
-                    e.printStackTrace();
-                    end();
+                    trace.log(TraceLevel.ERROR, "closing the subscription of {} failed: {}", subscriberInBoundPortURI, e);
                 }
             }
+        }
+
+        /**
+         * Flush the pending batch once the linger time of its first message is over.
+         */
+        private void lingerFlush() {
+            lingerExpired = true;
+            scheduleDrain();
+        }
 
+        /**
+         * Send the pending batch, only called by the drain loop,
+         * the port cannot be torn down while the drain loop flag is held.
+         */
+        private void flush() throws Exception {
+            lingerExpired = false;
+            lingerScheduled = false;
+            List<Message> messages = buffer;
+            buffer = new ArrayList<>(batchSize);
+            if (messages.size() == 1)
+                this.pubSubOutBoundPort.notify(messages.get(0));
+            else
+                this.pubSubOutBoundPort.notifyBatch(messages);
+            stats.recordNotifications(messages.size());
         }
 
         @Override
@@ -571,19 +1258,47 @@ public class PubSub extends AbstractComponent implements PubSubService {
             this.filter = filter;
         }
 
+        @Override
+        public Predicate<Message> getFilter() {
+            return filter;
+        }
+
+        /**
+         * End this subscription, the messages that are still queued are dropped.
+         * <p>
+         * The port is torn down right away when no drain loop holds the flag,
+         * otherwise by the drain loop once its current send is over.
+         */
         @Override
         public void end() {
-            synchronized (pubSubOutBoundPort) {
-                try {
-                    if(!pubSubOutBoundPort.isPublished())
-                        return;
-                    this.pubSubOutBoundPort.doDisconnection();
-                    this.pubSubOutBoundPort.unpublishPort();
-                } catch (Exception e) {
-                    throw new UnPublishPortException(e);
-                }
+            int current;
+            do {
+                current = state.get();
+                if (current >= CLOSING)
+                    return;
+            } while (!state.compareAndSet(current, CLOSING));
+
+            // the flag is taken for good, the holder closes the subscription when it releases it
+            if (!draining.compareAndSet(false, true))
+                return;
+            try {
+                close();
+            } catch (Exception e) {
+                throw new UnPublishPortException(e);
             }
+        }
 
+        /**
+         * Disconnect and unpublish the port, only called by the holder of the drain loop flag.
+         */
+        private void close() throws Exception {
+            try {
+                this.pubSubOutBoundPort.doDisconnection();
+                this.pubSubOutBoundPort.unpublishPort();
+            } finally {
+                stats.removeQueue(queue);
+                state.set(CLOSED);
+            }
         }
 
 
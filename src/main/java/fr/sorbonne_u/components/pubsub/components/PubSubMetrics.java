@@ -0,0 +1,119 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Topic;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code PubSubMetrics} class gathers the measures of a {@code PubSub} component:
+ * <ul>
+ * <li>the messages received by the component, see {@link #getReceivedMessages()},</li>
+ * <li>the deliveries of each topic, their filter rejections and the latency from the publication
+ * of a message to its hand-off to each subscription, see {@link #getDeliveryStats(Topic)},</li>
+ * <li>the same latency, the notifications and the queue depth of each subscriber,
+ * see {@link #getSubscriberStats(String)},</li>
+ * <li>the depth of the queues of the broker executors,</li>
+ * <li>the overflows of the subscription queues, see {@link #getOverflowStats()}.</li>
+ * </ul>
+ * The counters are cumulative, a rate is the difference between two readings divided by their interval.
+ * Recording a measure allocates nothing and updates striped counters, reading them sums the stripes,
+ * so a monitor may poll them while messages are published.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see PubSub#getMetrics()
+ * @see DeliveryStats
+ * @see SubscriberStats
+ * @see OverflowStats
+ * @see LatencyHistogram
+ */
+public class PubSubMetrics {
+    private final Broker broker;
+    private final OverflowStats overflowStats;
+    private final LongAdder receivedMessages = new LongAdder();
+
+    protected PubSubMetrics(Broker broker, OverflowStats overflowStats) {
+        this.broker = broker;
+        this.overflowStats = overflowStats;
+    }
+
+    /**
+     * Record messages received by the component.
+     *
+     * @param count The number of messages
+     */
+    protected void recordReceived(int count) {
+        receivedMessages.add(count);
+    }
+
+    /**
+     * @return the number of messages received by the component, in single or batch publications
+     */
+    public long getReceivedMessages() {
+        return receivedMessages.sum();
+    }
+
+    /**
+     * @return the topics on which messages were published
+     */
+    public Set<Topic> getPublishedTopics() {
+        return broker.getPublishedTopics();
+    }
+
+    /**
+     * @param topic A {@code Topic}
+     * @return the delivery statistics of the topic, or null if no message was published on it
+     */
+    public DeliveryStats getDeliveryStats(Topic topic) {
+        return broker.getDeliveryStats(topic);
+    }
+
+    /**
+     * @return the IDs of the subscribers whose deliveries are recorded
+     */
+    public Set<String> getSubscribers() {
+        return broker.getRecordedSubscribers();
+    }
+
+    /**
+     * @param subId The subscriber ID
+     * @return the delivery statistics of the subscriber, or null if it has no subscription
+     */
+    public SubscriberStats getSubscriberStats(String subId) {
+        return broker.getSubscriberStats(subId, false);
+    }
+
+    /**
+     * @return an estimate of the number of publications waiting to be delivered by the broker
+     */
+    public long getPublishingQueueDepth() {
+        return broker.getPublishingQueueDepth();
+    }
+
+    /**
+     * @return an estimate of the number of subscriber requests waiting to be handled by the broker
+     */
+    public long getSubscribingQueueDepth() {
+        return broker.getSubscribingQueueDepth();
+    }
+
+    /**
+     * @return the overflow statistics of the subscription queues
+     */
+    public OverflowStats getOverflowStats() {
+        return overflowStats;
+    }
+
+    @Override
+    public String toString() {
+        return "PubSubMetrics{" +
+                "receivedMessages=" + getReceivedMessages() +
+                ", publishedTopics=" + getPublishedTopics().size() +
+                ", subscribers=" + getSubscribers().size() +
+                ", publishingQueueDepth=" + getPublishingQueueDepth() +
+                ", subscribingQueueDepth=" + getSubscribingQueueDepth() +
+                ", overflowStats=" + overflowStats +
+                '}';
+    }
+}
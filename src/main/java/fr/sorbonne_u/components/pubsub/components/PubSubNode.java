@@ -5,6 +5,8 @@ import fr.sorbonne_u.components.cvm.AbstractDistributedCVM;
 import fr.sorbonne_u.components.pubsub.Message;
 import fr.sorbonne_u.components.pubsub.Topic;
 
+import java.util.List;
+
 /**
  * A {@code PubSubNode} component acts like a <b>local</b> {@code PubSub} component for each host,
  * and should only used in Distributed CVM.
@@ -112,6 +114,16 @@ public class PubSubNode extends PubSub {
         this.publisher.publish(message);
     }
 
+    /**
+     * Publish the batch to the unique {@code PubSub} component.
+     *
+     * @param messages A list of {@code Message}s
+     */
+    @Override
+    public void publishBatch(List<Message> messages) {
+        this.publisher.publishBatch(messages);
+    }
+
 
     /**
      * The {@code Builder} class of this {@code PubSubNode} component.
@@ -148,6 +160,96 @@ public class PubSubNode extends PubSub {
             return this;
         }
 
+        @Override
+        public Builder setDeliveryChunkSize(int deliveryChunkSize) {
+            super.setDeliveryChunkSize(deliveryChunkSize);
+            return this;
+        }
+
+        @Override
+        public Builder setDeliveryBatchSize(int deliveryBatchSize) {
+            super.setDeliveryBatchSize(deliveryBatchSize);
+            return this;
+        }
+
+        @Override
+        public Builder setDeliveryLingerTime(long deliveryLingerTime) {
+            super.setDeliveryLingerTime(deliveryLingerTime);
+            return this;
+        }
+
+        @Override
+        public Builder setQueueCapacity(int queueCapacity) {
+            super.setQueueCapacity(queueCapacity);
+            return this;
+        }
+
+        @Override
+        public Builder setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            super.setOverflowPolicy(overflowPolicy);
+            return this;
+        }
+
+        @Override
+        public Builder setOverflowPolicy(Topic topic, OverflowPolicy overflowPolicy) {
+            super.setOverflowPolicy(topic, overflowPolicy);
+            return this;
+        }
+
+        @Override
+        public Builder setLogDirectory(String logDirectory) {
+            super.setLogDirectory(logDirectory);
+            return this;
+        }
+
+        @Override
+        public Builder setLogSegmentSize(int logSegmentSize) {
+            super.setLogSegmentSize(logSegmentSize);
+            return this;
+        }
+
+        @Override
+        public Builder setLogRetentionBytes(long logRetentionBytes) {
+            super.setLogRetentionBytes(logRetentionBytes);
+            return this;
+        }
+
+        @Override
+        public Builder setLogRetentionTime(long logRetentionTime) {
+            super.setLogRetentionTime(logRetentionTime);
+            return this;
+        }
+
+        @Override
+        public Builder setLogFlushInterval(long logFlushInterval) {
+            super.setLogFlushInterval(logFlushInterval);
+            return this;
+        }
+
+        @Override
+        public Builder setCompactedTopic(Topic topic, String keyProperty) {
+            super.setCompactedTopic(topic, keyProperty);
+            return this;
+        }
+
+        @Override
+        public Builder setReplayBufferSize(int replayBufferSize) {
+            super.setReplayBufferSize(replayBufferSize);
+            return this;
+        }
+
+        @Override
+        public Builder setShardCount(int shardCount) {
+            super.setShardCount(shardCount);
+            return this;
+        }
+
+        @Override
+        public Builder setVirtualThreads(boolean virtualThreads) {
+            super.setVirtualThreads(virtualThreads);
+            return this;
+        }
+
         @Override
         public Builder setPubSubInBoundPortURI(String pubSubInBoundPortURI) {
             super.setPubSubInBoundPortURI(pubSubInBoundPortURI);
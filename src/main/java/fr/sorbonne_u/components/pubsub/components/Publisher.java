@@ -10,6 +10,8 @@ import fr.sorbonne_u.components.pubsub.connectors.PublisherServiceConnector;
 import fr.sorbonne_u.components.pubsub.interfaces.PublisherService;
 import fr.sorbonne_u.components.pubsub.port.PublisherOutBoundPort;
 
+import java.util.List;
+
 import static fr.sorbonne_u.components.ports.AbstractPort.generatePortURI;
 
 /**
@@ -35,6 +37,11 @@ public class Publisher extends AbstractComponent implements PublisherService {
      */
     private PublisherOutBoundPort publisherOutBoundPort;
 
+    /**
+     * The events of this component, recorded lazily, see {@link TraceLog}.
+     */
+    private final TraceLog trace;
+
     /**
      * Creates a new publisher using its builder.
      * Note that in order to create an instance of this class you must use its builders.
@@ -50,6 +57,7 @@ public class Publisher extends AbstractComponent implements PublisherService {
                 builder.reflectionInboundPortURI = generatePortURI() :
                 builder.reflectionInboundPortURI, builder.nbThreads, builder.nbSchedulableThreads);
 
+        this.trace = builder.newTraceLog(this);
         this.publisherOutBoundPort = publisherOutBoundPort == null ?
                 new PublisherOutBoundPort(this) :
                 new PublisherOutBoundPort(builder.publisherOutBoundPortURI, this);
@@ -104,18 +112,25 @@ public class Publisher extends AbstractComponent implements PublisherService {
      */
     @Override
     public void finalise() throws Exception {
-        this.logMessage("stopping  component.");
+        trace.log(TraceLevel.INFO, "stopping component.");
         this.publisherOutBoundPort.doDisconnection();
         this.publisherOutBoundPort.unpublishPort();
+        trace.close();
         super.finalise();
     }
 
     @Override
     public void publish(Message message) {
-        this.logMessage("publishing: " + message.getContent() + " -> " + message.getTopic() + ".");
+        trace.log(TraceLevel.DEBUG, "publishing: {} -> {}.", message.getContent(), message.getTopic());
         this.publisherOutBoundPort.publish(message);
     }
 
+    @Override
+    public void publishBatch(List<Message> messages) {
+        trace.log(TraceLevel.DEBUG, "publishing a batch of {} messages.", messages.size());
+        this.publisherOutBoundPort.publishBatch(messages);
+    }
+
     /**
      * Do a port connection between this component pubSubInBoundPortURI and a {@code PubSub} in-bound port URI.
      *
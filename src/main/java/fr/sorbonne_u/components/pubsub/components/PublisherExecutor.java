@@ -1,24 +1,64 @@
 package fr.sorbonne_u.components.pubsub.components;
 
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
 import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
 
-import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The {@code PublisherExecutor} handles message publishing for the {@code Broker}.
+ * <p>
+ * Each publication is a task of this executor, run in the lane of its topic after the previous
+ * publications on the topic, see {@link HandlerExecutor#runAsync(Runnable, Object)}, hence the messages
+ * published on a topic by a thread are delivered in the order they were published.
+ * The subscribers of the message are delivered inline when they fit in one chunk, otherwise they
+ * are split in chunks which are forked to this executor, so the fan-out never leaves the configured pool.
+ * <p>
+ * Filters are evaluated by this executor before any delivery, the {@link Route} of the topic
+ * computes the subscribers that accept the message, and only them are delivered.
+ * <p>
+ * The deliveries of each topic are counted in a {@link DeliveryStats}, and the deliveries
+ * to each registered subscriber in a {@link SubscriberStats}, with the latency from the publication
+ * of the message to each hand-off.
  *
  * @author Nadir Belarocui
  * @author Katia Amichi
  * @see SubscriberExecutor
+ * @see Route
+ * @see DeliveryStats
  */
 public class PublisherExecutor extends HandlerExecutor {
+    /**
+     * The default maximum number of subscribers delivered by a single task.
+     */
+    protected static final int DEFAULT_CHUNK_SIZE = 16;
+
+    /**
+     * The maximum number of subscribers delivered by a single task.
+     */
+    private final int chunkSize;
+
+    /**
+     * The delivery statistics of each published topic.
+     */
+    private final ConcurrentHashMap<Topic, DeliveryStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * The delivery statistics of each registered subscriber, may be shared with other executors.
+     */
+    private final ConcurrentHashMap<String, SubscriberStats> subscriberStats;
+
     /**
      * Create a defalut executor with parallelism equals to 10.
      */
     protected PublisherExecutor() {
-        super();
+        this(10, DEFAULT_CHUNK_SIZE);
     }
 
     /**
@@ -27,30 +67,200 @@ public class PublisherExecutor extends HandlerExecutor {
      * @param parallelism An {@code int} value
      */
     protected PublisherExecutor(int parallelism) {
-        super(parallelism);
+        this(parallelism, DEFAULT_CHUNK_SIZE);
     }
 
     /**
-     * Publish the message asynchronously.
+     * Create an executor with a specific parallelism value and chunk size.
      *
-     * @param message     A {@code Message}
-     * @param subscribers A collection of subscribers
+     * @param parallelism An {@code int} value
+     * @param chunkSize   The maximum number of subscribers delivered by a single task
+     */
+    protected PublisherExecutor(int parallelism, int chunkSize) {
+        this(parallelism, chunkSize, false);
+    }
+
+    /**
+     * Create an executor with a specific parallelism value and chunk size,
+     * which may handle its requests in virtual threads.
+     *
+     * @param parallelism    An {@code int} value
+     * @param chunkSize      The maximum number of subscribers delivered by a single task
+     * @param virtualThreads true to handle each request in a new virtual thread
+     */
+    protected PublisherExecutor(int parallelism, int chunkSize, boolean virtualThreads) {
+        this(parallelism, chunkSize, virtualThreads, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Create an executor which records the delivery statistics of the subscribers in a map shared
+     * with other executors, e.g the executors of the shards of a {@code Broker}.
+     *
+     * @param parallelism     An {@code int} value
+     * @param chunkSize       The maximum number of subscribers delivered by a single task
+     * @param virtualThreads  true to handle each request in a new virtual thread
+     * @param subscriberStats The delivery statistics of each registered subscriber
+     */
+    protected PublisherExecutor(int parallelism, int chunkSize, boolean virtualThreads,
+                                ConcurrentHashMap<String, SubscriberStats> subscriberStats) {
+        super(parallelism, virtualThreads);
+        this.chunkSize = chunkSize;
+        this.subscriberStats = subscriberStats;
+    }
+
+    /**
+     * Publish the message asynchronously, after the messages previously published on its topic.
+     *
+     * @param message   A {@code Message}
+     * @param route     The route of the message topic
+     * @param published The time the message was published, see {@link System#nanoTime()}
      * @return a {@code CompletableFuture}
      */
-    protected CompletableFuture<Void> publish(Message message, Collection<Subscription> subscribers) {
-        return runAsync(() -> sendMessage(message, subscribers));
+    protected CompletableFuture<Void> publish(Message message, Route route, long published) {
+        return runAsync(() -> sendMessage(message, route, published), message.getTopic());
+    }
+
+    /**
+     * Publish the messages of one topic asynchronously, in order, within a single task.
+     *
+     * @param messages  A list of {@code Message}s on the same topic
+     * @param route     The route of the topic
+     * @param published The time the messages were published, see {@link System#nanoTime()}
+     * @return a {@code CompletableFuture}
+     */
+    protected CompletableFuture<Void> publish(List<Message> messages, Route route, long published) {
+        return runAsync(() -> messages.forEach(message -> sendMessage(message, route, published)),
+                messages.get(0).getTopic());
+    }
+
+    /**
+     * Get the delivery statistics of a topic.
+     *
+     * @param topic A {@code Topic}
+     * @return the statistics of the topic, or null if no message was published on it
+     */
+    protected DeliveryStats getDeliveryStats(Topic topic) {
+        return stats.get(topic);
     }
 
     /**
-     * Sends the messages in parallel to the subscribers.
+     * Stop recording the delivery statistics of a topic, e.g once it is deleted.
      *
-     * @param message     A {@code Message}
-     * @param subscribers A collection of subscribers
+     * @param topic A {@code Topic}
+     */
+    protected void removeDeliveryStats(Topic topic) {
+        stats.remove(topic);
+    }
+
+    /**
+     * @return the topics on which messages were published
      */
-    private void sendMessage(Message message, Collection<Subscription> subscribers) {
-        if (subscribers != null) {
-            subscribers.parallelStream()
-                    .forEach(sub -> sub.notify(message));
+    protected Set<Topic> getPublishedTopics() {
+        return Collections.unmodifiableSet(stats.keySet());
+    }
+
+    /**
+     * Get the delivery statistics of a subscriber, they are recorded once it is registered.
+     *
+     * @param subId The subscriber ID
+     * @param create true to register the subscriber if it is not
+     * @return the statistics of the subscriber, or null if it is not registered
+     */
+    protected SubscriberStats getSubscriberStats(String subId, boolean create) {
+        SubscriberStats subStats = subscriberStats.get(subId);
+        if (subStats == null && create)
+            subStats = subscriberStats.computeIfAbsent(subId, id -> new SubscriberStats());
+        return subStats;
+    }
+
+    /**
+     * Stop recording the delivery statistics of a subscriber.
+     *
+     * @param subId The subscriber ID
+     */
+    protected void removeSubscriberStats(String subId) {
+        subscriberStats.remove(subId);
+    }
+
+    /**
+     * @return the IDs of the registered subscribers
+     */
+    protected Set<String> getSubscribers() {
+        return Collections.unmodifiableSet(subscriberStats.keySet());
+    }
+
+    /**
+     * Sends the message to the subscribers that accept it, inline or in parallel chunks.
+     * <p>
+     * The subscribers that accept the message are matched first, by the route of its topic,
+     * then only the matching subscribers are delivered, hence the chunks, and the tasks,
+     * follow the number of matches and not the number of subscribers.
+     *
+     * @param message   A {@code Message}
+     * @param route     The route of the message topic
+     * @param published The time the message was published
+     */
+    private void sendMessage(Message message, Route route, long published) {
+        long start = System.nanoTime();
+        DeliveryStats topicStats = stats.get(message.getTopic());
+        if (topicStats == null)
+            topicStats = stats.computeIfAbsent(message.getTopic(), t -> new DeliveryStats());
+        Subscription[] matches = route.match(message);
+        boolean split = matches.length > chunkSize;
+        if (split)
+            invoke(new Delivery(message, matches, 0, matches.length, published, topicStats));
+        else
+            deliver(message, matches, 0, matches.length, published, topicStats);
+
+        long nanos = System.nanoTime() - start;
+        topicStats.record(matches.length, route.getSubscribers().length - matches.length, split, nanos);
+    }
+
+    private void deliver(Message message, Subscription[] subscribers, int from, int to,
+                         long published, DeliveryStats topicStats) {
+        for (int i = from; i < to; i++) {
+            Subscription subscriber = subscribers[i];
+            subscriber.notify(message);
+            long latency = System.nanoTime() - published;
+            topicStats.recordLatency(latency);
+            SubscriberStats subStats = subscriberStats.get(subscriber.getSubId());
+            if (subStats != null)
+                subStats.recordLatency(latency);
+        }
+    }
+
+    /**
+     * Delivers a range of subscribers, the range is split in halves until it fits in a chunk.
+     */
+    private class Delivery extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Message message;
+        private final Subscription[] subscribers;
+        private final int from;
+        private final int to;
+        private final long published;
+        private final DeliveryStats topicStats;
+
+        private Delivery(Message message, Subscription[] subscribers, int from, int to,
+                         long published, DeliveryStats topicStats) {
+            this.message = message;
+            this.subscribers = subscribers;
+            this.from = from;
+            this.to = to;
+            this.published = published;
+            this.topicStats = topicStats;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                deliver(message, subscribers, from, to, published, topicStats);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Delivery(message, subscribers, from, mid, published, topicStats),
+                    new Delivery(message, subscribers, mid, to, published, topicStats));
         }
     }
 }
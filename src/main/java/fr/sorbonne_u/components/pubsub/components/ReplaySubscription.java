@@ -0,0 +1,181 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A {@code ReplaySubscription} is a subscription that starts with past messages of its topic.
+ * <p>
+ * The past messages are either read from the log of the topic, see {@link #replay(MessageLog, long, long)},
+ * or taken from memory, see {@link #replay(List)}, and sent to the subscription in batches,
+ * with {@link Subscription#notifyBatch}. Meanwhile the published messages are kept aside,
+ * then they are sent once the past messages were sent and the subscription goes live:
+ * from then on it only forwards the published messages.
+ * <p>
+ * A subscription replaying the log is registered on its topic at the end of the log,
+ * see {@link MessageLog#atEnd}, so the messages before this end are read from the log and the following
+ * ones are published to it. A subscription replaying messages taken from memory is registered before
+ * they are taken, so a message may be both taken and published to it, it is then sent once.
+ * <p>
+ * The messages kept aside are not bounded, they are the messages published while the past messages
+ * are sent, the overflow policy of the subscription applies once it is live.
+ *
+ * @author Nadir Belarocui
+ * @author Katia Amichi
+ * @see SubscriberExecutor
+ * @see fr.sorbonne_u.components.pubsub.StartPosition
+ */
+final class ReplaySubscription implements Subscription {
+    /**
+     * The maximum number of past messages sent in one notification.
+     */
+    static final int BATCH_SIZE = 1024;
+
+    private final Subscription subscription;
+    private final Topic topic;
+    /**
+     * The published messages, until the subscription goes live.
+     */
+    private List<Message> pending = new ArrayList<>();
+    private volatile boolean live;
+    private volatile boolean ended;
+
+    ReplaySubscription(Subscription subscription, Topic topic) {
+        this.subscription = subscription;
+        this.topic = topic;
+    }
+
+    /**
+     * Send the past messages of the log then go live.
+     *
+     * @param log  The log of the published messages
+     * @param from The offset of the first past message
+     * @param to   The offset at which the subscription was registered, the end of the past messages
+     * @throws IOException if the log cannot be read, the subscription is then not live
+     */
+    void replay(MessageLog log, long from, long to) throws IOException {
+        long next = Math.max(from, log.getStartOffset(topic));
+        while (next < to && !ended) {
+            List<Message> messages = new ArrayList<>(BATCH_SIZE);
+            long read = log.read(topic, next, (int) Math.min(BATCH_SIZE, to - next), messages);
+            if (read <= next)
+                break;
+            // the retention may have deleted the messages being read, never send a published message twice
+            if (read > to)
+                messages.subList(messages.size() - (int) Math.min(messages.size(), read - to), messages.size()).clear();
+            next = read;
+            filter(messages);
+            if (!messages.isEmpty())
+                subscription.notifyBatch(messages);
+        }
+        goLive(Collections.emptySet());
+    }
+
+    /**
+     * Send past messages taken once this subscription was registered, then go live.
+     *
+     * @param snapshot The past messages, oldest first
+     */
+    void replay(List<Message> snapshot) {
+        Set<Message> sent = Collections.newSetFromMap(new IdentityHashMap<>(snapshot.size() * 2));
+        sent.addAll(snapshot);
+        for (int from = 0; from < snapshot.size() && !ended; from += BATCH_SIZE) {
+            List<Message> messages = new ArrayList<>(snapshot.subList(from, Math.min(from + BATCH_SIZE, snapshot.size())));
+            filter(messages);
+            if (!messages.isEmpty())
+                subscription.notifyBatch(messages);
+        }
+        goLive(sent);
+    }
+
+    private void filter(List<Message> messages) {
+        Predicate<Message> filter = subscription.getFilter();
+        if (filter == null)
+            return;
+        messages.removeIf(message -> {
+            try {
+                return !filter.test(message);
+            } catch (RuntimeException e) {
+                // a failing filter rejects the message
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @param sent The past messages that were sent, they are not sent again
+     */
+    private synchronized void goLive(Set<Message> sent) {
+        if (!sent.isEmpty())
+            pending.removeIf(sent::contains);
+        if (!ended && !pending.isEmpty())
+            subscription.notifyBatch(pending);
+        pending = null;
+        live = true;
+    }
+
+    @Override
+    public void notify(Message message) {
+        if (!live) {
+            synchronized (this) {
+                if (!live) {
+                    pending.add(message);
+                    return;
+                }
+            }
+        }
+        subscription.notify(message);
+    }
+
+    @Override
+    public void notifyBatch(List<Message> messages) {
+        if (!live) {
+            synchronized (this) {
+                if (!live) {
+                    pending.addAll(messages);
+                    return;
+                }
+            }
+        }
+        subscription.notifyBatch(messages);
+    }
+
+    @Override
+    public void filter(Predicate<Message> filter) {
+        subscription.filter(filter);
+    }
+
+    @Override
+    public Predicate<Message> getFilter() {
+        return subscription.getFilter();
+    }
+
+    @Override
+    public String getSubId() {
+        return subscription.getSubId();
+    }
+
+    @Override
+    public void end() {
+        ended = true;
+        subscription.end();
+    }
+
+    @Override
+    public String toString() {
+        return "ReplaySubscription{" +
+                "subscription=" + subscription +
+                ", topic=" + topic +
+                ", live=" + live +
+                '}';
+    }
+}
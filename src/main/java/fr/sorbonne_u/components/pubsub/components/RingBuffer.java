@@ -0,0 +1,126 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, preallocated, lock-free ring buffer which keeps the last elements added to it,
+ * in the style of a Disruptor ring.
+ * <p>
+ * Each element gets the next sequence number, producers claim it by incrementing the cursor,
+ * then write the element in the slot of its sequence, overwriting the element added
+ * {@code capacity} sequences before, adding an element never allocates.
+ * Each slot also holds the sequence of its element, a reader checks it before and after reading
+ * the element, like a seqlock, so a slot being overwritten is skipped rather than read inconsistently.
+ * <p>
+ * Two producers a lap apart write the same slot: a producer marks the slot as being written
+ * by its sequence with a CAS, only if the slot holds an older sequence, so an element is never written
+ * over a newer one, and it waits for a producer of an older sequence that is still writing the slot,
+ * which only happens when the buffer wraps around while the older producer is preempted.
+ * <p>
+ * {@link #add} and {@link #last} may be called by any thread.
+ *
+ * @param <E> the type of the elements
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see Broker
+ */
+final class RingBuffer<E> {
+    /**
+     * The sequence of an empty slot, the sequence of a slot being written is {@link #writing(long)}.
+     */
+    private static final long NONE = -1;
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param capacity the number of kept elements, rounded up to the next power of 2
+     * @throws IllegalArgumentException if {@code capacity} is <= 0
+     */
+    RingBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be > 0");
+        int actual = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(actual);
+        this.sequences = new AtomicLongArray(actual);
+        for (int i = 0; i < actual; i++)
+            sequences.set(i, NONE);
+        this.capacity = actual;
+        this.mask = actual - 1;
+    }
+
+    /**
+     * Add an element, overwriting the oldest element once the buffer is full.
+     *
+     * @param e A non null element
+     */
+    void add(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        long sequence = cursor.getAndIncrement();
+        int i = (int) sequence & mask;
+        // readers must see the slot as being written before they can see the new element
+        while (true) {
+            long current = sequences.get(i);
+            long owner = current < NONE ? writing(current) : current;
+            if (owner >= sequence)
+                return; // already overwritten by a newer element
+            if (current < NONE)
+                Thread.yield();
+            else if (sequences.compareAndSet(i, current, writing(sequence)))
+                break;
+        }
+        buffer.set(i, e);
+        sequences.set(i, sequence);
+    }
+
+    /**
+     * @return the marker of a slot being written by a sequence, and the sequence of a marker
+     */
+    private static long writing(long sequence) {
+        return -2 - sequence;
+    }
+
+    /**
+     * Get the last elements, oldest first.
+     * <p>
+     * An element whose slot is being written is skipped.
+     *
+     * @param n        The maximum number of elements
+     * @param elements The list the elements are added to
+     */
+    void last(int n, List<E> elements) {
+        long end = cursor.get();
+        for (long s = Math.max(0, end - Math.min(n, capacity)); s < end; s++) {
+            int i = (int) s & mask;
+            if (sequences.get(i) != s)
+                continue;
+            E e = buffer.get(i);
+            if (sequences.get(i) == s)
+                elements.add(e);
+        }
+    }
+
+    /**
+     * @return the number of kept elements
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "RingBuffer{" +
+                "capacity=" + capacity +
+                ", cursor=" + cursor.get() +
+                '}';
+    }
+}
@@ -0,0 +1,173 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.FilterIndex;
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A {@code Route} is the immutable snapshot of the subscribers of a published topic,
+ * built at some subscriptions version, along with their filters.
+ * <p>
+ * Subscribers often share the same filter, e.g many subscribers interested in the same symbol,
+ * hence the filters of a route are deduplicated with {@code equals}: two equal
+ * {@link fr.sorbonne_u.components.pubsub.Filter}s are a single filter of the route,
+ * and it is evaluated once per message whatever the number of subscribers that use it.
+ * <p>
+ * The distinct filters are also indexed by a {@link FilterIndex}: the equality, IN-set and range
+ * constraints of the filters are matched against the properties of a message at once,
+ * without testing each filter.
+ * <p>
+ * Matching is separated from delivery, {@link #match(Message)} computes the subscribers that accept
+ * a message in a single pass, before any delivery task is scheduled: the subscribers without filter,
+ * then the subscribers of each accepting filter, which are kept in a plain array per filter.
+ * Its cost grows with the number of matching subscribers and of the filters that cannot be indexed,
+ * not with the number of subscribers.
+ * <p>
+ * The arrays of a route are shared by all publications on its topic and <b>must not</b> be modified.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see SubscriberExecutor
+ * @see PublisherExecutor
+ */
+public final class Route {
+    private static final int[] NONE = new int[0];
+
+    private final long version;
+    private final Subscription[] subscribers;
+    /**
+     * The subscribers without filter.
+     */
+    private final Subscription[] unfiltered;
+    /**
+     * The distinct filters of the subscribers.
+     */
+    private final Predicate<Message>[] filters;
+    /**
+     * The subscribers of each filter of {@link #filters}.
+     */
+    private final Subscription[][] subscribersOf;
+    /**
+     * The index of {@link #filters}, or null if no filter can be indexed.
+     */
+    private final FilterIndex index;
+    /**
+     * The filters that are not indexed, they are tested for each message.
+     */
+    private final int[] unindexed;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Route(long version, Subscription[] subscribers) {
+        this.version = version;
+        this.subscribers = subscribers;
+
+        List<Subscription> unfiltered = new ArrayList<>();
+        Map<Predicate<Message>, List<Subscription>> distinct = new LinkedHashMap<>();
+        for (Subscription sub : subscribers) {
+            Predicate<Message> filter = sub.getFilter();
+            if (filter == null)
+                unfiltered.add(sub);
+            else
+                distinct.computeIfAbsent(filter, f -> new ArrayList<>(1)).add(sub);
+        }
+        this.unfiltered = unfiltered.size() == subscribers.length ?
+                subscribers : unfiltered.toArray(TopicTrie.EMPTY);
+        this.filters = distinct.keySet().toArray(new Predicate[0]);
+        this.subscribersOf = new Subscription[filters.length][];
+        int f = 0;
+        for (List<Subscription> subs : distinct.values())
+            subscribersOf[f++] = subs.toArray(TopicTrie.EMPTY);
+
+        FilterIndex index = filters.length == 0 ? null : new FilterIndex(Arrays.asList(filters));
+        this.index = index == null || index.getIndexedCount() == 0 ? null : index;
+        this.unindexed = new int[filters.length - (this.index == null ? 0 : this.index.getIndexedCount())];
+        int u = 0;
+        for (int i = 0; i < filters.length; i++) {
+            if (this.index == null || !this.index.isIndexed(i))
+                unindexed[u++] = i;
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the subscribers, each subscriber appears only once
+     */
+    Subscription[] getSubscribers() {
+        return subscribers;
+    }
+
+    /**
+     * @return the number of distinct filters
+     */
+    int filterCount() {
+        return filters.length;
+    }
+
+    /**
+     * Compute the subscribers that accept a message.
+     * <p>
+     * Each distinct filter is evaluated at most once, a filter that throws rejects the message.
+     * When every subscriber accepts the message, the subscribers array itself is returned.
+     *
+     * @param message A {@code Message}
+     * @return the subscribers whose filter accepts the message, or that have no filter,
+     * the array <b>must not</b> be modified
+     */
+    Subscription[] match(Message message) {
+        if (filters.length == 0)
+            return subscribers;
+
+        int[] accepted = index == null ? NONE : index.match(message);
+        int[] passed = unindexed.length == 0 ? NONE : new int[unindexed.length];
+        int passedCount = 0;
+        for (int f : unindexed) {
+            try {
+                if (filters[f].test(message))
+                    passed[passedCount++] = f;
+            } catch (RuntimeException e) {
+                // a failing filter rejects the message
+            }
+        }
+
+        int size = unfiltered.length;
+        for (int f : accepted)
+            size += subscribersOf[f].length;
+        for (int i = 0; i < passedCount; i++)
+            size += subscribersOf[passed[i]].length;
+        if (size == subscribers.length)
+            return subscribers;
+
+        Subscription[] matches = new Subscription[size];
+        System.arraycopy(unfiltered, 0, matches, 0, unfiltered.length);
+        int n = unfiltered.length;
+        for (int f : accepted)
+            n = append(subscribersOf[f], matches, n);
+        for (int i = 0; i < passedCount; i++)
+            n = append(subscribersOf[passed[i]], matches, n);
+        return matches;
+    }
+
+    private static int append(Subscription[] subs, Subscription[] matches, int n) {
+        System.arraycopy(subs, 0, matches, n, subs.length);
+        return n + subs.length;
+    }
+
+    @Override
+    public String toString() {
+        return "Route{" +
+                "version=" + version +
+                ", subscribers=" + subscribers.length +
+                ", filters=" + Arrays.toString(filters) +
+                '}';
+    }
+}
@@ -8,6 +8,7 @@ import fr.sorbonne_u.components.cvm.AbstractCVM;
 import fr.sorbonne_u.components.cvm.AbstractDistributedCVM;
 import fr.sorbonne_u.components.exceptions.ComponentShutdownException;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 import fr.sorbonne_u.components.pubsub.connectors.SubscriberServiceConnector;
 import fr.sorbonne_u.components.pubsub.interfaces.Observer;
@@ -17,6 +18,7 @@ import fr.sorbonne_u.components.pubsub.port.SubscriberInBoundPort;
 import fr.sorbonne_u.components.pubsub.port.SubscriberOutBoundPort;
 import fr.sorbonne_u.components.reflection.interfaces.ReflectionI;
 
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -40,6 +42,9 @@ import static fr.sorbonne_u.components.ports.AbstractPort.generatePortURI;
  * <p>
  * When a subscriber receive a message, it will execute a {@code Message} {@code Consumer},
  * note that the order of messages that this component will receive is not specified.
+ * By default the consumer runs synchronously on a thread of the component, while the {@code PubSub} waits,
+ * the asynchronous delivery mode puts the messages in a bounded {@link MessageInbox} consumed by
+ * handler threads of their own, see {@link Builder#setInboxCapacity(int)}.
  * <p>
  * A {@code Subscriber} ID is his in-bound port URI.
  * <p>
@@ -73,6 +78,15 @@ public class Subscriber extends AbstractComponent implements SubscriberService,
      * A block of code which is executed each time a message is received.
      */
     private Consumer<Message> block;
+    /**
+     * The inbox of the received messages, null if they are handled synchronously.
+     */
+    private final MessageInbox inbox;
+
+    /**
+     * The events of this component, recorded lazily, see {@link TraceLog}.
+     */
+    private final TraceLog trace;
 
     /**
      * Creates a new Subscriber
@@ -86,11 +100,15 @@ public class Subscriber extends AbstractComponent implements SubscriberService,
                 builder.reflectionInboundPortURI, builder.nbThreads, builder.nbSchedulableThreads);
 
         this.block = builder.block;
+        this.trace = builder.newTraceLog(this);
+        this.inbox = builder.inboxCapacity == 0 ? null :
+                new MessageInbox(builder.reflectionInboundPortURI, builder.inboxCapacity, builder.handlerThreads,
+                        builder.virtualThreads, this::notify, trace);
 
         // initialize the subscriberInBoundPort
         this.subscriberInBoundPort = builder.subscriberInBoundPortURI == null ?
-                new SubscriberInBoundPort(this) :
-                new SubscriberInBoundPort(builder.subscriberInBoundPortURI, this);
+                new SubscriberInBoundPort(this, inbox) :
+                new SubscriberInBoundPort(builder.subscriberInBoundPortURI, this, inbox);
 
         // initialize the subscriberOutBoundPort
         this.subscriberOutBoundPort = builder.subscriberOutBoundPortURI == null ?
@@ -154,9 +172,12 @@ public class Subscriber extends AbstractComponent implements SubscriberService,
      */
     @Override
     public void finalise() throws Exception {
-        this.logMessage("stopping component.");
+        trace.log(TraceLevel.INFO, "stopping component.");
         this.subscriberOutBoundPort.doDisconnection();
         this.subscriberOutBoundPort.unpublishPort();
+        if (inbox != null)
+            inbox.close();
+        trace.close();
         super.finalise();
     }
 
@@ -188,45 +209,58 @@ public class Subscriber extends AbstractComponent implements SubscriberService,
 
     @Override
     public void subscribe(Topic topic) {
-        this.logMessage("subscriber subscribe to a topic: " + topic);
+        trace.log(TraceLevel.INFO, "subscriber subscribe to a topic: {}", topic);
         this.subscriberOutBoundPort.subscribe(topic);
     }
 
     @Override
     public void subscribe(Topic topic, Predicate<Message> filter) {
-        this.logMessage("subscribing to a topic by a filter: " + topic);
+        trace.log(TraceLevel.INFO, "subscribing to a topic by a filter: {}", topic);
         this.subscriberOutBoundPort.subscribe(topic, filter);
     }
 
+    @Override
+    public void subscribe(Topic topic, StartPosition position) {
+        trace.log(TraceLevel.INFO, "subscribing to a topic from {}: {}", position, topic);
+        this.subscriberOutBoundPort.subscribe(topic, position);
+    }
+
     @Override
     public void filter(Topic topic, Predicate<Message> filter) {
-        this.logMessage("filtering a topic: " + topic);
+        trace.log(TraceLevel.INFO, "filtering a topic: {}", topic);
         this.subscriberOutBoundPort.filter(topic, filter);
 
     }
 
     @Override
     public void unsubscribe(Topic topic) {
-        this.logMessage("un-subscribing from a topic: " + topic);
+        trace.log(TraceLevel.INFO, "un-subscribing from a topic: {}", topic);
         this.subscriberOutBoundPort.unsubscribe(topic);
 
     }
 
     @Override
     public void unsubscribe() {
-        this.logMessage("un-subscribing from all topics.");
+        trace.log(TraceLevel.INFO, "un-subscribing from all topics.");
         this.subscriberOutBoundPort.unsubscribe();
 
     }
 
     @Override
     public void notify(Message message) {
-        this.logMessage("receiving message : " + message.getContent());
+        trace.log(TraceLevel.DEBUG, "receiving message : {}", message.getContent());
         if (block != null)
             block.accept(message);
 
     }
 
+    @Override
+    public void notifyBatch(List<Message> messages) {
+        trace.log(TraceLevel.DEBUG, "receiving a batch of {} messages", messages.size());
+        if (block != null)
+            messages.forEach(block);
+    }
+
 
     @Override
     public String getSubId() {
@@ -267,11 +301,15 @@ public class Subscriber extends AbstractComponent implements SubscriberService,
         private String subscriberOutBoundPortURI;
         private String subscriberInBoundPortURI;
         private Consumer<Message> block;
+        private int inboxCapacity;
+        private int handlerThreads;
+        private boolean virtualThreads;
 
         private Builder(AbstractCVM cvm, String pubSubInBoundPortURI) {
             super(cvm);
             nbThreads = 1;
             nbSchedulableThreads = 1;
+            handlerThreads = 1;
             this.pubSubInBoundPortURI = pubSubInBoundPortURI;
         }
 
@@ -297,6 +335,61 @@ public class Subscriber extends AbstractComponent implements SubscriberService,
             return this;
         }
 
+        /**
+         * Deliver the messages asynchronously: the received messages are put in a bounded inbox
+         * and consumed by handler threads, so the {@code PubSub} does not wait for the message consumer.
+         * When the inbox is full the {@code PubSub} waits until a handler makes room, and the messages
+         * wait in the queue of the subscription, whose overflow policy applies.
+         * The default value is 0, i.e the messages are consumed synchronously by a thread of the component.
+         *
+         * @param inboxCapacity The maximum number of messages waiting in the inbox, 0 for synchronous delivery
+         * @return This builder
+         * @throws IllegalArgumentException if {@code inboxCapacity} is < 0
+         * @see #setHandlerThreads(int)
+         */
+        public Builder setInboxCapacity(int inboxCapacity) {
+            if (inboxCapacity < 0)
+                throw new IllegalArgumentException("inboxCapacity must be >= 0");
+            this.inboxCapacity = inboxCapacity;
+            return this;
+        }
+
+        /**
+         * Set the number of threads consuming the messages of the inbox, the default value is 1.
+         * With more than one thread the messages are consumed concurrently, in any order.
+         *
+         * @param handlerThreads An {@code int} value
+         * @return This builder
+         * @throws IllegalArgumentException if {@code handlerThreads} is <= 0
+         * @see #setInboxCapacity(int)
+         */
+        public Builder setHandlerThreads(int handlerThreads) {
+            if (handlerThreads <= 0)
+                throw new IllegalArgumentException("handlerThreads must be > 0");
+            this.handlerThreads = handlerThreads;
+            return this;
+        }
+
+        /**
+         * Run the handlers of the inbox in virtual threads instead of platform threads, so a subscriber
+         * whose message consumer blocks, e.g on I/O, can have thousands of handlers cheaply.
+         * Only used with an inbox, see {@link #setInboxCapacity(int)}. The default value is false.
+         * <p>
+         * Virtual threads require Java 21 or later, see the {@code java21} build profile.
+         * </p>
+         *
+         * @param virtualThreads A {@code boolean} value
+         * @return This builder
+         * @throws UnsupportedOperationException if {@code virtualThreads} is true and the JVM does not support them
+         * @see #setHandlerThreads(int)
+         */
+        public Builder setVirtualThreads(boolean virtualThreads) {
+            if (virtualThreads)
+                VirtualThreads.checkSupported();
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
         /**
          * Set the in-bound port URI of this{@code Subscriber} component.
          *
@@ -1,20 +1,28 @@
 package fr.sorbonne_u.components.pubsub.components;
 
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
 
-import java.util.Collection;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * The {@code SubscriberExecutor} handles subscriber related requests for the {@code Broker}.
- * Subscribers are organized in a {@code Map} which has topics as keys and
- * a collection of subscribers to that topic as a value.
+ * Subscribers are organized in a {@link TopicTrie} which holds for each topic
+ * a collection of subscribers to that topic, topics may contain wildcards
+ * and finding the subscribers of a published topic costs a walk down the topic levels.
  * <p>
  * Since the class manipulates {@code Subscription} instances,
  * and since each {@code Subscription} instance has a unique ID,
@@ -34,14 +42,47 @@ import java.util.function.Predicate;
  * <p>
  * To maximize concurrency, the class uses a {@link ConcurrentHashMap},
  * please check out its documentation to understand more about the mechanisms that it uses.
+ * <p>
+ * Subscriptions change rarely while messages are published constantly, hence the subscribers
+ * of a topic are copied into an immutable array each time they change, and the subscribers
+ * of a published topic are merged once into an immutable array, a <i>route</i>, which is reused
+ * by the following publications until a subscription or a filter changes.
+ * A change only invalidates the routes it can affect: the route of its topic,
+ * or every route for a wildcard topic or {@code ROOT}.
+ * Publishing a message then only iterates a plain array.
+ * A route also holds the distinct filters of its subscribers, see {@link Route}.
+ * <p>
+ * A subscription may also start at a past position of the {@link MessageLog} of its topic,
+ * or with a snapshot of past messages kept in memory, it then receives the past messages
+ * before the published messages, see {@link ReplaySubscription}.
  *
  * @author Nadir Belarocui
  * @author Katia Amichi
  * @see PublisherExecutor
+ * @see Route
+ * @see TopicTrie
  * @see ConcurrentHashMap
  */
 public class SubscriberExecutor extends HandlerExecutor {
-    private final ConcurrentHashMap<Topic, ConcurrentHashMap<String, Subscription>> subscribers = new ConcurrentHashMap<>();
+    private final TopicTrie subscribers = new TopicTrie();
+    /**
+     * The routes of the published topics.
+     */
+    private final ConcurrentHashMap<Topic, Route> routes = new ConcurrentHashMap<>();
+    /**
+     * Incremented each time a subscription changes, a route is built at the current version.
+     */
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * The version of the last change of a wildcard topic or of {@code ROOT},
+     * every route built at an older version is stale.
+     */
+    private final AtomicLong wildcardVersion = new AtomicLong();
+    /**
+     * The version of the last change of each topic without wildcards,
+     * a route of the topic built at an older version is stale.
+     */
+    private final ConcurrentHashMap<Topic, Long> topicVersions = new ConcurrentHashMap<>();
 
     /**
      * Create a defalut executor with parallelism equals to 10.
@@ -60,26 +101,99 @@ public class SubscriberExecutor extends HandlerExecutor {
     }
 
     /**
-     * Get a collection of subscribers that are subscribed to a specific topic.
-     * If the {@link #subscribers} map contains a {@code ROOT} topic then:
-     * <ul>
-     * <li>
-     * {@code ROOT} is the only topic.
-     * </li>
-     * <li>
-     * {@code Subscription} instances that are subscribed to ROOT are {@code PubSubNode} subscribers.
-     * </li>
-     * </ul>
+     * Create an executor with a specific parallelism value, which may handle its requests in virtual threads.
+     *
+     * @param parallelism    An {@code int} value
+     * @param virtualThreads true to handle each request in a new virtual thread
+     */
+    protected SubscriberExecutor(int parallelism, boolean virtualThreads) {
+        super(parallelism, virtualThreads);
+    }
+
+    /**
+     * Get the route of a topic, i.e the subscribers that are subscribed to the topic,
+     * or to a wildcard topic that matches it, or to {@code ROOT}, along with their filters.
+     * <p>
+     * {@code Subscription} instances that are subscribed to {@code ROOT} are {@code PubSubNode} subscribers,
+     * they receive every message, along with the subscribers of the topic.
+     * <p>
+     * Each subscription appears only once, a subscriber whose subscriptions to several patterns match the topic
+     * appears once per subscription, each with its own filter. The returned route is a snapshot
+     * which is shared by all publications on this topic and <b>must not</b> be modified.
      *
      * @param topic A {@code Topic}
-     * @return A collection of {@code Subscription} instances.
+     * @return A {@code Route}, without subscribers if there are no subscribers.
+     */
+    protected Route getRoute(Topic topic) {
+        long v = version.get();
+        Route route = routes.get(topic);
+        if (route == null || isStale(route, topic)) {
+            route = new Route(v, route(topic));
+            routes.put(topic, route);
+        }
+        return route;
+    }
+
+    /**
+     * Get the subscribers of a topic.
+     *
+     * @param topic A {@code Topic}
+     * @return An array of {@code Subscription} instances, empty if there are no subscribers.
+     * @see #getRoute(Topic)
+     */
+    protected Subscription[] getSubscribers(Topic topic) {
+        return getRoute(topic).getSubscribers();
+    }
+
+    private Subscription[] route(Topic topic) {
+        List<Subscription[]> matches = new ArrayList<>(2);
+        subscribers.match(topic, matches);
+        Subscription[] root = subscribers.get(Topic.ROOT);
+        if (root != null && root.length > 0)
+            matches.add(root);
+
+        if (matches.isEmpty())
+            return TopicTrie.EMPTY;
+        // the snapshot of a single topic is already immutable and can be shared as is
+        if (matches.size() == 1)
+            return matches.get(0);
+        Set<Subscription> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Subscription> merged = new ArrayList<>();
+        for (Subscription[] subs : matches) {
+            for (Subscription sub : subs) {
+                if (seen.add(sub))
+                    merged.add(sub);
+            }
+        }
+        return merged.toArray(TopicTrie.EMPTY);
+    }
+
+    private boolean isStale(Route route, Topic topic) {
+        long built = route.getVersion();
+        if (built < wildcardVersion.get())
+            return true;
+        Long changed = topicVersions.get(topic);
+        return changed != null && built < changed;
+    }
+
+    /**
+     * Mark the routes a change of a topic can affect as stale, must be called after each subscription change:
+     * the route of the topic, or every route when the topic has wildcards or is {@code ROOT}.
+     * <p>
+     * The change is stamped with a new version once it is made, so a route built concurrently,
+     * at an older version, is stale even if it is cached after this call.
+     *
+     * @param topic The changed topic
      */
-    protected Collection<Subscription> getSubscribers(Topic topic) {
-        if (subscribers.containsKey(Topic.ROOT)) {
-            return subscribers.get(Topic.ROOT).values();
+    private void invalidateRoutes(Topic topic) {
+        long v = version.incrementAndGet();
+        if (topic.isWildcard() || topic.equals(Topic.ROOT)) {
+            wildcardVersion.accumulateAndGet(v, Math::max);
+            routes.clear();
+        } else {
+            topicVersions.merge(topic, v, Math::max);
+            routes.remove(topic);
         }
-        Map<String, Subscription> subs = subscribers.get(topic);
-        return subs == null ? null : subs.values();
     }
 
     /**
@@ -94,11 +208,95 @@ public class SubscriberExecutor extends HandlerExecutor {
     }
 
 
+    /**
+     * Subscribe to a topic from a position of its log.
+     * <p>
+     * The subscription is registered at the end of the log, atomically with respect to the publications
+     * on the topic, then the messages of the log from {@code position} to this end are sent to it in batches,
+     * then it receives the published messages. Thus it receives each message once, in the order of the log.
+     * </p>
+     *
+     * @param sub      A {@code Subscription}
+     * @param topic    A {@code Topic} without wildcards
+     * @param log      The log of the published messages
+     * @param position A {@code StartPosition}
+     * @return A {@code CompletableFuture} for this async request, completed once the past messages were sent,
+     * or exceptionally if the log cannot be read, the subscription is then removed
+     */
+    protected CompletableFuture<Void> subscribe(Subscription sub, Topic topic, MessageLog log, StartPosition position) {
+        return runAsync(() -> {
+            ReplaySubscription replay = new ReplaySubscription(sub, topic);
+            try {
+                long end = log.atEnd(topic, next -> {
+                    addSubscriber(replay, topic);
+                    return next;
+                });
+                replay.replay(log, startOffset(log, topic, position, end), end);
+            } catch (IOException e) {
+                deleteSubscriber(sub.getSubId(), topic);
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Subscribe to a topic with a snapshot of past messages, e.g the last messages of the topic.
+     * <p>
+     * The snapshot is taken once the subscription is registered, its messages are sent first,
+     * then the published messages, a message which is in the snapshot is not sent again.
+     * </p>
+     *
+     * @param sub      A {@code Subscription}
+     * @param topic    A {@code Topic}
+     * @param snapshot Takes the past messages, oldest first
+     * @return A {@code CompletableFuture} for this async request, completed once the past messages were sent
+     */
+    protected CompletableFuture<Void> subscribe(Subscription sub, Topic topic, Supplier<List<Message>> snapshot) {
+        return runAsync(() -> {
+            ReplaySubscription replay = new ReplaySubscription(sub, topic);
+            addSubscriber(replay, topic);
+            replay.replay(snapshot.get());
+        });
+    }
+
+    /**
+     * Subscribe to a compacted topic, with a snapshot of the last message of each key.
+     * <p>
+     * The subscription is registered atomically with the snapshot of the cache, see {@link LastValueCache},
+     * its messages are sent first then the published messages, the deltas.
+     * </p>
+     *
+     * @param sub   A {@code Subscription}
+     * @param topic A compacted {@code Topic}
+     * @param cache The last values of the topic
+     * @return A {@code CompletableFuture} for this async request, completed once the snapshot was sent
+     */
+    protected CompletableFuture<Void> subscribe(Subscription sub, Topic topic, LastValueCache cache) {
+        return runAsync(() -> {
+            ReplaySubscription replay = new ReplaySubscription(sub, topic);
+            replay.replay(cache.snapshot(() -> addSubscriber(replay, topic)));
+        });
+    }
+
+    private static long startOffset(MessageLog log, Topic topic, StartPosition position, long end) {
+        switch (position.getKind()) {
+            case EARLIEST:
+                return log.getStartOffset(topic);
+            case OFFSET:
+                return Math.min(position.getValue(), end);
+            case TIMESTAMP:
+                return log.offsetOf(topic, position.getValue());
+            case LAST:
+                return Math.max(log.getStartOffset(topic), end - position.getValue());
+            default:
+                return end;
+        }
+    }
+
     private void addSubscriber(Subscription sub, Topic topic) {
-        // if topic is absent, then initialize a new ConcurrentHashMap for that topic
-        // and put the subscriber in it
-        subscribers.computeIfAbsent(topic, t -> new ConcurrentHashMap<>())
-                .put(sub.getSubId(), sub);
+        // if topic is absent, then the trie creates it
+        subscribers.add(topic, sub);
+        invalidateRoutes(topic);
     }
 
     /**
@@ -144,20 +342,19 @@ public class SubscriberExecutor extends HandlerExecutor {
     }
 
     private void deleteSubscriber(String subId, Topic topic) {
-        // delete subscriber with one atomic block
-        subscribers.computeIfPresent(topic, (t, subs) -> {
-            Subscription sub = subs.remove(subId);
-            if (sub != null)
-                sub.end();
-            return subs;
-        });
+        Subscription sub = subscribers.remove(topic, subId);
+        if (sub != null)
+            endSubscriber(topic, sub);
     }
 
     private void deleteSubscriber(String subId) {
-        // delete subscriber in parallel from all subscribers
-        subscribers.keySet()
-                .parallelStream()
-                .forEach(topic -> deleteSubscriber(subId, topic));
+        // delete subscriber from all topics
+        subscribers.remove(subId, this::endSubscriber);
+    }
+
+    private void endSubscriber(Topic topic, Subscription sub) {
+        invalidateRoutes(topic);
+        sub.end();
     }
 
     /**
@@ -175,13 +372,11 @@ public class SubscriberExecutor extends HandlerExecutor {
 
     private void addFilter(String subId, Topic topic, Predicate<Message> filter) {
         // add the filter or update it
-        subscribers.computeIfPresent(topic, (t, subs) -> {
-            subs.computeIfPresent(subId, (id, sub) -> {
-                sub.filter(filter);
-                return sub;
-            });
-            return subs;
-        });
+        Subscription sub = subscribers.get(topic, subId);
+        if (sub != null) {
+            sub.filter(filter);
+            invalidateRoutes(topic);
+        }
 
     }
 
@@ -193,10 +388,7 @@ public class SubscriberExecutor extends HandlerExecutor {
      */
 
     protected boolean isSubscribed(Subscription sub) {
-        return subscribers.entrySet()
-                .parallelStream()
-                .map(Map.Entry::getValue)
-                .anyMatch(subs -> subs.containsKey(sub.getSubId()));
+        return subscribers.contains(sub.getSubId());
 
     }
 
@@ -209,8 +401,7 @@ public class SubscriberExecutor extends HandlerExecutor {
      */
 
     protected boolean isSubscribed(Subscription sub, Topic topic) {
-        ConcurrentHashMap<String, Subscription> subs = subscribers.get(topic);
-        return subs != null && subs.containsKey(sub.getSubId());
+        return subscribers.get(topic, sub.getSubId()) != null;
     }
 
     /**
@@ -220,7 +411,7 @@ public class SubscriberExecutor extends HandlerExecutor {
      * @return true if the topic exists.
      */
     protected boolean hasTopic(Topic topic) {
-        return subscribers.containsKey(topic);
+        return subscribers.get(topic) != null;
     }
 
     /**
@@ -234,7 +425,10 @@ public class SubscriberExecutor extends HandlerExecutor {
      * @return A {@code CompletableFuture} for this async request
      */
     protected CompletableFuture<Void> removeTopic(Topic topic) {
-        return runAsync(() -> subscribers.remove(topic));
+        return runAsync(() -> {
+            subscribers.remove(topic);
+            invalidateRoutes(topic);
+        });
     }
 
     /**
@@ -242,8 +436,9 @@ public class SubscriberExecutor extends HandlerExecutor {
      */
     @Override
     protected void shutdown() {
-        subscribers.values().forEach(subs -> subs.values().forEach(Subscription::end));
+        subscribers.forEach(Subscription::end);
         subscribers.clear();
+        invalidateRoutes(Topic.ROOT);
         super.shutdown();
     }
 
@@ -253,6 +448,6 @@ public class SubscriberExecutor extends HandlerExecutor {
      * @return a set of topics
      */
     protected Set<Topic> getTopics() {
-        return subscribers.keySet();
+        return subscribers.topics();
     }
 }
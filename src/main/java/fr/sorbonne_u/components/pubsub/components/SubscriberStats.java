@@ -0,0 +1,87 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code SubscriberStats} class measures the deliveries to a subscriber, over all its subscriptions.
+ * <ul>
+ * <li>The latency from the publication of a message to its hand-off to the subscription,
+ * recorded by the {@link PublisherExecutor}.</li>
+ * <li>The messages sent to the subscriber component, recorded by its subscriptions.</li>
+ * <li>The depth of the queues of its subscriptions, read when asked.</li>
+ * </ul>
+ * A subscriber has a single histogram stripe, its deliveries already contend on the queue of its subscription.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see PubSubMetrics
+ */
+public class SubscriberStats {
+    private final LatencyHistogram notifyLatency = new LatencyHistogram(1);
+    private final LongAdder notifications = new LongAdder();
+    private final Queue<MpscArrayQueue<?>> queues = new ConcurrentLinkedQueue<>();
+
+    protected SubscriberStats() {
+    }
+
+    /**
+     * Record the hand-off of a message to a subscription.
+     *
+     * @param nanos The time since the message was published in nanoseconds
+     */
+    protected void recordLatency(long nanos) {
+        notifyLatency.record(nanos);
+    }
+
+    /**
+     * Record messages sent to the subscriber component.
+     *
+     * @param count The number of messages
+     */
+    protected void recordNotifications(int count) {
+        notifications.add(count);
+    }
+
+    protected void addQueue(MpscArrayQueue<?> queue) {
+        queues.add(queue);
+    }
+
+    protected void removeQueue(MpscArrayQueue<?> queue) {
+        queues.remove(queue);
+    }
+
+    /**
+     * @return the latencies from the publication of a message to its hand-off to a subscription
+     */
+    public LatencyHistogram getNotifyLatency() {
+        return notifyLatency;
+    }
+
+    /**
+     * @return the number of messages sent to the subscriber component
+     */
+    public long getNotifications() {
+        return notifications.sum();
+    }
+
+    /**
+     * @return the number of messages waiting in the queues of the subscriptions
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (MpscArrayQueue<?> queue : queues)
+            depth += queue.size();
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriberStats{" +
+                "notifications=" + getNotifications() +
+                ", queueDepth=" + getQueueDepth() +
+                ", notifyLatency=" + notifyLatency +
+                '}';
+    }
+}
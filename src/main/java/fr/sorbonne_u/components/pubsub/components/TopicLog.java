@@ -0,0 +1,276 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * A {@code TopicLog} is the append-only log of the messages published on a topic,
+ * a sequence of {@link LogSegment}s in a directory of its own.
+ * <p>
+ * Each message gets the next offset of the log, starting from 0. When the active segment is full
+ * it is sealed and a new segment starts at the next offset, sealed segments are only read,
+ * and deleted by {@link #retain(long, long, long)} once they are too old or the log is too large.
+ * <p>
+ * Appending is serialized by the monitor of the log, reading and flushing do not take it.
+ * An action can also run atomically with an append, or at the end of the log,
+ * e.g a subscription starting at the end of the log receives exactly the messages appended after it.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see MessageLog
+ */
+final class TopicLog {
+    private static final String ENCODING = "UTF-8";
+
+    private final Topic topic;
+    private final File dir;
+    private final int segmentSize;
+    /**
+     * The segments sorted by base offset, the last one is the active segment.
+     */
+    private final List<LogSegment> segments;
+    private volatile LogSegment active;
+    /**
+     * The last sealed segment, until it is flushed.
+     */
+    private final AtomicReference<LogSegment> sealed = new AtomicReference<>();
+    /**
+     * True if messages were appended since the last flush.
+     */
+    private volatile boolean dirty;
+
+    private TopicLog(Topic topic, File dir, int segmentSize, List<LogSegment> segments) {
+        this.topic = topic;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.segments = new CopyOnWriteArrayList<>(segments);
+        this.active = segments.get(segments.size() - 1);
+    }
+
+    /**
+     * Open the log of a topic, its existing segments are recovered.
+     *
+     * @param root        The directory of all topic logs
+     * @param topic       A {@code Topic}
+     * @param segmentSize The size of a new segment in bytes
+     * @return the log of the topic
+     * @throws IOException if the directory or a segment cannot be opened
+     */
+    static TopicLog open(File root, Topic topic, int segmentSize) throws IOException {
+        File dir = new File(root, URLEncoder.encode(topic.getName(), ENCODING));
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create the directory " + dir);
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(LogSegment.LOG_SUFFIX));
+        List<LogSegment> segments = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                long baseOffset = Long.parseLong(name.substring(0, name.length() - LogSegment.LOG_SUFFIX.length()));
+                segments.add(LogSegment.open(dir, baseOffset, segmentSize));
+            }
+        }
+        if (segments.isEmpty())
+            segments.add(LogSegment.create(dir, 0, segmentSize));
+        return new TopicLog(topic, dir, segmentSize, segments);
+    }
+
+    /**
+     * @param dir The directory of a topic log
+     * @return the topic whose log is in {@code dir}
+     */
+    static Topic topicOf(File dir) throws UnsupportedEncodingException {
+        return Topic.of(URLDecoder.decode(dir.getName(), ENCODING));
+    }
+
+    /**
+     * Append a message at the end of the log, it is durable once the log is flushed.
+     *
+     * @param message A {@code Message} of the topic of this log
+     * @return the offset of the message
+     * @throws IOException if a new segment cannot be created, or if the message does not fit in a segment
+     */
+    synchronized long append(Message message) throws IOException {
+        long offset = active.getNextOffset();
+        long now = System.currentTimeMillis();
+        if (!active.append(message, offset, now)) {
+            if (active.isEmpty())
+                throw new IOException("The message does not fit in a segment of " + segmentSize + " bytes");
+            roll();
+            if (!active.append(message, offset, now))
+                throw new IOException("The message does not fit in a segment of " + segmentSize + " bytes");
+        }
+        dirty = true;
+        return offset;
+    }
+
+    /**
+     * Append a message then run an action before any other message is appended.
+     *
+     * @param message A {@code Message} of the topic of this log
+     * @param then    The action
+     * @return the result of the action
+     * @throws IOException if the message cannot be appended, the action is then not run
+     */
+    synchronized <T> T append(Message message, Supplier<T> then) throws IOException {
+        append(message);
+        return then.get();
+    }
+
+    /**
+     * Append messages then run an action before any other message is appended.
+     *
+     * @param messages Some {@code Message}s of the topic of this log
+     * @param then     The action
+     * @return the result of the action
+     * @throws IOException if a message cannot be appended, the action is then not run
+     */
+    synchronized <T> T append(List<Message> messages, Supplier<T> then) throws IOException {
+        for (Message message : messages)
+            append(message);
+        return then.get();
+    }
+
+    /**
+     * Run an action while no message can be appended.
+     *
+     * @param action The action, called with the offset of the next appended message
+     * @return the result of the action
+     */
+    synchronized <T> T atEnd(LongFunction<T> action) {
+        return action.apply(active.getNextOffset());
+    }
+
+    private void roll() throws IOException {
+        LogSegment segment = LogSegment.create(dir, active.getNextOffset(), segmentSize);
+        // the previous sealed segment is flushed here in the unlikely case the flusher has not done it yet
+        LogSegment previous = sealed.getAndSet(active);
+        if (previous != null)
+            previous.flush();
+        segments.add(segment);
+        active = segment;
+    }
+
+    /**
+     * Force the appended messages to the disk, if any.
+     */
+    void flush() {
+        if (!dirty)
+            return;
+        // messages appended from now on set the flag again and are flushed next time
+        dirty = false;
+        LogSegment segment = sealed.getAndSet(null);
+        try {
+            if (segment != null)
+                segment.flush();
+            active.flush();
+        } catch (RuntimeException e) {
+            sealed.compareAndSet(null, segment);
+            dirty = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Delete the oldest sealed segments while the log is larger than {@code maxBytes}
+     * or their messages were appended more than {@code maxAge} ago, the active segment is never deleted.
+     *
+     * @param maxBytes The maximum size of the log in bytes
+     * @param maxAge   The maximum age of a message in milliseconds
+     * @param now      The current time in milliseconds
+     * @throws IOException if a segment cannot be deleted
+     */
+    void retain(long maxBytes, long maxAge, long now) throws IOException {
+        long size = 0;
+        for (LogSegment segment : segments)
+            size += segment.size();
+        while (segments.size() > 1) {
+            LogSegment oldest = segments.get(0);
+            if (size <= maxBytes && oldest.getMaxTimestamp() >= now - maxAge)
+                return;
+            segments.remove(0);
+            size -= oldest.size();
+            oldest.delete();
+        }
+    }
+
+    /**
+     * Read the messages of the log from an offset.
+     * <p>
+     * Reading from an offset that was deleted by the retention starts from the first retained message.
+     *
+     * @param offset   The offset of the first message to read
+     * @param max      The maximum number of messages to read
+     * @param messages The list the messages are added to
+     * @return the offset following the last read message
+     * @throws IOException if a message cannot be decoded
+     */
+    long read(long offset, int max, List<Message> messages) throws IOException {
+        List<LogSegment> snapshot = new ArrayList<>(segments);
+        int s = snapshot.size() - 1;
+        while (s > 0 && snapshot.get(s).getBaseOffset() > offset)
+            s--;
+        long next = Math.max(offset, snapshot.get(s).getBaseOffset());
+        int read = 0;
+        for (; s < snapshot.size() && read < max; s++) {
+            int before = messages.size();
+            next = snapshot.get(s).read(next, max - read, messages);
+            read += messages.size() - before;
+        }
+        return next;
+    }
+
+    /**
+     * Find the first message appended at or after a time.
+     *
+     * @param timestamp A time in milliseconds
+     * @return the offset of the message, or the next offset of the log if there is none
+     */
+    long offsetOf(long timestamp) {
+        for (LogSegment segment : segments) {
+            if (segment.getMaxTimestamp() >= timestamp)
+                return segment.offsetOf(timestamp);
+        }
+        return getNextOffset();
+    }
+
+    Topic getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return the offset of the first retained message
+     */
+    long getStartOffset() {
+        return segments.get(0).getBaseOffset();
+    }
+
+    /**
+     * @return the offset of the next appended message
+     */
+    long getNextOffset() {
+        return active.getNextOffset();
+    }
+
+    @Override
+    public String toString() {
+        return "TopicLog{" +
+                "topic=" + topic +
+                ", segments=" + segments +
+                '}';
+    }
+}
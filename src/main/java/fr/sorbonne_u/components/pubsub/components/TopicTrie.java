@@ -0,0 +1,279 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Topic;
+import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A {@code TopicTrie} organizes subscriptions by topic levels.
+ * <p>
+ * Each node of the trie is a level of a topic, a node holds the subscriptions of
+ * the topic that ends at that level, wildcards are stored as regular levels,
+ * e.g the subscriptions to {@code "a/+/c"} are held by the node {@code a -> + -> c}.
+ * <p>
+ * Matching a published topic walks the trie level by level following the exact level,
+ * the {@code '+'} level and the {@code '#'} level, hence its cost grows with the topic depth
+ * and not with the number of subscriptions.
+ * <p>
+ * The subscriptions of a node are kept in a {@link ConcurrentHashMap} by subscriber ID,
+ * and copied into an immutable array each time they change, readers only ever see the array.
+ * <p>
+ * Nodes are never removed, children are held in a {@link ConcurrentHashMap} so that
+ * publishing threads can walk the trie while subscriber requests are modifying it.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see SubscriberExecutor
+ * @see Topic
+ */
+public class TopicTrie {
+    /**
+     * A shared empty snapshot.
+     */
+    protected static final Subscription[] EMPTY = new Subscription[0];
+
+    private final Node root = new Node();
+
+    /**
+     * Add a subscription to a topic, create the topic if it does not exist.
+     *
+     * @param topic A {@code Topic}
+     * @param sub   A {@code Subscription}
+     */
+    protected void add(Topic topic, Subscription sub) {
+        Node node = root;
+        for (String level : topic.getLevels())
+            node = node.children.computeIfAbsent(level, l -> new Node());
+        node.add(topic, sub);
+    }
+
+    /**
+     * Remove a subscription from a topic.
+     *
+     * @param topic A {@code Topic}
+     * @param subId A {@code Subscription} ID
+     * @return the removed subscription, or null if it was not subscribed to the topic
+     */
+    protected Subscription remove(Topic topic, String subId) {
+        Node node = find(topic);
+        return node == null ? null : node.remove(subId);
+    }
+
+    /**
+     * Remove a subscription from all topics.
+     *
+     * @param subId   A {@code Subscription} ID
+     * @param removed An action applied to each removed subscription, along with its topic
+     */
+    protected void remove(String subId, BiConsumer<Topic, Subscription> removed) {
+        remove(root, subId, removed);
+    }
+
+    private void remove(Node node, String subId, BiConsumer<Topic, Subscription> removed) {
+        node.remove(subId, removed);
+        node.children.values().forEach(child -> remove(child, subId, removed));
+    }
+
+    /**
+     * Get a subscription of a topic.
+     *
+     * @param topic A {@code Topic}
+     * @param subId A {@code Subscription} ID
+     * @return the subscription, or null if it is not subscribed to the topic
+     */
+    protected Subscription get(Topic topic, String subId) {
+        Node node = find(topic);
+        if (node == null)
+            return null;
+        ConcurrentHashMap<String, Subscription> subs = node.subscribers;
+        return subs == null ? null : subs.get(subId);
+    }
+
+    /**
+     * Get the snapshot of the subscriptions of a topic.
+     *
+     * @param topic A {@code Topic}
+     * @return the subscriptions of this topic, or null if the topic does not exist
+     */
+    protected Subscription[] get(Topic topic) {
+        Node node = find(topic);
+        return node == null ? null : node.snapshot;
+    }
+
+    /**
+     * Remove a topic.
+     *
+     * @param topic A {@code Topic}
+     * @return the subscriptions of the removed topic, or null if the topic does not exist
+     */
+    protected Subscription[] remove(Topic topic) {
+        Node node = find(topic);
+        return node == null ? null : node.remove();
+    }
+
+    /**
+     * Collect the subscriptions of all the topics that match a published topic.
+     * <p>
+     * Note that a subscription may match the topic through several patterns.
+     *
+     * @param topic   A {@code Topic} without wildcards
+     * @param matches The list to which the non empty snapshots of the matching topics are added
+     */
+    protected void match(Topic topic, List<Subscription[]> matches) {
+        match(root, topic.getLevels(), 0, matches);
+    }
+
+    private void match(Node node, String[] levels, int i, List<Subscription[]> matches) {
+        Node multi = node.children.get(Topic.MULTI_LEVEL_WILDCARD);
+        if (multi != null)
+            multi.collect(matches);
+        if (i == levels.length) {
+            node.collect(matches);
+            return;
+        }
+        Node child = node.children.get(levels[i]);
+        if (child != null)
+            match(child, levels, i + 1, matches);
+        Node single = node.children.get(Topic.SINGLE_LEVEL_WILDCARD);
+        if (single != null)
+            match(single, levels, i + 1, matches);
+    }
+
+    /**
+     * Apply an action to every subscription of every topic.
+     *
+     * @param action An action on a subscription
+     */
+    protected void forEach(Consumer<Subscription> action) {
+        forEach(root, action);
+    }
+
+    private void forEach(Node node, Consumer<Subscription> action) {
+        Subscription[] snapshot = node.snapshot;
+        if (snapshot != null) {
+            for (Subscription sub : snapshot)
+                action.accept(sub);
+        }
+        node.children.values().forEach(child -> forEach(child, action));
+    }
+
+    /**
+     * Check if a subscriber is subscribed to any topic.
+     *
+     * @param subId A {@code Subscription} ID
+     * @return true if there is a topic on which {@code subId} is subscribed to
+     */
+    protected boolean contains(String subId) {
+        return contains(root, subId);
+    }
+
+    private boolean contains(Node node, String subId) {
+        ConcurrentHashMap<String, Subscription> subs = node.subscribers;
+        if (subs != null && subs.containsKey(subId))
+            return true;
+        for (Node child : node.children.values()) {
+            if (contains(child, subId))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get all topics.
+     *
+     * @return a set of topics
+     */
+    protected Set<Topic> topics() {
+        Set<Topic> topics = new HashSet<>();
+        topics(root, topics);
+        return topics;
+    }
+
+    private void topics(Node node, Set<Topic> topics) {
+        Topic topic = node.topic;
+        if (topic != null)
+            topics.add(topic);
+        node.children.values().forEach(child -> topics(child, topics));
+    }
+
+    /**
+     * Remove all topics.
+     */
+    protected void clear() {
+        root.children.clear();
+    }
+
+    private Node find(Topic topic) {
+        Node node = root;
+        for (String level : topic.getLevels()) {
+            node = node.children.get(level);
+            if (node == null)
+                return null;
+        }
+        return node;
+    }
+
+    /**
+     * A level of the trie, {@code subscribers} and {@code snapshot} are null
+     * when no topic ends at this level.
+     */
+    private static class Node {
+        private final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+        private volatile Topic topic;
+        private volatile ConcurrentHashMap<String, Subscription> subscribers;
+        private volatile Subscription[] snapshot;
+
+        private synchronized void add(Topic topic, Subscription sub) {
+            if (subscribers == null) {
+                this.topic = topic;
+                subscribers = new ConcurrentHashMap<>();
+            }
+            subscribers.put(sub.getSubId(), sub);
+            snapshot = subscribers.values().toArray(EMPTY);
+        }
+
+        private synchronized Subscription remove(String subId) {
+            if (subscribers == null)
+                return null;
+            Subscription sub = subscribers.remove(subId);
+            if (sub != null)
+                snapshot = subscribers.values().toArray(EMPTY);
+            return sub;
+        }
+
+        /**
+         * Remove a subscription and apply an action to it along with the topic it was removed from,
+         * the topic is read under the lock, since the node may be removed and reused concurrently.
+         */
+        private void remove(String subId, BiConsumer<Topic, Subscription> removed) {
+            Topic removedFrom;
+            Subscription sub;
+            synchronized (this) {
+                removedFrom = topic;
+                sub = remove(subId);
+            }
+            if (sub != null)
+                removed.accept(removedFrom, sub);
+        }
+
+        private synchronized Subscription[] remove() {
+            Subscription[] subs = snapshot;
+            subscribers = null;
+            snapshot = null;
+            topic = null;
+            return subs;
+        }
+
+        private void collect(List<Subscription[]> matches) {
+            Subscription[] subs = snapshot;
+            if (subs != null && subs.length > 0)
+                matches.add(subs);
+        }
+    }
+}
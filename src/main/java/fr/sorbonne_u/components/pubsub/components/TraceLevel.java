@@ -0,0 +1,27 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+/**
+ * The levels of the events of a {@link TraceLog}, from the least to the most verbose.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see CBuilder#setTraceLevel(TraceLevel)
+ */
+public enum TraceLevel {
+    /**
+     * No event is recorded.
+     */
+    OFF,
+    /**
+     * Failures.
+     */
+    ERROR,
+    /**
+     * The lifecycle of the components and of the subscriptions.
+     */
+    INFO,
+    /**
+     * Every published and received message, the events of the hot path, they may be sampled.
+     */
+    DEBUG
+}
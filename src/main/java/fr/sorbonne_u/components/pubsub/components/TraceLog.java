@@ -0,0 +1,225 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A {@code TraceLog} records the events of a component lazily and writes them asynchronously.
+ * <p>
+ * An event is a format, whose {@code {}} placeholders are replaced by its arguments, and a {@link TraceLevel}.
+ * Recording an event below the level of the log is a single comparison: no string is built and
+ * nothing is allocated, the arguments are passed as is, e.g the content of a message is not converted.
+ * The events of the hot path, at {@link TraceLevel#DEBUG}, may also be sampled, one in {@code sampleRate}.
+ * <p>
+ * A recorded event is queued in a bounded {@link MpscArrayQueue}, and formatted later by a shared
+ * background thread which writes it to the sink of the log, e.g {@code AbstractComponent#logMessage}.
+ * When the queue is full the event is dropped rather than blocking the caller, and the number of
+ * dropped events is written with the next events. Since the arguments are formatted later,
+ * they should not be modified once recorded.
+ * <p>
+ * Example:
+ * <blockquote><pre>
+ *      trace.log(TraceLevel.DEBUG, "publishing: {} to {}", message.getContent(), message.getTopic());
+ * </pre></blockquote>
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see CBuilder#setTraceLevel(TraceLevel)
+ */
+public final class TraceLog {
+    /**
+     * The default maximum number of events waiting to be written.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /**
+     * The time in milliseconds between two writes of the queued events.
+     */
+    private static final long DRAIN_INTERVAL = 10;
+
+    private final int level;
+    private final int sampleRate;
+    private final MpscArrayQueue<Event> events;
+    private final Consumer<String> sink;
+    private final LongAdder dropped = new LongAdder();
+    private final ScheduledFuture<?> drainer;
+
+    /**
+     * Creates a log, its events are written every {@value #DRAIN_INTERVAL} ms until it is closed.
+     *
+     * @param level      The most verbose level recorded
+     * @param sampleRate One in {@code sampleRate} {@code DEBUG} events is recorded
+     * @param capacity   The maximum number of events waiting to be written
+     * @param sink       Writes a formatted event
+     * @throws IllegalArgumentException if {@code sampleRate} or {@code capacity} is <= 0
+     */
+    public TraceLog(TraceLevel level, int sampleRate, int capacity, Consumer<String> sink) {
+        this(level, sampleRate, capacity, sink, true);
+    }
+
+    /**
+     * @param background false to only write the events on {@link #close()}
+     */
+    TraceLog(TraceLevel level, int sampleRate, int capacity, Consumer<String> sink, boolean background) {
+        if (sampleRate <= 0)
+            throw new IllegalArgumentException("sampleRate must be > 0");
+        this.level = level.ordinal();
+        this.sampleRate = sampleRate;
+        this.events = new MpscArrayQueue<>(capacity);
+        this.sink = sink;
+        this.drainer = level == TraceLevel.OFF || !background ? null :
+                Drainer.EXECUTOR.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param level A {@code TraceLevel}
+     * @return true if the events of this level are recorded, sampled or not
+     */
+    public boolean isEnabled(TraceLevel level) {
+        return level.ordinal() <= this.level && level != TraceLevel.OFF;
+    }
+
+    /**
+     * Record an event if its level is enabled, {@code DEBUG} events may be sampled.
+     *
+     * @param level  The level of the event
+     * @param format The event, its {@code {}} placeholders are replaced by the arguments when it is written
+     */
+    public void log(TraceLevel level, String format) {
+        if (level.ordinal() <= this.level)
+            record(level, format, null, null, null, 0, 0);
+    }
+
+    public void log(TraceLevel level, String format, Object a) {
+        if (level.ordinal() <= this.level)
+            record(level, format, a, null, null, 1, 0);
+    }
+
+    public void log(TraceLevel level, String format, Object a, Object b) {
+        if (level.ordinal() <= this.level)
+            record(level, format, a, b, null, 2, 0);
+    }
+
+    public void log(TraceLevel level, String format, Object a, Object b, Object c) {
+        if (level.ordinal() <= this.level)
+            record(level, format, a, b, c, 3, 0);
+    }
+
+    /**
+     * Record an event with a number, which is not boxed unless the event is recorded.
+     */
+    public void log(TraceLevel level, String format, long n) {
+        if (level.ordinal() <= this.level)
+            record(level, format, null, null, null, -1, n);
+    }
+
+    private void record(TraceLevel level, String format, Object a, Object b, Object c, int arity, long n) {
+        if (level == TraceLevel.OFF)
+            return;
+        if (level == TraceLevel.DEBUG && sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+            return;
+        if (!events.offer(new Event(level, format, a, b, c, arity, n)))
+            dropped.increment();
+    }
+
+    /**
+     * Write the queued events, one thread at a time since the queue has a single consumer.
+     */
+    synchronized void drain() {
+        long lost = dropped.sumThenReset();
+        if (lost > 0)
+            write("[" + TraceLevel.ERROR + "] " + lost + " trace events dropped");
+        Event event;
+        while ((event = events.poll()) != null)
+            write(event);
+    }
+
+    private void write(Object line) {
+        try {
+            sink.accept(line.toString());
+        } catch (RuntimeException e) {
+            // a failing argument or sink must not stop the drainer
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Stop writing in the background and write the queued events.
+     */
+    public void close() {
+        if (drainer != null)
+            drainer.cancel(false);
+        drain();
+    }
+
+    @Override
+    public String toString() {
+        return "TraceLog{" +
+                "level=" + TraceLevel.values()[level] +
+                ", sampleRate=" + sampleRate +
+                ", queued=" + events.size() +
+                '}';
+    }
+
+    /**
+     * A recorded event, formatted when it is written.
+     */
+    private static final class Event {
+        private final TraceLevel level;
+        private final String format;
+        private final Object a;
+        private final Object b;
+        private final Object c;
+        /**
+         * The number of arguments, -1 for an event with a number.
+         */
+        private final int arity;
+        private final long n;
+
+        private Event(TraceLevel level, String format, Object a, Object b, Object c, int arity, long n) {
+            this.level = level;
+            this.format = format;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.arity = arity;
+            this.n = n;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(format.length() + 32);
+            builder.append('[').append(level).append("] ");
+            int arg = 0;
+            int from = 0;
+            int at;
+            while ((at = format.indexOf("{}", from)) >= 0) {
+                builder.append(format, from, at);
+                if (arity < 0 && arg == 0)
+                    builder.append(n);
+                else if (arg < arity)
+                    builder.append(arg == 0 ? a : arg == 1 ? b : c);
+                else
+                    builder.append("{}");
+                arg++;
+                from = at + 2;
+            }
+            return builder.append(format, from, format.length()).toString();
+        }
+    }
+
+    /**
+     * The daemon thread shared by all logs, started with the first log.
+     */
+    private static final class Drainer {
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "trace-log-drainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@code VirtualThreads} creates the virtual threads of the components in the virtual-thread execution mode,
+ * see {@link PubSub.Builder#setVirtualThreads(boolean)} and {@link Subscriber.Builder#setVirtualThreads(boolean)}.
+ * <p>
+ * A virtual thread is cheap to create and to block: a blocking call, e.g the notification of a remote
+ * subscriber, unmounts it from its carrier thread instead of holding a platform thread,
+ * so tens of thousands of concurrent deliveries do not need tens of thousands of platform threads,
+ * nor a pool sized by hand.
+ * <p>
+ * Virtual threads require Java 21 or later, while this project is compiled for Java 8,
+ * so they are created by reflection when the running JVM supports them.
+ *
+ * @author Nadir Belarouci
+ * @author Katia Amichi
+ * @see HandlerExecutor
+ * @see MessageInbox
+ */
+public final class VirtualThreads {
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, null before Java 21.
+     */
+    private static final Method NEW_EXECUTOR;
+    /**
+     * {@code Thread.ofVirtual()}, null before Java 21.
+     */
+    private static final Method OF_VIRTUAL;
+
+    static {
+        Method newExecutor = null;
+        Method ofVirtual = null;
+        try {
+            newExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            // not supported by this JVM
+        }
+        NEW_EXECUTOR = newExecutor;
+        OF_VIRTUAL = ofVirtual;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads, i.e Java 21 or later
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null && OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates an executor which runs each task in a new virtual thread.
+     *
+     * @return an unbounded {@code ExecutorService}
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public static ExecutorService newExecutor() {
+        return (ExecutorService) invoke(NEW_EXECUTOR, null);
+    }
+
+    /**
+     * Creates a factory of virtual threads named {@code prefix0}, {@code prefix1}, etc.
+     *
+     * @param prefix The prefix of the names of the threads
+     * @return a {@code ThreadFactory}
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        Object builder = invoke(OF_VIRTUAL, null);
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported", e);
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    static void checkSupported() {
+        if (!isSupported())
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later, running "
+                    + System.getProperty("java.version"));
+    }
+
+    private static Object invoke(Method method, Object target) {
+        checkSupported();
+        try {
+            return method.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported", e);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import fr.sorbonne_u.components.connectors.AbstractConnector;
 import fr.sorbonne_u.components.pubsub.Message;
 import fr.sorbonne_u.components.pubsub.interfaces.Observer;
 
+import java.util.List;
+
 /**
  * The {@code ObserverConnector} class connects between the PubSub out-bound port and
  * the Subscriber in-bound port, at each subscription the PubSub establish a  connection between the two ports.
@@ -19,4 +21,12 @@ public class ObserverConnector extends AbstractConnector implements Observer.Req
         message.setTimestamp(System.currentTimeMillis());
         ((Observer.Offered) this.offering).notify(message);
     }
+
+    @Override
+    public void notifyBatch(List<Message> messages) throws Exception {
+        long timestamp = System.currentTimeMillis();
+        for (Message message : messages)
+            message.setTimestamp(timestamp);
+        ((Observer.Offered) this.offering).notifyBatch(messages);
+    }
 }
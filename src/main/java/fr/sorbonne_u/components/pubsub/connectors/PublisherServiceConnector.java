@@ -6,6 +6,8 @@ import fr.sorbonne_u.components.pubsub.exceptions.CallOfferedMethodException;
 import fr.sorbonne_u.components.pubsub.interfaces.PubSubService;
 import fr.sorbonne_u.components.pubsub.interfaces.PublisherService;
 
+import java.util.List;
+
 /**
  * The {@code PublisherServiceConnector} class connects between the PubSub in-bound port and
  * the Publisher out-bound port, the connection between the two ports
@@ -27,4 +29,14 @@ public class PublisherServiceConnector extends AbstractConnector implements Publ
             throw new CallOfferedMethodException(e);
         }
     }
+
+    @Override
+    public void publishBatch(List<Message> messages) {
+
+        try {
+            ((PubSubService.Offered) this.offering).publishBatch(messages);
+        } catch (Exception e) {
+            throw new CallOfferedMethodException(e);
+        }
+    }
 }
@@ -2,6 +2,7 @@ package fr.sorbonne_u.components.pubsub.connectors;
 
 import fr.sorbonne_u.components.connectors.AbstractConnector;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 import fr.sorbonne_u.components.pubsub.exceptions.CallOfferedMethodException;
 import fr.sorbonne_u.components.pubsub.interfaces.PubSubService;
@@ -53,6 +54,15 @@ public class SubscriberServiceConnector extends AbstractConnector implements Sub
         }
     }
 
+    @Override
+    public void subscribe(Topic topic, StartPosition position) {
+        try {
+            ((PubSubService.Offered) this.offering).subscribe(getSubId(), topic, position);
+        } catch (Exception e) {
+            throw new CallOfferedMethodException(e);
+        }
+    }
+
     @Override
     public void filter(Topic topic, Predicate<Message> filter) {
         try {
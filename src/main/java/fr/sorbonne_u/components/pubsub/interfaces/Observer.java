@@ -4,6 +4,8 @@ import fr.sorbonne_u.components.interfaces.OfferedI;
 import fr.sorbonne_u.components.interfaces.RequiredI;
 import fr.sorbonne_u.components.pubsub.Message;
 
+import java.util.List;
+
 /**
  * A class can implement the {@code Observer} interface when it
  * wants to be informed of changes in observable objects.
@@ -37,6 +39,15 @@ public interface Observer {
      */
     void notify(Message message) throws Exception;
 
+    /**
+     * This method is called whenever the observed object receives a batch of messages,
+     * messages must be handled in the order of the list.
+     *
+     * @param messages A list of {@code Message}s
+     * @throws Exception
+     */
+    void notifyBatch(List<Message> messages) throws Exception;
+
 
     /**
      * An Offered interface
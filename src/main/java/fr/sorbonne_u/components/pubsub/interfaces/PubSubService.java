@@ -2,8 +2,10 @@ package fr.sorbonne_u.components.pubsub.interfaces;
 
 import fr.sorbonne_u.components.interfaces.OfferedI;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 
+import java.util.List;
 import java.util.function.Predicate;
 
 /**
@@ -26,6 +28,17 @@ public interface PubSubService {
      */
     void publish(Message message) throws Exception;
 
+    /**
+     * Publish a batch of messages to subscribers.
+     * <p>
+     * Messages published on the same topic are delivered in the order of the batch.
+     * </p>
+     *
+     * @param messages A list of {@code Message}s
+     * @throws Exception remote exception
+     */
+    void publishBatch(List<Message> messages) throws Exception;
+
     /**
      * Subscribe to topic by creating a {@link Subscription} instance from the Subscriber ID.
      *
@@ -40,12 +53,23 @@ public interface PubSubService {
      *
      * @param subId  The subscriber ID
      * @param topic  A {@code Topic}
-     * @param filter A predicate of a message
+     * @param filter A predicate of a message, preferably a {@link fr.sorbonne_u.components.pubsub.Filter}
      * @throws Exception remote exception
      */
 
     void subscribe(String subId, Topic topic, Predicate<Message> filter) throws Exception;
 
+    /**
+     * Subscribe to topic from a position of its log by creating a {@link Subscription} instance
+     * from the Subscriber ID.
+     *
+     * @param subId    The subscriber ID
+     * @param topic    A {@code Topic} without wildcards
+     * @param position A {@code StartPosition}
+     * @throws Exception remote exception
+     */
+    void subscribe(String subId, Topic topic, StartPosition position) throws Exception;
+
     /**
      * Unsubscribe from a topic.
      *
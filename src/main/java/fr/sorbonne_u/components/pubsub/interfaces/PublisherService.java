@@ -3,6 +3,8 @@ package fr.sorbonne_u.components.pubsub.interfaces;
 import fr.sorbonne_u.components.interfaces.RequiredI;
 import fr.sorbonne_u.components.pubsub.Message;
 
+import java.util.List;
+
 /**
  * The {@code PublisherService} interface defines the contract that a {@code Publisher Component} must uphold.
  *
@@ -24,6 +26,13 @@ public interface PublisherService {
      */
     void publish(Message message);
 
+    /**
+     * Publish a batch of messages to the PubSub with a single request.
+     *
+     * @param messages A list of {@code Message}s
+     */
+    void publishBatch(List<Message> messages);
+
 
     /**
      * A required interface
@@ -2,6 +2,7 @@ package fr.sorbonne_u.components.pubsub.interfaces;
 
 import fr.sorbonne_u.components.interfaces.RequiredI;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 
 import java.util.function.Predicate;
@@ -32,10 +33,19 @@ public interface SubscriberService {
      * Subscribe to a topic using a filter.
      *
      * @param topic  A {@code Topic}
-     * @param filter A predicate of a message
+     * @param filter A predicate of a message, preferably a {@link fr.sorbonne_u.components.pubsub.Filter}
      */
     void subscribe(Topic topic, Predicate<Message> filter);
 
+    /**
+     * Subscribe to a topic from a position of its log, the retained messages from this position
+     * are received first, then the messages published since.
+     *
+     * @param topic    A {@code Topic} without wildcards
+     * @param position A {@code StartPosition}
+     */
+    void subscribe(Topic topic, StartPosition position);
+
     /**
      * Unsubscribe from a topic.
      *
@@ -2,6 +2,7 @@ package fr.sorbonne_u.components.pubsub.interfaces;
 
 import fr.sorbonne_u.components.pubsub.Message;
 
+import java.util.List;
 import java.util.function.Predicate;
 
 /**
@@ -31,6 +32,14 @@ public interface Subscription {
      */
     void notify(Message message);
 
+    /**
+     * Notify a subscriber with several messages at once, after the messages it was already notified with,
+     * e.g the messages read from the log when a subscription starts from a past position.
+     *
+     * @param messages A list of {@code Message}s, already filtered
+     */
+    void notifyBatch(List<Message> messages);
+
     /**
      * Update a Subscription filter
      *
@@ -38,6 +47,13 @@ public interface Subscription {
      */
     void filter(Predicate<Message> filter);
 
+    /**
+     * Returns the subscription filter, the broker evaluates it before notifying the subscriber.
+     *
+     * @return A predicate of a message, or null if every message is accepted
+     */
+    Predicate<Message> getFilter();
+
 
     /**
      * Returns the subscriber ID.
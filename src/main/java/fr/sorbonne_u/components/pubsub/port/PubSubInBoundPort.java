@@ -4,10 +4,16 @@ import fr.sorbonne_u.components.AbstractComponent;
 import fr.sorbonne_u.components.ComponentI;
 import fr.sorbonne_u.components.ports.AbstractInboundPort;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
+import fr.sorbonne_u.components.pubsub.components.TraceLevel;
+import fr.sorbonne_u.components.pubsub.components.TraceLog;
 import fr.sorbonne_u.components.pubsub.interfaces.PubSubService;
 import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
 /**
@@ -15,6 +21,18 @@ import java.util.function.Predicate;
  * note that a PubSub can only have one in-bound port.
  * This in-bound port will be used by the required interfaces of the {@code Publisher}
  * and the {@code Subscriber} components.
+ * <p>
+ * By default the requests are handled asynchronously by the threads of the owner component.
+ * When the port has a request executor, e.g the virtual threads of the owner, see
+ * {@link fr.sorbonne_u.components.pubsub.components.PubSub.Builder#setVirtualThreads(boolean)},
+ * the requests are handled by this executor instead, and their failures are recorded in the
+ * {@link TraceLog} of the owner at {@link TraceLevel#ERROR}.
+ * <p>
+ * When the port has a publication executor, the publications are handled by this executor instead.
+ * A single-threaded executor hands them to the broker in the order they arrive, and the broker queues them
+ * to the shard of their topic, which delivers the messages of a topic in order, hence the messages published
+ * on a topic by a {@code Publisher} are delivered in the order it published them.
+ * The log appends of the broker run on this executor as well, not on the threads of the publishers.
  *
  * @author Nadir Belarouci
  * @author Katia Amichi
@@ -24,6 +42,19 @@ import java.util.function.Predicate;
  * @see Subscription
  */
 public class PubSubInBoundPort extends AbstractInboundPort implements PubSubService.Offered {
+    /**
+     * Handles the requests, null if they are handled by the threads of the owner component.
+     */
+    private final Executor requestExecutor;
+    /**
+     * Handles the publications, null if they are handled by the threads of the owner component.
+     */
+    private final Executor publicationExecutor;
+    /**
+     * Records the failures of the requests handled by the request and publication executors.
+     */
+    private final TraceLog trace;
+
     /**
      * Creates a new {@code PubSubInBoundPort} instance with a specific URI.
      *
@@ -32,7 +63,28 @@ public class PubSubInBoundPort extends AbstractInboundPort implements PubSubServ
      * @throws Exception
      */
     public PubSubInBoundPort(String uri, ComponentI owner) throws Exception {
+        this(uri, owner, null, null, null);
+    }
+
+    /**
+     * Creates a new {@code PubSubInBoundPort} instance with a specific URI whose requests
+     * are handled by executors.
+     *
+     * @param uri             The port URI
+     * @param owner           The component owner
+     * @param requestExecutor     Handles the requests, or null to handle them by the threads of the owner
+     * @param publicationExecutor Handles the publications, or null to handle them by the threads of the owner
+     * @param trace               Records the failures of the requests handled by the executors,
+     *                            required when there is an executor
+     * @throws Exception
+     */
+    public PubSubInBoundPort(String uri, ComponentI owner, Executor requestExecutor,
+                             Executor publicationExecutor, TraceLog trace) throws Exception {
         super(uri, PubSubService.Offered.class, owner);
+        this.requestExecutor = requestExecutor;
+        this.publicationExecutor = publicationExecutor;
+        this.trace = requestExecutor == null && publicationExecutor == null ?
+                trace : Objects.requireNonNull(trace, "Trace cannot be null.");
     }
 
     /**
@@ -42,80 +94,104 @@ public class PubSubInBoundPort extends AbstractInboundPort implements PubSubServ
      * @throws Exception
      */
     public PubSubInBoundPort(ComponentI owner) throws Exception {
+        this(owner, null, null, null);
+    }
+
+    /**
+     * Creates a new {@code PubSubInBoundPort} instance with a random unique URI whose requests
+     * are handled by executors.
+     *
+     * @param owner           The component owner
+     * @param requestExecutor     Handles the requests, or null to handle them by the threads of the owner
+     * @param publicationExecutor Handles the publications, or null to handle them by the threads of the owner
+     * @param trace               Records the failures of the requests handled by the executors,
+     *                            required when there is an executor
+     * @throws Exception
+     */
+    public PubSubInBoundPort(ComponentI owner, Executor requestExecutor,
+                             Executor publicationExecutor, TraceLog trace) throws Exception {
         super(PubSubService.Offered.class, owner);
+        this.requestExecutor = requestExecutor;
+        this.publicationExecutor = publicationExecutor;
+        this.trace = requestExecutor == null && publicationExecutor == null ?
+                trace : Objects.requireNonNull(trace, "Trace cannot be null.");
     }
 
-    @Override
-    public void publish(Message message) throws Exception {
+    /**
+     * Handle a request asynchronously, by an executor if any,
+     * otherwise by the threads of the owner component.
+     *
+     * @param executor The executor of the request, or null
+     * @param request  A request to the owner component
+     * @throws Exception if the request cannot be submitted
+     */
+    private void handle(Executor executor, Request request) throws Exception {
+        if (executor != null) {
+            PubSubService owner = (PubSubService) this.getOwner();
+            executor.execute(() -> {
+                try {
+                    request.run(owner);
+                } catch (Exception e) {
+                    trace.log(TraceLevel.ERROR, "handling a request failed: {}", e);
+                }
+            });
+            return;
+        }
         this.getOwner().handleRequestAsync(
                 new AbstractComponent.AbstractService<Void>() {
                     @Override
                     public Void call() throws Exception {
-                        ((PubSubService) this.getOwner()).publish(message);
+                        request.run((PubSubService) this.getOwner());
                         return null;
                     }
                 });
+    }
+
+    @Override
+    public void publish(Message message) throws Exception {
+        handle(publicationExecutor, owner -> owner.publish(message));
+    }
 
+    @Override
+    public void publishBatch(List<Message> messages) throws Exception {
+        handle(publicationExecutor, owner -> owner.publishBatch(messages));
     }
 
     @Override
     public void subscribe(String subId, Topic topic) throws Exception {
-        this.getOwner().handleRequestAsync(
-                new AbstractComponent.AbstractService<Void>() {
-                    @Override
-                    public Void call() throws Exception {
-                        ((PubSubService) this.getOwner()).subscribe(subId, topic);
-                        return null;
-                    }
-                });
+        handle(requestExecutor, owner -> owner.subscribe(subId, topic));
     }
 
     @Override
     public void subscribe(String subId, Topic topic, Predicate<Message> filter) throws Exception {
-        this.getOwner().handleRequestAsync(
-                new AbstractComponent.AbstractService<Void>() {
-                    @Override
-                    public Void call() throws Exception {
-                        ((PubSubService) this.getOwner()).subscribe(subId, topic, filter);
-                        return null;
-                    }
-                });
+        handle(requestExecutor, owner -> owner.subscribe(subId, topic, filter));
+    }
+
+    @Override
+    public void subscribe(String subId, Topic topic, StartPosition position) throws Exception {
+        handle(requestExecutor, owner -> owner.subscribe(subId, topic, position));
     }
 
     @Override
     public void unsubscribe(String subId, Topic topic) throws Exception {
-        this.getOwner().handleRequestAsync(
-                new AbstractComponent.AbstractService<Void>() {
-                    @Override
-                    public Void call() throws Exception {
-                        ((PubSubService) this.getOwner()).unsubscribe(subId, topic);
-                        return null;
-                    }
-                });
+        handle(requestExecutor, owner -> owner.unsubscribe(subId, topic));
     }
 
     @Override
     public void filter(String subId, Topic topic, Predicate<Message> filter) throws Exception {
-        this.getOwner().handleRequestAsync(
-                new AbstractComponent.AbstractService<Void>() {
-                    @Override
-                    public Void call() throws Exception {
-                        ((PubSubService) this.getOwner()).filter(subId, topic, filter);
-                        return null;
-                    }
-                });
+        handle(requestExecutor, owner -> owner.filter(subId, topic, filter));
     }
 
 
     @Override
     public void unsubscribe(String subId) throws Exception {
-        this.getOwner().handleRequestAsync(
-                new AbstractComponent.AbstractService<Void>() {
-                    @Override
-                    public Void call() throws Exception {
-                        ((PubSubService) this.getOwner()).unsubscribe(subId);
-                        return null;
-                    }
-                });
+        handle(requestExecutor, owner -> owner.unsubscribe(subId));
+    }
+
+    /**
+     * A request to the owner component.
+     */
+    private interface Request {
+        void run(PubSubService owner) throws Exception;
     }
 }
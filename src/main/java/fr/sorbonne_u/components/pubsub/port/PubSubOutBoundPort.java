@@ -6,6 +6,8 @@ import fr.sorbonne_u.components.pubsub.Message;
 import fr.sorbonne_u.components.pubsub.interfaces.Observer;
 import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
 
+import java.util.List;
+
 /**
  * The {@code PubSubOutBoundPort} is an implementation of the PubSub out-bound port.
  *
@@ -53,5 +55,16 @@ public class PubSubOutBoundPort extends AbstractOutboundPort implements Observer
         ((Observer.Required) this.connector).notify(message);
     }
 
+    /**
+     * Notify a subscriber with a batch of messages.
+     *
+     * @param messages A list of {@code Message}s
+     * @throws Exception
+     */
+    @Override
+    public void notifyBatch(List<Message> messages) throws Exception {
+        ((Observer.Required) this.connector).notifyBatch(messages);
+    }
+
 
 }
@@ -5,6 +5,8 @@ import fr.sorbonne_u.components.ports.AbstractOutboundPort;
 import fr.sorbonne_u.components.pubsub.Message;
 import fr.sorbonne_u.components.pubsub.interfaces.PublisherService;
 
+import java.util.List;
+
 /**
  * The {@code PublisherOutBoundPort} is an implementation of the Publisher out-bound port.
  *
@@ -39,4 +41,9 @@ public class PublisherOutBoundPort extends AbstractOutboundPort implements Publi
     public void publish(Message message) {
         ((PublisherService.Required) this.connector).publish(message);
     }
+
+    @Override
+    public void publishBatch(List<Message> messages) {
+        ((PublisherService.Required) this.connector).publishBatch(messages);
+    }
 }
@@ -4,17 +4,29 @@ import fr.sorbonne_u.components.AbstractComponent;
 import fr.sorbonne_u.components.ComponentI;
 import fr.sorbonne_u.components.ports.AbstractInboundPort;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.components.MessageInbox;
 import fr.sorbonne_u.components.pubsub.interfaces.Observer;
 
+import java.util.List;
+
 /**
  * The {@code PublisherOutBoundPort} is an implementation of the
  * Subscriber in-bound port in order to receive messages.
+ * <p>
+ * By default a message is handled synchronously by the owner component, the caller waits for its consumer.
+ * When the port has a {@link MessageInbox}, a message is put in the inbox and handled asynchronously
+ * by the threads of the inbox, the caller only waits while the inbox is full.
  *
  * @author Nadir Belarouci
  * @author Katia Amichi
  * @see fr.sorbonne_u.components.pubsub.components.Subscriber
  */
 public class SubscriberInBoundPort extends AbstractInboundPort implements Observer.Offered {
+    /**
+     * The inbox of the owner component, null if messages are handled synchronously.
+     */
+    private final MessageInbox inbox;
+
     /**
      * Creates a new {@code SubscriberInBoundPort} instance with a specific URI.
      *
@@ -23,7 +35,21 @@ public class SubscriberInBoundPort extends AbstractInboundPort implements Observ
      * @throws Exception
      */
     public SubscriberInBoundPort(String uri, ComponentI owner) throws Exception {
+        this(uri, owner, null);
+    }
+
+    /**
+     * Creates a new {@code SubscriberInBoundPort} instance with a specific URI which puts
+     * the received messages in an inbox.
+     *
+     * @param uri   The port URI
+     * @param owner The component owner
+     * @param inbox The inbox of the owner component, or null to handle messages synchronously
+     * @throws Exception
+     */
+    public SubscriberInBoundPort(String uri, ComponentI owner, MessageInbox inbox) throws Exception {
         super(uri, Observer.Offered.class, owner);
+        this.inbox = inbox;
     }
 
     /**
@@ -33,7 +59,20 @@ public class SubscriberInBoundPort extends AbstractInboundPort implements Observ
      * @throws Exception
      */
     public SubscriberInBoundPort(ComponentI owner) throws Exception {
+        this(owner, null);
+    }
+
+    /**
+     * Creates a new {@code SubscriberInBoundPort} instance with a random unique URI which puts
+     * the received messages in an inbox.
+     *
+     * @param owner The component owner
+     * @param inbox The inbox of the owner component, or null to handle messages synchronously
+     * @throws Exception
+     */
+    public SubscriberInBoundPort(ComponentI owner, MessageInbox inbox) throws Exception {
         super(Observer.Offered.class, owner);
+        this.inbox = inbox;
     }
 
     @Override
@@ -43,6 +82,10 @@ public class SubscriberInBoundPort extends AbstractInboundPort implements Observ
 
     @Override
     public void notify(Message message) throws Exception {
+        if (inbox != null) {
+            inbox.put(message);
+            return;
+        }
         this.getOwner().handleRequestSync(
                 new AbstractComponent.AbstractService<Void>() {
                     @Override
@@ -52,4 +95,20 @@ public class SubscriberInBoundPort extends AbstractInboundPort implements Observ
                     }
                 });
     }
+
+    @Override
+    public void notifyBatch(List<Message> messages) throws Exception {
+        if (inbox != null) {
+            inbox.putAll(messages);
+            return;
+        }
+        this.getOwner().handleRequestSync(
+                new AbstractComponent.AbstractService<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        ((Observer) this.getOwner()).notifyBatch(messages);
+                        return null;
+                    }
+                });
+    }
 }
@@ -3,6 +3,7 @@ package fr.sorbonne_u.components.pubsub.port;
 import fr.sorbonne_u.components.ComponentI;
 import fr.sorbonne_u.components.ports.AbstractOutboundPort;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 import fr.sorbonne_u.components.pubsub.interfaces.SubscriberService;
 
@@ -53,6 +54,11 @@ public class SubscriberOutBoundPort extends AbstractOutboundPort implements Subs
         ((SubscriberService.Required) this.connector).subscribe(topic, filter);
     }
 
+    @Override
+    public void subscribe(Topic topic, StartPosition position) {
+        ((SubscriberService.Required) this.connector).subscribe(topic, position);
+    }
+
     @Override
     public void filter(Topic topic, Predicate<Message> filter) {
         ((SubscriberService.Required) this.connector).filter(topic, filter);
@@ -0,0 +1,89 @@
+package fr.sorbonne_u.components.pubsub;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class FilterIndexTest {
+
+    @Test
+    public void matchShouldReturnTheAcceptingIndexedFilters() {
+        Predicate<Message> opaque = m -> true;
+        FilterIndex index = new FilterIndex(Arrays.asList(
+                Filter.eq("symbol", "ACME").and(Filter.between("price", 10, 20)),
+                Filter.in("symbol", "ACME", "INIT").and(Filter.of(m -> m.getDouble("price") > 15)),
+                Filter.or(Filter.eq("symbol", "ACME"), Filter.gt("price", 0)),
+                opaque,
+                Filter.eq("final", true)));
+        assertEquals(3, index.getIndexedCount());
+
+        assertTrue(index.isIndexed(1));
+        assertFalse(index.isIndexed(2));
+        assertFalse(index.isIndexed(3));
+
+        int[] accepted = index.match(Message.newBuilder("t")
+                .addProperty("symbol", "ACME")
+                .addProperty("price", 12.0)
+                .build());
+        assertArrayEquals(new int[]{0}, accepted);
+    }
+
+    @Test
+    public void matchShouldAgreeWithTheFilters() {
+        Random random = new Random(42);
+        List<Filter> filters = new ArrayList<>();
+        for (int f = 0; f < 2000; f++) {
+            double low = random.nextInt(100);
+            switch (random.nextInt(6)) {
+                case 0:
+                    filters.add(Filter.eq("a", random.nextInt(20)));
+                    break;
+                case 1:
+                    filters.add(Filter.between("a", low, low + random.nextInt(30)));
+                    break;
+                case 2:
+                    filters.add(Filter.gt("a", low).and(Filter.lt("b", random.nextInt(100))));
+                    break;
+                case 3:
+                    filters.add(Filter.in("s", "x" + random.nextInt(10), "x" + random.nextInt(10))
+                            .and(Filter.le("b", low)));
+                    break;
+                case 4:
+                    filters.add(Filter.in("a", 1, 2, 2, 3).and(Filter.eq("s", "x" + random.nextInt(10))));
+                    break;
+                default:
+                    filters.add(Filter.ge("a", low).and(Filter.le("a", low + 10)).and(Filter.exists("b")));
+            }
+        }
+        FilterIndex index = new FilterIndex(filters);
+        assertEquals(filters.size(), index.getIndexedCount());
+
+        for (int m = 0; m < 500; m++) {
+            Message.Builder builder = Message.newBuilder("t");
+            if (random.nextBoolean())
+                builder.addProperty("a", random.nextInt(120));
+            else
+                builder.addProperty("a", random.nextDouble() * 120);
+            if (random.nextInt(4) > 0)
+                builder.addProperty("b", random.nextInt(100));
+            builder.addProperty("s", "x" + random.nextInt(12));
+            Message message = builder.build();
+
+            boolean[] accepted = new boolean[filters.size()];
+            for (int f : index.match(message)) {
+                assertFalse(accepted[f]);
+                accepted[f] = true;
+            }
+            for (int f = 0; f < filters.size(); f++) {
+                if (accepted[f] != filters.get(f).test(message))
+                    fail(filters.get(f) + " on " + message);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package fr.sorbonne_u.components.pubsub;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.*;
+
+public class FilterTest {
+
+    private final Message message = Message.newBuilder("sports/tennis/scores")
+            .addProperty("player", "someone")
+            .addProperty("set", 3)
+            .addProperty("speed", 201.5f)
+            .addProperty("final", true)
+            .setContent("6-4")
+            .build();
+
+    @Test
+    public void comparisonsShouldCompareNumbersOfAnyType() {
+        assertTrue(Filter.eq("set", 3).test(message));
+        assertTrue(Filter.between("set", 1, 3).test(message));
+        assertFalse(Filter.gt("set", 3).test(message));
+        assertTrue(Filter.ge("speed", 201.5).test(message));
+        assertTrue(Filter.lt("speed", 202).test(message));
+        assertTrue(Filter.in("set", 1, 3, 5).test(message));
+        assertFalse(Filter.in("set", 2, 4).test(message));
+    }
+
+    @Test
+    public void missingOrMistypedPropertiesShouldBeRejected() {
+        assertFalse(Filter.eq("missing", 3).test(message));
+        assertFalse(Filter.gt("player", 0).test(message));
+        assertFalse(Filter.eq("set", "3").test(message));
+        assertTrue(Filter.ne("missing", "x").test(message));
+    }
+
+    @Test
+    public void combinationsShouldFollowTheirOperators() {
+        Filter filter = Filter.eq("player", "someone")
+                .and(Filter.eq("final", true))
+                .and(Filter.or(Filter.in("set", 1, 2), Filter.contentType(String.class)));
+        assertTrue(filter.test(message));
+        assertFalse(filter.negate().test(message));
+        assertTrue(Filter.not(Filter.exists("missing")).test(message));
+        // nested ANDs are flattened
+        assertEquals(3, ((Filter.And) filter).getFilters().size());
+    }
+
+    @Test
+    public void equalFiltersShouldBeEqualAndSurviveSerialization() throws Exception {
+        Filter filter = Filter.in("player", "a", "b").or(Filter.between("set", 1, 5).negate());
+        assertEquals(filter, Filter.in("player", "a", "b").or(Filter.not(Filter.between("set", 1, 5))));
+        assertEquals(filter.hashCode(), Filter.in("player", "a", "b").or(Filter.not(Filter.between("set", 1, 5))).hashCode());
+        assertNotEquals(filter, Filter.in("player", "a", "b").or(Filter.not(Filter.between("set", 1, 6))));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(filter);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(filter, in.readObject());
+        }
+    }
+}
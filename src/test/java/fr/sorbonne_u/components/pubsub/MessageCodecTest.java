@@ -0,0 +1,118 @@
+package fr.sorbonne_u.components.pubsub;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageCodecTest {
+
+    private static Message newMessage(String topic, Serializable content) {
+        return Message.newBuilder(topic)
+                .setContent(content)
+                .setTimestamp(1_234_567_890_123L)
+                .addProperty("string", "value")
+                .addProperty("byte", (byte) -3)
+                .addProperty("short", (short) -300)
+                .addProperty("char", '\u00e9')
+                .addProperty("int", Integer.MIN_VALUE)
+                .addProperty("long", Long.MAX_VALUE)
+                .addProperty("float", 1.5f)
+                .addProperty("double", -2.25)
+                .addProperty("boolean", true)
+                .build();
+    }
+
+    private static void assertSameMessage(Message expected, Message actual) {
+        assertEquals(expected, actual);
+        assertEquals(expected.getTopic(), actual.getTopic());
+        assertEquals(expected.getProperties(), actual.getProperties());
+        assertEquals("value", actual.getString("string"));
+        assertEquals(-3, actual.getByte("byte"));
+        assertEquals(-300, actual.getShort("short"));
+        assertEquals('\u00e9', actual.getChar("char"));
+        assertEquals(Integer.MIN_VALUE, actual.getInt("int"));
+        assertEquals(Long.MAX_VALUE, actual.getLong("long"));
+        assertEquals(1.5f, actual.getFloat("float"), 0);
+        assertEquals(-2.25, actual.getDouble("double"), 0);
+        assertTrue(actual.getBoolean("boolean"));
+    }
+
+    @Test
+    public void decodeShouldReturnTheEncodedMessage() throws IOException {
+        for (Serializable content : Arrays.asList(null, "Hello", new Date(42))) {
+            Message message = newMessage("a/b", content);
+            assertSameMessage(message, MessageCodec.decode(MessageCodec.encode(message)));
+        }
+    }
+
+    @Test
+    public void decodeShouldReturnTheEncodedByteArrayContent() throws IOException {
+        Message message = Message.newBuilder("a").setContent(new byte[]{1, 2, 3}).build();
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) MessageCodec.decode(MessageCodec.encode(message)).getContent());
+    }
+
+    @Test
+    public void encodeShouldWriteTheNameOfEachTopicOnce() throws IOException {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            messages.add(newMessage(i % 2 == 0 ? "a/long/topic/name" : "another/long/topic/name", i));
+
+        byte[] batch = MessageCodec.encode(messages);
+        List<Message> decoded = MessageCodec.decodeAll(batch);
+        assertEquals(messages.size(), decoded.size());
+        for (int i = 0; i < messages.size(); i++)
+            assertSameMessage(messages.get(i), decoded.get(i));
+        assertSame(decoded.get(0).getTopic(), decoded.get(2).getTopic());
+
+        int separately = messages.stream().mapToInt(m -> MessageCodec.encode(m).length).sum();
+        assertTrue(batch.length < separately - 8 * "a/long/topic/name".length());
+    }
+
+    @Test
+    public void javaSerializationShouldUseTheCodec() throws Exception {
+        Message message = newMessage("a/b", "Hello");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSameMessage(message, (Message) in.readObject());
+        }
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void decodeShouldRejectAnUnknownVersion() throws IOException {
+        byte[] bytes = MessageCodec.encode(newMessage("a", "Hello"));
+        bytes[0] = 42;
+        MessageCodec.decode(bytes);
+    }
+
+    @Test
+    public void decodeShouldRejectACorruptLength() throws IOException {
+        // the ID of the message has a negative length
+        try {
+            MessageCodec.decode(new byte[]{1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+            fail();
+        } catch (StreamCorruptedException expected) {
+        }
+        // the ID of the message is longer than the input
+        try {
+            MessageCodec.decode(new byte[]{1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a'});
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package fr.sorbonne_u.components.pubsub;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class SnowflakeIdGeneratorTest {
+
+    @Test
+    public void nextShouldIncreaseAndKeepTheNodeId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(42);
+        long prev = generator.next();
+        // more than the 4096 IDs of a millisecond
+        for (int i = 0; i < 100_000; i++) {
+            long next = generator.next();
+            assertTrue(next > prev);
+            assertEquals(42, (next >>> 12) & SnowflakeIdGenerator.MAX_NODE_ID);
+            prev = next;
+        }
+    }
+
+    @Test
+    public void nextIdShouldBeUniqueAcrossThreads() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                Set<String> local = new HashSet<>();
+                for (int i = 0; i < 50_000; i++)
+                    local.add(generator.nextId());
+                ids.addAll(local);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(200_000, ids.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldRejectAnOutOfRangeNodeId() {
+        new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1);
+    }
+
+    @Test
+    public void builderShouldUseThePluggedGenerator() {
+        try {
+            Message.setIdGenerator(() -> "fixed");
+            assertEquals("fixed", Message.newBuilder("a").build().getId());
+        } finally {
+            Message.setIdGenerator(new SnowflakeIdGenerator());
+        }
+    }
+}
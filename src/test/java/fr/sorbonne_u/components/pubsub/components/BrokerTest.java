@@ -1,15 +1,24 @@
 package fr.sorbonne_u.components.pubsub.components;
 
+import fr.sorbonne_u.components.pubsub.Filter;
 import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.StartPosition;
 import fr.sorbonne_u.components.pubsub.Topic;
 import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import static org.junit.Assert.*;
 import static org.junit.Assume.assumeTrue;
@@ -21,6 +30,9 @@ public class BrokerTest {
     private final static Topic TOPIC3 = Topic.of("TOPIC3");
 
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private List<SubscriptionMock> observers = new ArrayList<>();
     private Broker broker = new Broker(5, 5);
 
@@ -43,10 +55,13 @@ public class BrokerTest {
         broker.subscribe(observers.get(1), TOPIC1).get();
         assumeTrue(broker.isSubscribed(observers.get(0), TOPIC1));
         assumeTrue(broker.isSubscribed(observers.get(1), TOPIC1));
+        broker.publish(Message.newBuilder(TOPIC1).setContent("Hello World Topic1").build()).get();
+        assertNotNull(broker.getDeliveryStats(TOPIC1));
         broker.removeTopic(TOPIC1).get();
         assertFalse(broker.hasTopic(TOPIC1));
         assertFalse(broker.isSubscribed(observers.get(0), TOPIC1));
         assertFalse(broker.isSubscribed(observers.get(1), TOPIC1));
+        assertNull(broker.getDeliveryStats(TOPIC1));
     }
 
     @Test
@@ -130,6 +145,300 @@ public class BrokerTest {
         assertEquals("Hello World Topic3", message.getContent());
     }
 
+    @Test
+    public void publishShouldNotifyTheSubscribersOfATopicInOrder() throws Exception {
+        broker.subscribe(observers.get(0), TOPIC1).get();
+        broker.subscribe(observers.get(1), TOPIC1).get();
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[10_000];
+        for (int i = 0; i < futures.length; i++)
+            futures[i] = broker.publish(Message.newBuilder(TOPIC1).addProperty("i", i).build());
+        CompletableFuture.allOf(futures).get();
+
+        for (SubscriptionMock observer : Arrays.asList(observers.get(0), observers.get(1))) {
+            List<Message> messages = observer.getMessages();
+            assertEquals(futures.length, messages.size());
+            for (int i = 0; i < messages.size(); i++)
+                assertEquals(i, messages.get(i).getInt("i"));
+        }
+        broker.shutdown();
+    }
+
+    @Test
+    public void publishBatchShouldNotifyTheSubscribersOfEachTopicInOrder() throws Exception {
+        broker.subscribe(observers.get(0), TOPIC1).get();
+        broker.subscribe(observers.get(1), TOPIC2).get();
+
+        broker.publish(Arrays.asList(
+                Message.newBuilder(TOPIC1).setContent("1-a").build(),
+                Message.newBuilder(TOPIC2).setContent("2-a").build(),
+                Message.newBuilder(TOPIC1).setContent("1-b").build(),
+                Message.newBuilder(TOPIC3).setContent("3-a").build(),
+                Message.newBuilder(TOPIC1).setContent("1-c").build(),
+                Message.newBuilder(TOPIC2).setContent("2-b").build()))
+                .get();
+
+        List<Message> messages = observers.get(0).getMessages();
+        assertEquals(3, messages.size());
+        assertEquals("1-a", messages.get(0).getContent());
+        assertEquals("1-b", messages.get(1).getContent());
+        assertEquals("1-c", messages.get(2).getContent());
+
+        messages = observers.get(1).getMessages();
+        assertEquals(2, messages.size());
+        assertEquals("2-a", messages.get(0).getContent());
+        assertEquals("2-b", messages.get(1).getContent());
+
+        assertTrue(observers.get(2).getMessages().isEmpty());
+    }
+
+    @Test
+    public void publishShouldNotifyTheSubscribersOfMatchingWildcardTopics() throws Exception {
+        broker.subscribe(observers.get(0), Topic.of("sports/+/scores")).get();
+        broker.subscribe(observers.get(1), Topic.of("sports/#")).get();
+        broker.subscribe(observers.get(2), Topic.of("sports/tennis")).get();
+        // subscribed twice through matching patterns, must be notified once
+        broker.subscribe(observers.get(0), Topic.of("sports/tennis/scores")).get();
+
+        broker.publish(Message.newBuilder("sports/tennis/scores").setContent("6-4").build()).get();
+
+        assertEquals(1, observers.get(0).getMessages().size());
+        assertEquals(1, observers.get(1).getMessages().size());
+        assertTrue(observers.get(2).getMessages().isEmpty());
+
+        broker.publish(Message.newBuilder("sports").setContent("news").build()).get();
+
+        assertEquals(1, observers.get(0).getMessages().size());
+        assertEquals("news", observers.get(1).getMessage().getContent());
+        assertTrue(observers.get(2).getMessages().isEmpty());
+    }
+
+    @Test
+    public void publishShouldNotifyBothRootAndTopicSubscribers() throws Exception {
+        broker.subscribe(observers.get(0), Topic.ROOT).get();
+        broker.subscribe(observers.get(1), TOPIC1).get();
+
+        broker.publish(Message.newBuilder(TOPIC1).setContent("Hello World Topic1").build()).get();
+        assertEquals("Hello World Topic1", observers.get(0).getMessage().getContent());
+        assertEquals("Hello World Topic1", observers.get(1).getMessage().getContent());
+
+        broker.unsubscribe(observers.get(0), Topic.ROOT).get();
+        broker.publish(Message.newBuilder(TOPIC1).setContent("Hello again").build()).get();
+        assertEquals(1, observers.get(0).getMessages().size());
+        assertEquals("Hello again", observers.get(1).getMessage().getContent());
+    }
+
+    @Test
+    public void publishShouldNotifyAllTheSubscribersOfALargeFanOut() throws Exception {
+        List<SubscriptionMock> subs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            SubscriptionMock sub = new SubscriptionMock("sub-" + i);
+            subs.add(sub);
+            broker.subscribe(sub, TOPIC1).get();
+        }
+
+        broker.publish(Message.newBuilder(TOPIC1).setContent("Hello World Topic1").build()).get();
+
+        for (SubscriptionMock sub : subs)
+            assertEquals(1, sub.getMessages().size());
+        DeliveryStats stats = broker.getDeliveryStats(TOPIC1);
+        assertEquals(1, stats.getPublications());
+        assertEquals(100, stats.getDeliveries());
+        assertEquals(1, stats.getSplitPublications());
+    }
+
+    @Test
+    public void publishShouldEvaluateEachDistinctFilterOncePerMessage() throws Exception {
+        AtomicInteger evaluations = new AtomicInteger();
+        Predicate<Message> counted = m -> {
+            evaluations.incrementAndGet();
+            return m.getInt("set") > 1;
+        };
+        for (SubscriptionMock sub : observers)
+            broker.subscribe(sub, TOPIC1, counted).get();
+        SubscriptionMock first = new SubscriptionMock("4");
+        SubscriptionMock second = new SubscriptionMock("5");
+        broker.subscribe(first, TOPIC1, Filter.eq("player", "someone").and(Filter.ge("set", 2))).get();
+        broker.subscribe(second, TOPIC1, Filter.eq("player", "someone").and(Filter.ge("set", 2))).get();
+
+        broker.publish(Message.newBuilder(TOPIC1).addProperty("player", "someone").addProperty("set", 1).build()).get();
+        broker.publish(Message.newBuilder(TOPIC1).addProperty("player", "someone").addProperty("set", 2).build()).get();
+
+        assertEquals(2, evaluations.get());
+        for (SubscriptionMock sub : observers)
+            assertEquals(1, sub.getMessages().size());
+        assertEquals(2, first.getMessage().getInt("set"));
+        assertEquals(2, second.getMessage().getInt("set"));
+
+        DeliveryStats stats = broker.getDeliveryStats(TOPIC1);
+        assertEquals(5, stats.getDeliveries());
+        assertEquals(5, stats.getRejections());
+        assertEquals(5, stats.getNotifyLatency().getCount());
+    }
+
+    @Test
+    public void subscribeFromAPositionShouldReplayTheLogThenDeliverEachPublishedMessageOnce() throws Exception {
+        MessageLog log = new MessageLog(folder.newFolder(), 1 << 16, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        broker = new Broker(5, 5, 64, log, 0);
+        for (int i = 0; i < 3000; i++)
+            broker.publish(Message.newBuilder(TOPIC1).addProperty("i", i).build()).get();
+
+        // publish while the subscribers catch up
+        CompletableFuture<List<CompletableFuture<Void>>> publishing = CompletableFuture.supplyAsync(() -> {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 3000; i < 4000; i++)
+                futures.add(broker.publish(Message.newBuilder(TOPIC1).addProperty("i", i).build()));
+            return futures;
+        });
+        broker.subscribe(observers.get(0), TOPIC1, StartPosition.earliest()).get();
+        broker.subscribe(observers.get(1), TOPIC1, StartPosition.offset(2500)).get();
+        for (CompletableFuture<Void> future : publishing.get())
+            future.get();
+
+        assertReceived(observers.get(0).getMessages(), 0, 4000);
+        assertReceived(observers.get(1).getMessages(), 2500, 4000);
+        assertEquals(4000, log.getNextOffset(TOPIC1));
+        broker.shutdown();
+    }
+
+    @Test
+    public void subscribeFromATimestampShouldReplayTheMessagesAppendedSince() throws Exception {
+        MessageLog log = new MessageLog(folder.newFolder(), 1 << 12, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        broker = new Broker(5, 5, 64, log, 0);
+        for (int i = 0; i < 100; i++)
+            broker.publish(Message.newBuilder(TOPIC1).addProperty("i", i).build()).get();
+        Thread.sleep(5);
+        long time = System.currentTimeMillis();
+        Thread.sleep(5);
+        for (int i = 100; i < 200; i++)
+            broker.publish(Message.newBuilder(TOPIC1).addProperty("i", i).build()).get();
+
+        broker.subscribe(observers.get(0), TOPIC1, StartPosition.timestamp(time)).get();
+        broker.publish(Message.newBuilder(TOPIC1).addProperty("i", 200).build()).get();
+
+        List<Message> messages = observers.get(0).getMessages();
+        assertEquals(101, messages.size());
+        for (int m = 0; m < messages.size(); m++)
+            assertEquals(100 + m, messages.get(m).getInt("i"));
+        broker.shutdown();
+    }
+
+    /**
+     * Check that a subscriber received each message from {@code from} to {@code to} once,
+     * the replayed messages in order.
+     */
+    private static void assertReceived(List<Message> messages, int from, int to) {
+        assertEquals(to - from, messages.size());
+        boolean[] received = new boolean[to];
+        for (int m = 0; m < messages.size(); m++) {
+            int i = messages.get(m).getInt("i");
+            if (i < 3000)
+                assertEquals(from + m, i);
+            assertFalse(received[i]);
+            received[i] = true;
+        }
+    }
+
+    @Test
+    public void subscribeFromTheLastMessagesShouldReplayTheReplayBufferWithoutALog() throws Exception {
+        broker = new Broker(5, 5, 64, null, 16);
+        for (int i = 0; i < 100; i++)
+            broker.publish(Message.newBuilder(TOPIC1).addProperty("i", i).build()).get();
+
+        broker.subscribe(observers.get(0), TOPIC1, StartPosition.last(10)).get();
+        broker.publish(Message.newBuilder(TOPIC1).addProperty("i", 100).build()).get();
+
+        List<Message> messages = observers.get(0).getMessages();
+        assertEquals(11, messages.size());
+        for (int m = 0; m < messages.size(); m++)
+            assertEquals(90 + m, messages.get(m).getInt("i"));
+        broker.shutdown();
+    }
+
+    @Test
+    public void removeTopicShouldDropItsLastValuesAndItsReplayBuffer() throws Exception {
+        broker = new Broker(5, 5, 64, null, 16);
+        broker.compact(TOPIC1, "symbol");
+        for (int i = 0; i < 3; i++)
+            broker.publish(Message.newBuilder(TOPIC1).addProperty("symbol", "EURUSD").addProperty("i", i).build()).get();
+        broker.removeTopic(TOPIC1).get();
+        broker.publish(Message.newBuilder(TOPIC1).addProperty("symbol", "EURUSD").addProperty("i", 3).build()).get();
+
+        broker.subscribe(observers.get(0), TOPIC1).get();
+        broker.subscribe(observers.get(1), TOPIC1, StartPosition.last(10)).get();
+
+        assertTrue(observers.get(0).getMessages().isEmpty());
+        List<Message> messages = observers.get(1).getMessages();
+        assertEquals(1, messages.size());
+        assertEquals(3, messages.get(0).getInt("i"));
+        broker.shutdown();
+    }
+
+    @Test
+    public void subscribeToACompactedTopicShouldSendTheLastValueOfEachKeyThenTheDeltas() throws Exception {
+        broker.compact(TOPIC1, "symbol");
+        String[] symbols = {"EURUSD", "GBPUSD", "USDJPY"};
+        for (int i = 0; i < 30; i++)
+            broker.publish(Message.newBuilder(TOPIC1).addProperty("symbol", symbols[i % 3]).addProperty("i", i).build()).get();
+        broker.publish(Message.newBuilder(TOPIC1).addProperty("i", 30).build()).get();
+
+        broker.subscribe(observers.get(0), TOPIC1).get();
+        broker.subscribe(observers.get(1), TOPIC1, StartPosition.latest()).get();
+        broker.publish(Message.newBuilder(TOPIC1).addProperty("symbol", "EURUSD").addProperty("i", 31).build()).get();
+
+        List<Message> messages = observers.get(0).getMessages();
+        assertEquals(4, messages.size());
+        List<Integer> snapshot = new ArrayList<>();
+        for (Message message : messages.subList(0, 3))
+            snapshot.add(message.getInt("i"));
+        snapshot.sort(null);
+        assertEquals(Arrays.asList(27, 28, 29), snapshot);
+        assertEquals(31, messages.get(3).getInt("i"));
+        assertEquals(1, observers.get(1).getMessages().size());
+    }
+
+    @Test
+    public void aShardedBrokerShouldDeliverTheMessagesOfATopicInOrder() throws Exception {
+        broker = new Broker(4, 4, 64, null, 0, false, 4);
+        Topic[] topics = new Topic[16];
+        for (int t = 0; t < topics.length; t++) {
+            topics[t] = Topic.of("shard/" + t);
+            broker.subscribe(observers.get(0), topics[t]).get();
+        }
+        broker.subscribe(observers.get(1), Topic.of("shard/#")).get();
+        assertEquals(4, broker.getShardCount());
+        // the topics and the wildcard topic
+        assertEquals(17, broker.geTopics().size());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 1600; i++)
+            futures.add(broker.publish(Message.newBuilder(topics[i % 16]).addProperty("i", i).build()));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+
+        for (SubscriptionMock observer : Arrays.asList(observers.get(0), observers.get(1))) {
+            List<Message> messages = observer.getMessages();
+            assertEquals(1600, messages.size());
+            int[] last = new int[16];
+            Arrays.fill(last, -1);
+            for (Message message : messages) {
+                int i = message.getInt("i");
+                assertTrue(i > last[i % 16]);
+                last[i % 16] = i;
+            }
+        }
+
+        broker.unsubscribe(observers.get(1).getSubId(), Topic.of("shard/#")).get();
+        assertFalse(broker.isSubscribed(observers.get(1)));
+        assertTrue(broker.isSubscribed(observers.get(0), topics[3]));
+        broker.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subscribeFromAPositionShouldRejectAWildcardTopic() throws IOException {
+        broker = new Broker(5, 5, 64, new MessageLog(folder.newFolder()), 0);
+        broker.subscribe(observers.get(0), Topic.of("a/#"), StartPosition.earliest());
+    }
+
     @Test
     public void isSubscribedShouldReturnFalseWhenTheTopicDoesNotExistsOrTheSubscriberIsNotSubscribed() throws ExecutionException, InterruptedException {
         broker.subscribe(observers.get(0), TOPIC1).get();
@@ -0,0 +1,80 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HandlerExecutorTest {
+    private final HandlerExecutor executor = new HandlerExecutor(1) {
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void aBlockedKeyShouldNotDelayTheOtherKeys() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> blocked = executor.runAsync(() -> {
+            await(release);
+            order.add(0);
+        }, "a");
+        CompletableFuture<Void> next = executor.runAsync(() -> order.add(1), "a");
+
+        executor.runAsync(() -> {
+        }, "b").get(5, TimeUnit.SECONDS);
+        assertFalse(next.isDone());
+
+        release.countDown();
+        CompletableFuture.allOf(blocked, next).get();
+        assertEquals(Integer.valueOf(0), order.get(0));
+        assertEquals(Integer.valueOf(1), order.get(1));
+    }
+
+    @Test
+    public void aKeyShouldStillBeRejectedAfterShutdown() {
+        executor.shutdown();
+        for (int i = 0; i < 2; i++) {
+            try {
+                executor.runAsync(() -> {
+                }, "a");
+                fail();
+            } catch (RejectedExecutionException expected) {
+            }
+        }
+    }
+
+    /**
+     * Wait as a blocked publication does, the pool compensates the blocked thread.
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    latch.await();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return latch.getCount() == 0;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
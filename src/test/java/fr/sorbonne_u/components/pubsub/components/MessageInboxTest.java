@@ -0,0 +1,113 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class MessageInboxTest {
+    private static final Topic TOPIC = Topic.of("TOPIC");
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final TraceLog trace = new TraceLog(TraceLevel.ERROR, 1, TraceLog.DEFAULT_CAPACITY, events::add, false);
+
+    @Test(timeout = 10_000)
+    public void putShouldNotWaitForASlowConsumerUntilTheInboxIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> consumed = Collections.synchronizedList(new ArrayList<>());
+        MessageInbox inbox = new MessageInbox("test", 4, 1, message -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumed.add(message.getInt("i"));
+        }, trace);
+
+        // one message is being consumed, four wait in the inbox
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++)
+            inbox.put(Message.newBuilder(TOPIC).addProperty("i", i).build());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        Thread producer = new Thread(() -> {
+            try {
+                inbox.put(Message.newBuilder(TOPIC).addProperty("i", 5).build());
+            } catch (InterruptedException ignored) {
+            }
+        });
+        producer.start();
+        producer.join(100);
+        assertTrue("a full inbox must make the caller wait", producer.isAlive());
+
+        release.countDown();
+        producer.join();
+        while (consumed.size() < 6)
+            Thread.sleep(1);
+        assertEquals(6, consumed.size());
+        for (int i = 0; i < 6; i++)
+            assertEquals(Integer.valueOf(i), consumed.get(i));
+        inbox.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void aFailingConsumerShouldBeTracedAndNotStopItsHandler() throws InterruptedException {
+        CountDownLatch consumed = new CountDownLatch(2);
+        MessageInbox inbox = new MessageInbox("test", 4, 1, message -> {
+            consumed.countDown();
+            if (message.getInt("i") == 0)
+                throw new IllegalStateException("consumer failure");
+        }, trace);
+
+        inbox.put(Message.newBuilder(TOPIC).addProperty("i", 0).build());
+        inbox.put(Message.newBuilder(TOPIC).addProperty("i", 1).build());
+        consumed.await();
+        inbox.close();
+        trace.close();
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0), events.get(0).startsWith("[ERROR]"));
+        assertTrue(events.get(0), events.get(0).contains("consumer failure"));
+    }
+
+    @Test(timeout = 10_000)
+    public void virtualHandlersShouldConsumeTheMessagesConcurrently() throws InterruptedException {
+        assumeTrue(VirtualThreads.isSupported());
+        // every handler blocks until all of them hold a message
+        int handlers = 1000;
+        CountDownLatch blocked = new CountDownLatch(handlers);
+        AtomicInteger consumed = new AtomicInteger();
+        MessageInbox inbox = new MessageInbox("test", handlers, handlers, true, message -> {
+            blocked.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumed.incrementAndGet();
+        }, trace);
+
+        for (int i = 0; i < handlers; i++)
+            inbox.put(Message.newBuilder(TOPIC).addProperty("i", i).build());
+        while (consumed.get() < handlers)
+            Thread.sleep(1);
+        inbox.close();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void virtualHandlersShouldRequireJava21() {
+        assumeFalse(VirtualThreads.isSupported());
+        new MessageInbox("test", 4, 1, true, message -> {
+        }, trace);
+    }
+}
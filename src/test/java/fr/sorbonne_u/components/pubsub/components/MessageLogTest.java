@@ -0,0 +1,142 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MessageLogTest {
+    private static final Topic TOPIC = Topic.of("a/b");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Message newMessage(int i) {
+        return Message.newBuilder(TOPIC)
+                .setContent("message-" + i)
+                .addProperty("i", i)
+                .build();
+    }
+
+    private static List<Message> readAll(MessageLog log, long offset) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        long next = offset;
+        while (next < log.getNextOffset(TOPIC))
+            next = log.read(TOPIC, next, 7, messages);
+        return messages;
+    }
+
+    @Test
+    public void readShouldReturnTheAppendedMessagesAcrossSegmentsAndRestarts() throws IOException {
+        File dir = folder.newFolder();
+        List<Message> appended = new ArrayList<>();
+        MessageLog log = new MessageLog(dir, 2048, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        for (int i = 0; i < 200; i++) {
+            appended.add(newMessage(i));
+            assertEquals(i, log.append(appended.get(i)));
+        }
+        assertTrue(new File(dir, "a%2Fb").list().length > 4);
+        assertEquals(appended, readAll(log, 0));
+        assertEquals(appended.subList(150, 200), readAll(log, 150));
+        log.close();
+
+        log = new MessageLog(dir, 2048, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        assertTrue(log.getTopics().contains(TOPIC));
+        assertEquals(200, log.getNextOffset(TOPIC));
+        assertEquals(appended, readAll(log, 0));
+        assertEquals(200, log.append(newMessage(200)));
+        assertEquals(201, readAll(log, 0).size());
+        log.close();
+    }
+
+    @Test
+    public void openShouldDiscardATornRecord() throws IOException {
+        File dir = folder.newFolder();
+        LogSegment segment = LogSegment.create(dir, 0, 1 << 16);
+        for (int i = 0; i < 10; i++)
+            assertTrue(segment.append(newMessage(i), i, i));
+        int end = segment.size();
+        assertTrue(segment.append(newMessage(10), 10, 10));
+        segment.flush();
+        // corrupt the last record as if the JVM stopped while writing it
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, LogSegment.fileName(0) + LogSegment.LOG_SUFFIX), "rw")) {
+            file.seek(end + LogSegment.HEADER + 2);
+            file.write(~file.read());
+        }
+
+        segment = LogSegment.open(dir, 0, 1 << 16);
+        assertEquals(10, segment.getNextOffset());
+        assertEquals(end, segment.size());
+        List<Message> messages = new ArrayList<>();
+        assertEquals(10, segment.read(0, 100, messages));
+        assertEquals(newMessage(9).getContent(), messages.get(9).getContent());
+        assertTrue(segment.append(newMessage(10), 10, 10));
+        assertEquals(11, segment.read(5, 100, new ArrayList<>()));
+    }
+
+    @Test
+    public void openShouldRecoverTheMaxTimestampOfTheWholeSegment() throws IOException {
+        File dir = folder.newFolder();
+        LogSegment segment = LogSegment.create(dir, 0, 1 << 16);
+        for (int i = 0; i < 200; i++)
+            assertTrue(segment.append(newMessage(i), i, i == 1 ? 5000 : i));
+        assertTrue(segment.size() > 2 * LogSegment.INDEX_INTERVAL);
+        segment.flush();
+
+        segment = LogSegment.open(dir, 0, 1 << 16);
+        assertEquals(200, segment.getNextOffset());
+        assertEquals(5000, segment.getMaxTimestamp());
+    }
+
+    @Test
+    public void retentionAndTimestampsShouldUseTheAppendTime() throws Exception {
+        File dir = folder.newFolder();
+        MessageLog log = new MessageLog(dir, 2048, Long.MAX_VALUE, TimeUnit.HOURS.toMillis(1), 10);
+        for (int i = 0; i < 100; i++)
+            log.append(newMessage(i));
+        Thread.sleep(5);
+        long time = System.currentTimeMillis();
+        Thread.sleep(5);
+        for (int i = 100; i < 200; i++)
+            log.append(newMessage(i));
+        assertEquals(-1, newMessage(0).getTimestamp());
+
+        log.retain();
+        assertEquals(0, log.getStartOffset(TOPIC));
+        assertEquals(100, log.offsetOf(TOPIC, time));
+        assertEquals(0, log.offsetOf(TOPIC, 0));
+        assertEquals(200, log.offsetOf(TOPIC, System.currentTimeMillis() + 1000));
+        log.close();
+
+        log = new MessageLog(dir, 2048, Long.MAX_VALUE, TimeUnit.HOURS.toMillis(1), 10);
+        assertEquals(100, log.offsetOf(TOPIC, time));
+        log.close();
+    }
+
+    @Test
+    public void retainShouldDeleteTheOldestSegments() throws IOException {
+        File dir = folder.newFolder();
+        MessageLog log = new MessageLog(dir, 2048, 4096, Long.MAX_VALUE, 10);
+        for (int i = 0; i < 200; i++)
+            log.append(newMessage(i));
+        log.retain();
+
+        long start = log.getStartOffset(TOPIC);
+        assertTrue(start > 0);
+        List<Message> messages = readAll(log, 0);
+        assertEquals(200 - start, messages.size());
+        assertEquals(newMessage((int) start).getContent(), messages.get(0).getContent());
+        assertTrue(new File(dir, "a%2Fb").list().length <= 2 * 3);
+        log.close();
+    }
+}
@@ -0,0 +1,83 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MpscArrayQueueTest {
+
+    @Test
+    public void offerShouldFailWhenTheQueueIsFull() {
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(3);
+        assertEquals(4, queue.capacity());
+        for (int i = 0; i < 4; i++)
+            assertTrue(queue.offer(i));
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertTrue(queue.offer(4));
+    }
+
+    @Test
+    public void pollShouldReturnTheElementsInOrder() {
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(4);
+        assertNull(queue.poll());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++)
+                queue.offer(i);
+            for (int i = 0; i < 4; i++)
+                assertEquals(Integer.valueOf(i), queue.poll());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void evictShouldRemoveTheOldestElement() {
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(2);
+        queue.offer(0);
+        queue.offer(1);
+        assertEquals(Integer.valueOf(0), queue.evict());
+        assertTrue(queue.offer(2));
+        assertEquals(Integer.valueOf(1), queue.poll());
+        assertEquals(Integer.valueOf(2), queue.poll());
+        assertNull(queue.evict());
+    }
+
+    @Test
+    public void pollShouldKeepTheOrderOfEachProducer() throws InterruptedException {
+        int producers = 4;
+        int count = 100_000;
+        MpscArrayQueue<long[]> queue = new MpscArrayQueue<>(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread = new Thread(() -> {
+                for (long i = 0; i < count; i++) {
+                    long[] e = {producer, i};
+                    while (!queue.offer(e))
+                        Thread.yield();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        long[] next = new long[producers];
+        for (int received = 0; received < producers * count; ) {
+            long[] e = queue.poll();
+            if (e == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[(int) e[0]]++, e[1]);
+            received++;
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(queue.isEmpty());
+    }
+}
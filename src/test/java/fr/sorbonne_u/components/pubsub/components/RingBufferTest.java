@@ -0,0 +1,91 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+    private static final int WRITERS = 4;
+    private static final int ROUNDS = 200;
+    private static final int ADDS = 1000;
+
+    @Test
+    public void lastShouldReturnTheLastElementsOldestFirst() {
+        RingBuffer<Integer> ring = new RingBuffer<>(3);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 10; i++)
+            ring.add(i);
+        List<Integer> last = new ArrayList<>();
+        ring.last(2, last);
+        assertEquals(Arrays.asList(8, 9), last);
+    }
+
+    @Test
+    public void concurrentWritersShouldNotMixUpTheSlots() throws InterruptedException {
+        for (int capacity = 1; capacity <= 2; capacity++) {
+            for (int round = 0; round < ROUNDS; round++) {
+                RingBuffer<long[]> ring = new RingBuffer<>(capacity);
+                AtomicReference<String> failure = new AtomicReference<>();
+                AtomicBoolean done = new AtomicBoolean();
+                CountDownLatch start = new CountDownLatch(1);
+
+                List<Thread> writers = new ArrayList<>();
+                for (int w = 0; w < WRITERS; w++) {
+                    long writer = w;
+                    writers.add(new Thread(() -> {
+                        await(start);
+                        for (long n = 0; n < ADDS; n++)
+                            ring.add(new long[]{writer, n});
+                    }));
+                }
+                // the elements of a writer are added in order, so they must be returned in order
+                Thread reader = new Thread(() -> {
+                    await(start);
+                    List<long[]> last = new ArrayList<>();
+                    while (!done.get()) {
+                        last.clear();
+                        ring.last(2, last);
+                        checkOrder(last, failure);
+                    }
+                });
+                writers.forEach(Thread::start);
+                reader.start();
+                start.countDown();
+                for (Thread writer : writers)
+                    writer.join();
+                done.set(true);
+                reader.join();
+
+                // a slot left with an older element than its sequence would be skipped
+                List<long[]> last = new ArrayList<>();
+                ring.last(capacity, last);
+                checkOrder(last, failure);
+                assertNull(failure.get());
+                assertEquals(capacity, last.size());
+            }
+        }
+    }
+
+    private static void checkOrder(List<long[]> last, AtomicReference<String> failure) {
+        for (int i = 1; i < last.size(); i++) {
+            if (last.get(i - 1)[0] == last.get(i)[0] && last.get(i - 1)[1] >= last.get(i)[1])
+                failure.compareAndSet(null, "element " + last.get(i)[1] + " of writer "
+                        + last.get(i)[0] + " returned after element " + last.get(i - 1)[1]);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import fr.sorbonne_u.components.pubsub.Filter;
+import fr.sorbonne_u.components.pubsub.Message;
+import fr.sorbonne_u.components.pubsub.Topic;
+import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SubscriberExecutorTest {
+    private final static Topic TOPIC1 = Topic.of("TOPIC1");
+    private final static Topic TOPIC2 = Topic.of("TOPIC2");
+
+    private final SubscriberExecutor executor = new SubscriberExecutor(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void aSubscriptionChangeShouldOnlyInvalidateTheRoutesItCanMatch() {
+        executor.subscribe(new SubscriptionMock("1"), TOPIC1).join();
+        Route route = executor.getRoute(TOPIC1);
+
+        executor.subscribe(new SubscriptionMock("2"), TOPIC2).join();
+        executor.unsubscribe("2", TOPIC2).join();
+        assertSame(route, executor.getRoute(TOPIC1));
+
+        executor.subscribe(new SubscriptionMock("3"), TOPIC1).join();
+        Route changed = executor.getRoute(TOPIC1);
+        assertNotSame(route, changed);
+        assertEquals(2, changed.getSubscribers().length);
+
+        executor.subscribe(new SubscriptionMock("4"), Topic.of("#")).join();
+        assertEquals(3, executor.getRoute(TOPIC1).getSubscribers().length);
+
+        executor.unsubscribe("4").join();
+        assertEquals(2, executor.getRoute(TOPIC1).getSubscribers().length);
+    }
+
+    @Test
+    public void theSubscriptionsOfASubscriberToOverlappingPatternsShouldAllBeRouted() {
+        SubscriptionMock byLevel = new SubscriptionMock("1");
+        byLevel.filter(Filter.eq("kind", "score"));
+        SubscriptionMock byPrefix = new SubscriptionMock("1");
+        byPrefix.filter(Filter.eq("kind", "news"));
+        executor.subscribe(byLevel, Topic.of("a/+")).join();
+        executor.subscribe(byPrefix, Topic.of("a/#")).join();
+
+        Route route = executor.getRoute(Topic.of("a/b"));
+        assertEquals(2, route.getSubscribers().length);
+        Message news = Message.newBuilder(Topic.of("a/b")).addProperty("kind", "news").build();
+        assertArrayEquals(new Subscription[]{byPrefix}, route.match(news));
+    }
+}
@@ -3,13 +3,18 @@ package fr.sorbonne_u.components.pubsub.components;
 import fr.sorbonne_u.components.pubsub.Message;
 import fr.sorbonne_u.components.pubsub.interfaces.Subscription;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
 
 public class SubscriptionMock implements Subscription {
     private Message message = null;
+    private final List<Message> messages = Collections.synchronizedList(new ArrayList<>());
 
     private String name;
+    private Predicate<Message> filter;
 
     public SubscriptionMock(String name) {
         this.name = name;
@@ -19,6 +24,13 @@ public class SubscriptionMock implements Subscription {
     @Override
     public void notify(Message message) {
         this.message = message;
+        this.messages.add(message);
+    }
+
+    @Override
+    public void notifyBatch(List<Message> messages) {
+        this.message = messages.get(messages.size() - 1);
+        this.messages.addAll(messages);
     }
 
     public Message getMessage() {
@@ -26,9 +38,18 @@ public class SubscriptionMock implements Subscription {
         return message;
     }
 
+    public List<Message> getMessages() {
+        return messages;
+    }
+
     @Override
     public void filter(Predicate<Message> filter) {
-        // TODO add filter
+        this.filter = filter;
+    }
+
+    @Override
+    public Predicate<Message> getFilter() {
+        return filter;
     }
 
     @Override
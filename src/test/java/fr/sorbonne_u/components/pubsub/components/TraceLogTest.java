@@ -0,0 +1,74 @@
+package fr.sorbonne_u.components.pubsub.components;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TraceLogTest {
+    private final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void eventsShouldBeFormattedWhenTheyAreWritten() {
+        StringBuilder content = new StringBuilder("before");
+        TraceLog trace = new TraceLog(TraceLevel.DEBUG, 1, 16, lines::add);
+        trace.log(TraceLevel.INFO, "subscribing {} to :{}", "sub", "topic");
+        trace.log(TraceLevel.DEBUG, "publishing a batch of {} messages", 1000);
+        trace.log(TraceLevel.DEBUG, "receiving: {}", content);
+        content.replace(0, content.length(), "after");
+        trace.close();
+
+        assertEquals("[INFO] subscribing sub to :topic", lines.get(0));
+        assertEquals("[DEBUG] publishing a batch of 1000 messages", lines.get(1));
+        assertEquals("[DEBUG] receiving: after", lines.get(2));
+    }
+
+    @Test
+    public void eventsAboveTheLevelShouldNotBeRecorded() {
+        TraceLog trace = new TraceLog(TraceLevel.INFO, 1, 16, lines::add);
+        assertFalse(trace.isEnabled(TraceLevel.DEBUG));
+        trace.log(TraceLevel.DEBUG, "publishing: {}", new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("a disabled event must not be formatted");
+            }
+        });
+        trace.log(TraceLevel.INFO, "stopping component.");
+        trace.close();
+        assertEquals(Collections.singletonList("[INFO] stopping component."), lines);
+
+        TraceLog off = new TraceLog(TraceLevel.OFF, 1, 16, lines::add);
+        off.log(TraceLevel.ERROR, "failed");
+        off.close();
+        assertEquals(1, lines.size());
+    }
+
+    @Test
+    public void aFullBufferShouldDropTheEventsAndCountThem() {
+        TraceLog trace = new TraceLog(TraceLevel.DEBUG, 1, 4, lines::add, false);
+        for (int i = 0; i < 10; i++)
+            trace.log(TraceLevel.DEBUG, "event {}", i);
+        trace.close();
+
+        assertEquals("[ERROR] 6 trace events dropped", lines.get(0));
+        assertEquals(5, lines.size());
+        assertEquals("[DEBUG] event 3", lines.get(4));
+    }
+
+    @Test
+    public void debugEventsShouldBeSampled() {
+        TraceLog trace = new TraceLog(TraceLevel.DEBUG, 10, 1 << 14, lines::add);
+        for (int i = 0; i < 10_000; i++) {
+            trace.log(TraceLevel.DEBUG, "event {}", i);
+            trace.log(TraceLevel.INFO, "info");
+        }
+        trace.close();
+
+        long debug = lines.stream().filter(line -> line.startsWith("[DEBUG]")).count();
+        assertEquals(10_000, lines.size() - debug);
+        assertTrue(debug > 700 && debug < 1300);
+    }
+}